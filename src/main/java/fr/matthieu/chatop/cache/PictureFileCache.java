@@ -0,0 +1,219 @@
+package fr.matthieu.chatop.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of open uploaded pictures, with their size and modification date.
+ * <p>
+ * 		Uploaded pictures are never modified (each one has a unique name), so an open channel and its
+ * 		attributes stay valid until the file is deleted. Serving a cached picture needs no {@code open}
+ * 		nor {@code stat} system call. Channels are read with absolute positions, so they are shared between
+ * 		concurrent requests; an evicted channel is closed once the last request using it releases it.
+ * </p>
+ */
+@Slf4j
+@Component
+public class PictureFileCache implements MeterBinder {
+
+	private final Map<Path, OpenPicture> entries;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Constructs a {@code PictureFileCache}.
+	 *
+	 * @param maxEntries The maximum number of pictures kept open.
+	 */
+	public PictureFileCache(@Value("${file.serving.open-files:256}") int maxEntries) {
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Path, OpenPicture> eldest) {
+				if (size() > maxEntries) {
+					eldest.getValue().release();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Returns the open picture at the given path, opening it on a miss.
+	 * The caller must {@link OpenPicture#release() release} it once the response is written.
+	 *
+	 * @param path The absolute path of the picture.
+	 * @return The {@link OpenPicture}.
+	 * @throws IOException If the file does not exist or cannot be opened.
+	 */
+	public OpenPicture acquire(Path path) throws IOException {
+		synchronized (entries) {
+			OpenPicture cached = entries.get(path);
+			if (cached != null && cached.retain()) {
+				hits.increment();
+				return cached;
+			}
+		}
+		misses.increment();
+
+		BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		if (!attributes.isRegularFile()) {
+			throw new NoSuchFileException(path.toString());
+		}
+		OpenPicture opened = new OpenPicture(path, FileChannel.open(path, StandardOpenOption.READ),
+				attributes.size(), attributes.lastModifiedTime().toMillis());
+		opened.retain();
+		OpenPicture replaced;
+		synchronized (entries) {
+			replaced = entries.put(path, opened);
+		}
+		if (replaced != null) {
+			replaced.release();
+		}
+		return opened;
+	}
+
+	/**
+	 * Closes every cached picture.
+	 */
+	@PreDestroy
+	public void close() {
+		List<OpenPicture> open;
+		synchronized (entries) {
+			open = new ArrayList<>(entries.values());
+			entries.clear();
+		}
+		open.forEach(OpenPicture::release);
+	}
+
+	/**
+	 * Returns the current number of open pictures.
+	 *
+	 * @return The cache size.
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	@Override
+	public void bindTo(@NonNull MeterRegistry registry) {
+		FunctionCounter.builder("uploads.picture.cache.hits", hits, LongAdder::sum).register(registry);
+		FunctionCounter.builder("uploads.picture.cache.misses", misses, LongAdder::sum).register(registry);
+		Gauge.builder("uploads.picture.cache.size", this, PictureFileCache::size).register(registry);
+	}
+
+	/**
+	 * An open picture, reference-counted: the cache holds one reference, and each request using it another.
+	 */
+	public static final class OpenPicture {
+
+		private final Path path;
+		private final FileChannel channel;
+		private final long size;
+		private final long lastModified;
+		private final AtomicInteger references = new AtomicInteger(1);
+
+		private OpenPicture(Path path, FileChannel channel, long size, long lastModified) {
+			this.path = path;
+			this.channel = channel;
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+
+		/**
+		 * Returns the absolute path of the picture.
+		 *
+		 * @return The path.
+		 */
+		public Path path() {
+			return path;
+		}
+
+		/**
+		 * Returns the channel of the picture, to be read with absolute positions only.
+		 *
+		 * @return The channel.
+		 */
+		public FileChannel channel() {
+			return channel;
+		}
+
+		/**
+		 * Returns the size of the picture.
+		 *
+		 * @return The size, in bytes.
+		 */
+		public long size() {
+			return size;
+		}
+
+		/**
+		 * Returns the modification date of the picture.
+		 *
+		 * @return The date, in milliseconds.
+		 */
+		public long lastModified() {
+			return lastModified;
+		}
+
+		/**
+		 * Returns a strong ETag derived from the modification date and size of the picture.
+		 *
+		 * @return The quoted ETag.
+		 */
+		public String etag() {
+			return "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(size) + "\"";
+		}
+
+		/**
+		 * Adds a reference, unless the picture was already closed.
+		 */
+		private boolean retain() {
+			int current;
+			do {
+				current = references.get();
+				if (current == 0) {
+					return false;
+				}
+			} while (!references.compareAndSet(current, current + 1));
+			return true;
+		}
+
+		/**
+		 * Releases a reference, closing the channel when none is left.
+		 */
+		public void release() {
+			if (references.decrementAndGet() == 0) {
+				try {
+					channel.close();
+				} catch (IOException e) {
+					log.warn("Failed to close picture {}", path.getFileName(), e);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,163 @@
+package fr.matthieu.chatop.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process cache of serialized rental list responses.
+ * <p>
+ * 		Each entry holds the JSON bytes of one page of rentals, ready to be written to the response,
+ * 		with a strong ETag computed from those bytes. Entries are tied to a monotonic catalogue version:
+ * 		any change to the rentals bumps the version, which discards every cached page at once.
+ * </p>
+ */
+@Component
+public class RentalListCache implements MeterBinder {
+
+	private final Map<String, CachedPage> entries;
+	private final AtomicLong version = new AtomicLong();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder bytesSaved = new LongAdder();
+	private final LongAdder notModified = new LongAdder();
+
+	/**
+	 * Constructs a {@code RentalListCache}.
+	 *
+	 * @param maxEntries The maximum number of pages kept in memory.
+	 */
+	public RentalListCache(@Value("${rentals.list-cache.max-entries:256}") int maxEntries) {
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedPage> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Returns the current catalogue version.
+	 * It must be read before loading the rentals, and given back to {@link #put(String, long, byte[])}.
+	 *
+	 * @return The catalogue version.
+	 */
+	public long version() {
+		return version.get();
+	}
+
+	/**
+	 * Returns the cached page for the given key, if it was built for the current catalogue version.
+	 *
+	 * @param key The key identifying the page.
+	 * @return The {@link CachedPage}, or {@code null} on a miss.
+	 */
+	public CachedPage get(String key) {
+		CachedPage cached;
+		synchronized (entries) {
+			cached = entries.get(key);
+		}
+		if (cached == null || cached.version() != version.get()) {
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		bytesSaved.add(cached.body().length);
+		return cached;
+	}
+
+	/**
+	 * Stores a serialized page.
+	 * The page is not cached when the catalogue changed while it was being built.
+	 *
+	 * @param key            The key identifying the page.
+	 * @param builtAtVersion The catalogue version read before loading the rentals.
+	 * @param body           The serialized page.
+	 * @return The {@link CachedPage} holding the body and its ETag.
+	 */
+	public CachedPage put(String key, long builtAtVersion, byte[] body) {
+		CachedPage page = new CachedPage(builtAtVersion, body, "\"" + DigestUtils.md5DigestAsHex(body) + "\"");
+		synchronized (entries) {
+			if (builtAtVersion == version.get()) {
+				entries.put(key, page);
+			}
+		}
+		return page;
+	}
+
+	/**
+	 * Discards every cached page by moving to a new catalogue version.
+	 */
+	public void invalidate() {
+		synchronized (entries) {
+			version.incrementAndGet();
+			entries.clear();
+		}
+	}
+
+	/**
+	 * Records a conditional request answered with 304 Not Modified.
+	 *
+	 * @param page The page whose body was not sent.
+	 */
+	public void recordNotModified(CachedPage page) {
+		notModified.increment();
+		bytesSaved.add(page.body().length);
+	}
+
+	/**
+	 * Returns the current number of cached pages.
+	 *
+	 * @return The cache size.
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	@Override
+	public void bindTo(@NonNull MeterRegistry registry) {
+		FunctionCounter.builder("rentals.list.cache.hits", hits, LongAdder::sum).register(registry);
+		FunctionCounter.builder("rentals.list.cache.misses", misses, LongAdder::sum).register(registry);
+		FunctionCounter.builder("rentals.list.cache.not.modified", notModified, LongAdder::sum).register(registry);
+		FunctionCounter.builder("rentals.list.cache.bytes.saved", bytesSaved, LongAdder::sum)
+				.baseUnit("bytes")
+				.description("Serialized bytes served from the cache or not sent thanks to If-None-Match")
+				.register(registry);
+		Gauge.builder("rentals.list.cache.hit.ratio", this, RentalListCache::hitRatio).register(registry);
+		Gauge.builder("rentals.list.cache.size", this, RentalListCache::size).register(registry);
+		Gauge.builder("rentals.list.cache.version", version, AtomicLong::get).register(registry);
+	}
+
+	/**
+	 * Returns the ratio of lookups answered from the cache.
+	 *
+	 * @return The hit ratio, between 0 and 1.
+	 */
+	private double hitRatio() {
+		long hitCount = hits.sum();
+		long total = hitCount + misses.sum();
+		return total == 0 ? 0 : (double) hitCount / total;
+	}
+
+	/**
+	 * A serialized page of rentals.
+	 *
+	 * @param version The catalogue version the page was built for.
+	 * @param body    The JSON bytes of the page.
+	 * @param etag    The strong ETag of the body, quoted.
+	 */
+	public record CachedPage(long version, byte[] body, String etag) {}
+}
@@ -18,6 +18,12 @@ public class ApiRoutes {
 
 	public static final String ME_URL = AUTH_URL+"/me";
 
+	public static final String LOGOUT_URL = AUTH_URL+"/logout";
+
+	public static final String LOGOUT_ALL_URL = AUTH_URL+"/logout-all";
+
+	public static final String REFRESH_URL = AUTH_URL+"/refresh";
+
 	/* Users URL */
 	public static final String USER_ID_URL = BASE_URL+"/user/{id}";
 
@@ -26,6 +32,16 @@ public class ApiRoutes {
 
 	public static final String RENTAL_ID_URL = RENTALS_URL+"/{id}";
 
+	public static final String RENTAL_SIMILAR_URL = RENTAL_ID_URL+"/similar";
+
+	public static final String RENTALS_STREAM_URL = RENTALS_URL+"/stream";
+
+	public static final String RENTALS_SEARCH_URL = RENTALS_URL+"/search";
+
+	public static final String RENTALS_FACETS_URL = RENTALS_URL+"/facets";
+
+	public static final String RENTALS_AUTOCOMPLETE_URL = RENTALS_URL+"/autocomplete";
+
 	/* Message URL */
 	public static final String MESSAGES_URL = BASE_URL+"/messages";
 
@@ -0,0 +1,116 @@
+package fr.matthieu.chatop.common;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * A utility class that encodes pictures as BlurHash strings, compact placeholders clients decode into a blurred preview.
+ * <p>
+ * 		The picture is reduced to a few cosine components of its linear colours: the average colour, then
+ * 		the horizontal and vertical variations, each quantized and written in base 83. A 4x3 hash is 28 characters.
+ * 		See <a href="https://github.com/woltapp/blurhash">the BlurHash specification</a>.
+ * </p>
+ */
+public final class BlurHash {
+
+	private static final String BASE83 = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz#$%*+,-.:;=?@[]^_{|}~";
+
+	private BlurHash() {}
+
+	/**
+	 * Encodes a picture. As every pixel is visited for each component, the picture should be a few dozen pixels wide.
+	 *
+	 * @param image       The picture, whose alpha channel is ignored.
+	 * @param componentsX The number of horizontal components, from 1 to 9.
+	 * @param componentsY The number of vertical components, from 1 to 9.
+	 * @return The BlurHash string.
+	 */
+	public static String encode(BufferedImage image, int componentsX, int componentsY) {
+		int width = image.getWidth();
+		int height = image.getHeight();
+		int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+		double[] red = new double[pixels.length];
+		double[] green = new double[pixels.length];
+		double[] blue = new double[pixels.length];
+		for (int i = 0; i < pixels.length; i++) {
+			red[i] = srgbToLinear((pixels[i] >> 16) & 0xFF);
+			green[i] = srgbToLinear((pixels[i] >> 8) & 0xFF);
+			blue[i] = srgbToLinear(pixels[i] & 0xFF);
+		}
+
+		double[][] factors = new double[componentsX * componentsY][];
+		for (int j = 0; j < componentsY; j++) {
+			for (int i = 0; i < componentsX; i++) {
+				double normalisation = (i == 0 && j == 0) ? 1 : 2;
+				double r = 0;
+				double g = 0;
+				double b = 0;
+				for (int y = 0; y < height; y++) {
+					double basisY = Math.cos(Math.PI * j * y / height);
+					for (int x = 0; x < width; x++) {
+						double basis = Math.cos(Math.PI * i * x / width) * basisY;
+						int pixel = y * width + x;
+						r += basis * red[pixel];
+						g += basis * green[pixel];
+						b += basis * blue[pixel];
+					}
+				}
+				double scale = normalisation / (width * height);
+				factors[j * componentsX + i] = new double[] {r * scale, g * scale, b * scale};
+			}
+		}
+
+		StringBuilder hash = new StringBuilder();
+		encode83(hash, (componentsX - 1) + (componentsY - 1) * 9, 1);
+
+		double maximum = 1;
+		if (factors.length > 1) {
+			double actualMaximum = 0;
+			for (int k = 1; k < factors.length; k++) {
+				for (double value : factors[k]) {
+					actualMaximum = Math.max(actualMaximum, Math.abs(value));
+				}
+			}
+			int quantisedMaximum = (int) Math.max(0, Math.min(82, Math.floor(actualMaximum * 166 - 0.5)));
+			maximum = (quantisedMaximum + 1) / 166.0;
+			encode83(hash, quantisedMaximum, 1);
+		} else {
+			encode83(hash, 0, 1);
+		}
+
+		double[] dc = factors[0];
+		encode83(hash, (linearToSrgb(dc[0]) << 16) + (linearToSrgb(dc[1]) << 8) + linearToSrgb(dc[2]), 4);
+		for (int k = 1; k < factors.length; k++) {
+			double[] ac = factors[k];
+			encode83(hash, quantiseAc(ac[0], maximum) * 19 * 19 + quantiseAc(ac[1], maximum) * 19 + quantiseAc(ac[2], maximum), 2);
+		}
+		return hash.toString();
+	}
+
+	private static int quantiseAc(double value, double maximum) {
+		double normalized = value / maximum;
+		return (int) Math.max(0, Math.min(18, Math.floor(Math.copySign(Math.sqrt(Math.abs(normalized)), normalized) * 9 + 9.5)));
+	}
+
+	private static double srgbToLinear(int value) {
+		double v = value / 255.0;
+		return v <= 0.04045 ? v / 12.92 : Math.pow((v + 0.055) / 1.055, 2.4);
+	}
+
+	private static int linearToSrgb(double value) {
+		double v = Math.max(0, Math.min(1, value));
+		return v <= 0.0031308
+				? (int) (v * 12.92 * 255 + 0.5)
+				: (int) ((1.055 * Math.pow(v, 1 / 2.4) - 0.055) * 255 + 0.5);
+	}
+
+	private static void encode83(StringBuilder hash, int value, int length) {
+		int divisor = 1;
+		for (int i = 1; i < length; i++) {
+			divisor *= 83;
+		}
+		for (int i = 0; i < length; i++) {
+			hash.append(BASE83.charAt((value / divisor) % 83));
+			divisor /= 83;
+		}
+	}
+}
@@ -0,0 +1,18 @@
+package fr.matthieu.chatop.common;
+
+
+/**
+ * A utility class that centralizes the names of the Hibernate second-level cache regions.
+ */
+public class CacheRegions {
+
+	public static final String RENTALS = "rentals";
+
+	public static final String USERS = "users";
+
+	/* Hibernate query cache regions */
+	public static final String QUERY_RESULTS = "default-query-results-region";
+
+	public static final String UPDATE_TIMESTAMPS = "default-update-timestamps-region";
+
+}
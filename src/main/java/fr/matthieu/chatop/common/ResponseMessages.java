@@ -20,13 +20,29 @@ public class ResponseMessages {
 
 	public static final String RENTAL_NOT_FOUND = "Rental with ID %d not found";
 
+	public static final String INVALID_CURSOR = "invalid pagination cursor";
+
+	public static final String NO_RENTALS_AVAILABLE = "No rentals available";
+
 	public static final String RENTAL_CREATED = "Rental created !";
 
 	public static final String RENTAL_UPDATED = "Rental updated !";
 
+	public static final String RENTAL_MODIFIED = "The rental was modified by another request";
+
+	public static final String LOGGED_OUT = "Logged out";
+
+	public static final String LOGGED_OUT_EVERYWHERE = "Logged out of every device";
+
 	public static final String MESSAGE_CREATED = "Message send with success";
 
 	public static final String SERVICE_UNAVAILABLE = "service unavailable";
 
+	public static final String TOO_MANY_REQUESTS = "too many requests, please retry later";
+
+	public static final String AUTHENTICATION_BUSY = "too many authentication requests, please retry later";
+
 	public static final String JWT_EXPIRED = "JWT token has expired";
+
+	public static final String INVALID_REFRESH_TOKEN = "invalid refresh token";
 }
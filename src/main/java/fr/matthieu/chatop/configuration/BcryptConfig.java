@@ -1,17 +1,80 @@
 package fr.matthieu.chatop.configuration;
 
+import fr.matthieu.chatop.security.CalibratedBCryptPasswordEncoder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 
 /**
  * Configuration class for setting up BCrypt password encoding.
+ * <p>
+ * 		Unless a fixed strength is configured, the BCrypt cost is calibrated at startup:
+ * 		the highest cost whose hashing time stays within {@code auth.bcrypt.target-millis}
+ * 		on the current machine is selected, never going below {@code auth.bcrypt.min-strength}.
+ * </p>
  */
+@Slf4j
 @Configuration
 public class BcryptConfig {
 
+	private static final int MAX_STRENGTH = 31;
+	private static final String CALIBRATION_PASSWORD = "calibration-P@ssw0rd";
+
+	@Value("${auth.bcrypt.strength:0}")
+	private int strength;
+
+	@Value("${auth.bcrypt.min-strength:10}")
+	private int minStrength;
+
+	@Value("${auth.bcrypt.target-millis:250}")
+	private long targetMillis;
+
 	@Bean
 	public BCryptPasswordEncoder passwordEncoder() {
-		return new BCryptPasswordEncoder();
+		int selectedStrength = strength > 0 ? strength : calibrate();
+		return new CalibratedBCryptPasswordEncoder(selectedStrength);
+	}
+
+	/**
+	 * Selects the highest BCrypt cost whose hashing time fits in the latency budget.
+	 * <p>
+	 * 		Each additional round doubles the hashing time, so the search stops as soon as
+	 * 		the next cost would exceed the budget.
+	 * </p>
+	 *
+	 * @return The calibrated cost.
+	 */
+	private int calibrate() {
+		// Warm up the JIT so that the first measurement is not skewed.
+		measure(4);
+
+		int selected = minStrength;
+		long duration = measure(selected);
+		while (selected < MAX_STRENGTH && duration * 2 <= targetMillis) {
+			selected++;
+			duration = measure(selected);
+		}
+		log.info("BCrypt cost calibrated to {} ({} ms per hash, budget {} ms)", selected, duration, targetMillis);
+		return selected;
+	}
+
+	/**
+	 * Measures the time needed to hash a password with the given cost.
+	 * The best of two runs is kept to reduce noise.
+	 *
+	 * @param cost The BCrypt cost to measure.
+	 * @return The hashing time in milliseconds.
+	 */
+	private long measure(int cost) {
+		BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(cost);
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < 2; i++) {
+			long start = System.nanoTime();
+			encoder.encode(CALIBRATION_PASSWORD);
+			best = Math.min(best, (System.nanoTime() - start) / 1_000_000);
+		}
+		return best;
 	}
 }
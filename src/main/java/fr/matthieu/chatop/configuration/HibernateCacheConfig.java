@@ -0,0 +1,107 @@
+package fr.matthieu.chatop.configuration;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.time.Duration;
+import java.util.OptionalLong;
+
+import static fr.matthieu.chatop.common.CacheRegions.*;
+
+/**
+ * Configuration class for the Hibernate second-level cache.
+ * <p>
+ * 		Only active when {@code cache.second-level.enabled} is true. Rentals and users are cached
+ * 		in Caffeine regions (through JCache) sized and expired from the application properties,
+ * 		along with the results of cacheable queries. Hibernate statistics are enabled so that
+ * 		hit and miss counts are exported as {@code hibernate.*} metrics.
+ * </p>
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "cache.second-level.enabled", havingValue = "true")
+public class HibernateCacheConfig {
+
+	@Value("${cache.second-level.rentals.max-size:10000}")
+	private long rentalsMaxSize;
+
+	@Value("${cache.second-level.rentals.ttl-seconds:600}")
+	private long rentalsTtlSeconds;
+
+	@Value("${cache.second-level.users.max-size:10000}")
+	private long usersMaxSize;
+
+	@Value("${cache.second-level.users.ttl-seconds:600}")
+	private long usersTtlSeconds;
+
+	@Value("${cache.second-level.queries.max-size:10000}")
+	private long queriesMaxSize;
+
+	@Value("${cache.second-level.queries.ttl-seconds:600}")
+	private long queriesTtlSeconds;
+
+	/**
+	 * Creates the JCache manager holding the second-level cache regions.
+	 *
+	 * @return The cache manager.
+	 */
+	@Bean(destroyMethod = "close")
+	public CacheManager hibernateCacheManager() {
+		CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName()).getCacheManager();
+		cacheManager.createCache(RENTALS, region(rentalsMaxSize, rentalsTtlSeconds));
+		cacheManager.createCache(USERS, region(usersMaxSize, usersTtlSeconds));
+		cacheManager.createCache(QUERY_RESULTS, region(queriesMaxSize, queriesTtlSeconds));
+		// Update timestamps must outlive every cached query result, they are never evicted
+		cacheManager.createCache(UPDATE_TIMESTAMPS, region(0, 0));
+		log.info("Second-level cache enabled (rentals: {}/{}s, users: {}/{}s, queries: {}/{}s)",
+				rentalsMaxSize, rentalsTtlSeconds, usersMaxSize, usersTtlSeconds, queriesMaxSize, queriesTtlSeconds);
+		return cacheManager;
+	}
+
+	/**
+	 * Enables the second-level and query caches in Hibernate, backed by {@link #hibernateCacheManager()}.
+	 *
+	 * @param hibernateCacheManager The cache manager holding the regions.
+	 * @return The customizer adding the cache settings to the Hibernate properties.
+	 */
+	@Bean
+	public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager hibernateCacheManager) {
+		return properties -> {
+			properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+			properties.put(AvailableSettings.USE_QUERY_CACHE, true);
+			properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+			properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+			properties.put(AvailableSettings.GENERATE_STATISTICS, true);
+		};
+	}
+
+	/**
+	 * Builds the configuration of a cache region.
+	 *
+	 * @param maxSize    The maximum number of entries, or 0 for no limit.
+	 * @param ttlSeconds The time to live of an entry in seconds, or 0 for no expiry.
+	 * @return The region configuration.
+	 */
+	private CaffeineConfiguration<Object, Object> region(long maxSize, long ttlSeconds) {
+		CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+		configuration.setStoreByValue(false);
+		configuration.setStatisticsEnabled(true);
+		if (maxSize > 0) {
+			configuration.setMaximumSize(OptionalLong.of(maxSize));
+		}
+		if (ttlSeconds > 0) {
+			configuration.setExpireAfterWrite(OptionalLong.of(Duration.ofSeconds(ttlSeconds).toNanos()));
+		}
+		return configuration;
+	}
+}
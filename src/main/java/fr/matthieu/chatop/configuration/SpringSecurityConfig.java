@@ -2,6 +2,8 @@ package fr.matthieu.chatop.configuration;
 
 import fr.matthieu.chatop.filter.GlobalExceptionFilter;
 import fr.matthieu.chatop.filter.JwtAuthFilter;
+import fr.matthieu.chatop.filter.RateLimitFilter;
+import fr.matthieu.chatop.filter.UserRateLimitFilter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -12,6 +14,7 @@ import org.springframework.security.config.annotation.authentication.configurati
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
@@ -32,14 +35,18 @@ public class SpringSecurityConfig {
 	private final BCryptPasswordEncoder passwordEncoder;
 	private final JwtAuthFilter jwtAuthFilter;
 	private final GlobalExceptionFilter globalExceptionFilter;
+	private final RateLimitFilter rateLimitFilter;
+	private final UserRateLimitFilter userRateLimitFilter;
 
 	@Value("${file.upload-relative-path}")
 	private String uploadRelativePath;
 
-	public SpringSecurityConfig(BCryptPasswordEncoder passwordEncoder, JwtAuthFilter jwtAuthFilter, GlobalExceptionFilter globalExceptionFilter) {
+	public SpringSecurityConfig(BCryptPasswordEncoder passwordEncoder, JwtAuthFilter jwtAuthFilter, GlobalExceptionFilter globalExceptionFilter, RateLimitFilter rateLimitFilter, UserRateLimitFilter userRateLimitFilter) {
 		this.passwordEncoder = passwordEncoder;
 		this.jwtAuthFilter = jwtAuthFilter;
 		this.globalExceptionFilter = globalExceptionFilter;
+		this.rateLimitFilter = rateLimitFilter;
+		this.userRateLimitFilter = userRateLimitFilter;
 	}
 
 	@Bean
@@ -51,7 +58,8 @@ public class SpringSecurityConfig {
 						.requestMatchers(
 								REGISTER_URL,
 								LOGIN_URL,
-								uploadRelativePath+"/**",
+								REFRESH_URL,
+								"/"+uploadRelativePath+"/**",
 								API_DOCS_URL+"/**",
 								SWAGGER_UI_URL+"/**"
 								)
@@ -60,6 +68,10 @@ public class SpringSecurityConfig {
 						.authenticated());
 		http.addFilterBefore(globalExceptionFilter, UsernamePasswordAuthenticationFilter.class);
 		http.addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class);
+		// Limits per IP address before the JWT filter, so that invalid tokens are counted too
+		http.addFilterBefore(rateLimitFilter, JwtAuthFilter.class);
+		// Then limits authenticated requests per user
+		http.addFilterAfter(userRateLimitFilter, JwtAuthFilter.class);
 		return http.build();
 	}
 
@@ -81,14 +93,17 @@ public class SpringSecurityConfig {
 	 * Provides the {@link AuthenticationProvider} bean.
 	 * The {@code AuthenticationProvider} is responsible for authenticating users by retrieving user details
 	 * and verifying their credentials using the password encoder.
+	 * Password hashes encoded with an outdated cost are re-encoded after a successful login.
 	 *
-	 * @param userDetailsService The service for loading user details.
+	 * @param userDetailsService         The service for loading user details.
+	 * @param userDetailsPasswordService The service for storing re-encoded passwords.
 	 * @return A configured {@link AuthenticationProvider}.
 	 */
 	@Bean
-	public AuthenticationProvider authenticationProvider(UserDetailsService userDetailsService) {
+	public AuthenticationProvider authenticationProvider(UserDetailsService userDetailsService, UserDetailsPasswordService userDetailsPasswordService) {
 		DaoAuthenticationProvider daoAuthenticationProvider = new DaoAuthenticationProvider();
 		daoAuthenticationProvider.setUserDetailsService(userDetailsService);
+		daoAuthenticationProvider.setUserDetailsPasswordService(userDetailsPasswordService);
 		daoAuthenticationProvider.setPasswordEncoder(passwordEncoder);
 		return daoAuthenticationProvider;
 	}
@@ -2,11 +2,16 @@ package fr.matthieu.chatop.controller;
 
 import fr.matthieu.chatop.common.ResponseMessages;
 import fr.matthieu.chatop.dto.AuthenticationDTO;
+import fr.matthieu.chatop.dto.RefreshTokenDTO;
 import fr.matthieu.chatop.dto.RegisterDTO;
 import fr.matthieu.chatop.dto.UserDTO;
 import fr.matthieu.chatop.common.ErrorResponse;
 import fr.matthieu.chatop.model.UserEntity;
+import fr.matthieu.chatop.security.PasswordHashingExecutor;
+import fr.matthieu.chatop.security.SessionRegistry;
+import fr.matthieu.chatop.security.VerifiedToken;
 import fr.matthieu.chatop.service.JWTService;
+import fr.matthieu.chatop.service.RefreshTokenService;
 import fr.matthieu.chatop.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -27,6 +32,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static fr.matthieu.chatop.common.ApiRoutes.*;
 
@@ -42,48 +48,71 @@ public class AuthController {
 	public JWTService jwtService;
     private final UserService userService;
 	private final AuthenticationManager authenticationManager;
+	private final PasswordHashingExecutor passwordHashingExecutor;
+	private final SessionRegistry sessionRegistry;
+	private final RefreshTokenService refreshTokenService;
 
 	@Autowired
-	public AuthController(UserService userService, AuthenticationManager authenticationManager, JWTService jwtService) {
+	public AuthController(UserService userService, AuthenticationManager authenticationManager, JWTService jwtService, PasswordHashingExecutor passwordHashingExecutor, SessionRegistry sessionRegistry, RefreshTokenService refreshTokenService) {
 		this.jwtService = jwtService;
 		this.userService = userService;
 		this.authenticationManager = authenticationManager;
+		this.passwordHashingExecutor = passwordHashingExecutor;
+		this.sessionRegistry = sessionRegistry;
+		this.refreshTokenService = refreshTokenService;
 	}
 
 	/**
-	 * Logs in a user by validating credentials and generating a JWT token.
+	 * Logs in a user by validating credentials and generating a JWT token and a refresh token.
+	 * <p>
+	 * 		The credentials are verified on the {@link PasswordHashingExecutor}, not on the request thread.
+	 * </p>
 	 *
 	 * @param authenticationDTO A DTO containing the user's username and password.
 	 * @return A {@link ResponseEntity} containing the JWT token if the credentials are valid,
-	 *         or an error response with status 401 if authentication fails.
+	 *         an error response with status 401 if authentication fails,
+	 *         or status 503 if too many logins are already being processed.
 	 */
 	@PostMapping(LOGIN_URL)
 	@Operation(
 			summary = "User login",
-			description = "Authenticates a user with their credentials and returns a JWT token if the login is successful.",
+			description = "Authenticates a user with their credentials and returns a JWT token and a refresh token if the login is successful.",
 			responses = {
 					@ApiResponse(
 							responseCode = "200",
-							description = "Successful authentication. Returns a JWT token.",
+							description = "Successful authentication. Returns a JWT token and a refresh token.",
 							content = @Content(mediaType = "application/json", schema = @Schema(implementation = AuthenticationDTO.class))
 					),
 					@ApiResponse(
 							responseCode = "401",
 							description = "Unauthorized. Invalid username or password.",
 							content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))
+					),
+					@ApiResponse(
+							responseCode = "503",
+							description = "Service Unavailable. Too many authentication requests, retry after the delay given in the Retry-After header.",
+							content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))
 					)
 			}
 	)
-	public ResponseEntity<Map<String, String>> login(@RequestBody AuthenticationDTO authenticationDTO) {
+	public CompletableFuture<ResponseEntity<Map<String, String>>> login(@RequestBody AuthenticationDTO authenticationDTO) {
+		return passwordHashingExecutor.submit(() -> authenticate(authenticationDTO));
+	}
+
+	/**
+	 * Validates the credentials of a user and generates a JWT token.
+	 *
+	 * @param authenticationDTO A DTO containing the user's username and password.
+	 * @return A {@link ResponseEntity} containing the JWT token or an error response.
+	 */
+	private ResponseEntity<Map<String, String>> authenticate(AuthenticationDTO authenticationDTO) {
 		try {
 			Authentication authentication = authenticationManager.authenticate(
 					new UsernamePasswordAuthenticationToken(authenticationDTO.email(), authenticationDTO.password())
 			);
 			if (authentication.isAuthenticated()) {
 				UserEntity userEntity = (UserEntity) authentication.getPrincipal();
-				userService.incrementTokenVersion(userEntity);
-				String token = jwtService.generate(userEntity);
-				return ResponseEntity.ok().body(Map.of("token", token));
+				return ResponseEntity.ok().body(userService.issueTokens(userEntity));
 			} else {
 				return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", ResponseMessages.INVALID_CREDENTIALS));
 			}
@@ -95,34 +124,53 @@ public class AuthController {
 
 	/**
 	 * Registers a new user and generates a JWT token for the newly registered account.
+	 * <p>
+	 * 		The password is hashed on the {@link PasswordHashingExecutor}, not on the request thread.
+	 * </p>
 	 *
 	 * @param registerDTO A DTO containing user registration details such as username, password, and email.
 	 * @return A {@link ResponseEntity} containing the JWT token if registration is successful,
-	 *         or an error response with status 400 if registration fails.
+	 *         an error response with status 400 if registration fails,
+	 *         or status 503 if too many registrations are already being processed.
 	 */
 	@PostMapping(REGISTER_URL)
 	@Operation(
 			summary = "User registration",
-			description = "Registers a new user and returns a JWT token for the newly created account.",
+			description = "Registers a new user and returns a JWT token and a refresh token for the newly created account.",
 			responses = {
 					@ApiResponse(
 							responseCode = "200",
-							description = "Successful registration. Returns a JWT token.",
+							description = "Successful registration. Returns a JWT token and a refresh token.",
 							content = @Content(mediaType = "application/json", schema = @Schema(implementation = RegisterDTO.class))
 					),
 					@ApiResponse(
 							responseCode = "400",
 							description = "Bad Request. Registration failed due to invalid data.",
 							content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))
+					),
+					@ApiResponse(
+							responseCode = "503",
+							description = "Service Unavailable. Too many authentication requests, retry after the delay given in the Retry-After header.",
+							content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))
 					)
 			}
 	)
-	public ResponseEntity<Map<String, String>> register(@Valid @RequestBody RegisterDTO registerDTO) {
+	public CompletableFuture<ResponseEntity<Map<String, String>>> register(@Valid @RequestBody RegisterDTO registerDTO) {
+		return passwordHashingExecutor.submit(() -> registerUser(registerDTO));
+	}
+
+	/**
+	 * Registers a new user and generates a JWT token.
+	 *
+	 * @param registerDTO A DTO containing user registration details.
+	 * @return A {@link ResponseEntity} containing the JWT token or an error response.
+	 */
+	private ResponseEntity<Map<String, String>> registerUser(RegisterDTO registerDTO) {
 		try {
-			String token = userService.register(registerDTO);
+			Map<String, String> tokens = userService.register(registerDTO);
 
-			if(token != null) {
-				return  ResponseEntity.ok(Map.of("token", token));
+			if(tokens != null) {
+				return  ResponseEntity.ok(tokens);
 			} else {
 				return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", ResponseMessages.REGISTER_FAILED));
 			}
@@ -133,6 +181,37 @@ public class AuthController {
 		}
 	}
 
+	/**
+	 * Exchanges a refresh token for a new JWT token and a new refresh token.
+	 * <p>
+	 * 		The presented refresh token is consumed: presenting it again revokes the login session.
+	 * </p>
+	 *
+	 * @param refreshTokenDTO A DTO containing the refresh token.
+	 * @return A {@link ResponseEntity} containing the new JWT token and refresh token,
+	 *         or an error response with status 401 if the refresh token is invalid.
+	 */
+	@PostMapping(REFRESH_URL)
+	@Operation(
+			summary = "Refresh the JWT token",
+			description = "Exchanges a refresh token for a new JWT token and a new refresh token, without the password.",
+			responses = {
+					@ApiResponse(
+							responseCode = "200",
+							description = "Successful refresh. Returns a JWT token and a refresh token.",
+							content = @Content(mediaType = "application/json", schema = @Schema(implementation = RefreshTokenDTO.class))
+					),
+					@ApiResponse(
+							responseCode = "401",
+							description = "Unauthorized. Unknown, expired, revoked or already used refresh token.",
+							content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))
+					)
+			}
+	)
+	public ResponseEntity<Map<String, String>> refresh(@Valid @RequestBody RefreshTokenDTO refreshTokenDTO) {
+		return ResponseEntity.ok().body(refreshTokenService.refresh(refreshTokenDTO.refreshToken()));
+	}
+
 	/**
 	 * Retrieves the currently authenticated user's information.
 	 *
@@ -160,4 +239,65 @@ public class AuthController {
 	public ResponseEntity<UserDTO> getUser() {
 		return ResponseEntity.ok().body(userService.getUserResponseDTO());
 	}
+
+	/**
+	 * Logs out the current device by revoking the session of the JWT token used for the request.
+	 * Sessions opened on other devices stay valid.
+	 *
+	 * @param authentication The authentication of the current request.
+	 * @return A {@link ResponseEntity} containing a success message.
+	 */
+	@PostMapping(LOGOUT_URL)
+	@Operation(
+			summary = "User logout",
+			description = "Revokes the session of the JWT token used for the request. Requires a valid JWT token.",
+			security = @SecurityRequirement(name = "bearerAuth"),
+			responses = {
+					@ApiResponse(
+							responseCode = "200",
+							description = "Successful logout."
+					),
+					@ApiResponse(
+							responseCode = "401",
+							description = "Unauthorized. Invalid or missing JWT token.",
+							content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))
+					)
+			}
+	)
+	public ResponseEntity<Map<String, String>> logout(Authentication authentication) {
+		if (authentication != null && authentication.getDetails() instanceof VerifiedToken verifiedToken) {
+			sessionRegistry.revoke(verifiedToken.sessionId());
+		}
+		return ResponseEntity.ok().body(Map.of("message", ResponseMessages.LOGGED_OUT));
+	}
+
+	/**
+	 * Logs the authenticated user out of every device.
+	 * <p>
+	 * 		The token version of the user is incremented, so every access and refresh token issued so far is rejected.
+	 * </p>
+	 *
+	 * @return A {@link ResponseEntity} containing a success message.
+	 */
+	@PostMapping(LOGOUT_ALL_URL)
+	@Operation(
+			summary = "Logout of every device",
+			description = "Revokes every access and refresh token of the authenticated user. Requires a valid JWT token.",
+			security = @SecurityRequirement(name = "bearerAuth"),
+			responses = {
+					@ApiResponse(
+							responseCode = "200",
+							description = "Successful logout of every device."
+					),
+					@ApiResponse(
+							responseCode = "401",
+							description = "Unauthorized. Invalid or missing JWT token.",
+							content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))
+					)
+			}
+	)
+	public ResponseEntity<Map<String, String>> logoutEverywhere() {
+		userService.logoutEverywhere();
+		return ResponseEntity.ok().body(Map.of("message", ResponseMessages.LOGGED_OUT_EVERYWHERE));
+	}
 }
\ No newline at end of file
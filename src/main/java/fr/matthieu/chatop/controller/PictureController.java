@@ -0,0 +1,180 @@
+package fr.matthieu.chatop.controller;
+
+import fr.matthieu.chatop.cache.PictureFileCache;
+import fr.matthieu.chatop.cache.PictureFileCache.OpenPicture;
+import fr.matthieu.chatop.service.UploadService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.swagger.v3.oas.annotations.Hidden;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves the uploaded rental pictures.
+ * <p>
+ * 		Picture names are unique and never reused, so responses are cacheable forever ({@code immutable}).
+ * 		Conditional ({@code If-None-Match}, {@code If-Modified-Since}) and single range requests are supported.
+ * 		On Tomcat, the body is sent with {@code sendfile}: the kernel copies the file to the socket without
+ * 		going through the JVM. Pictures under 48 KB, and containers without sendfile, fall back to copying
+ * 		the body from a cached open channel to the response stream, through a heap buffer.
+ * </p>
+ */
+@Slf4j
+@Hidden
+@RestController
+public class PictureController {
+
+	private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+	private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+	private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+	private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+	// Below this size, a plain copy is as fast as setting up sendfile (Tomcat's DefaultServlet threshold)
+	private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
+	private static final String CACHE_CONTROL = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable().getHeaderValue();
+
+	private final UploadService uploadService;
+	private final PictureFileCache pictureFileCache;
+	private final Counter sendfileCounter;
+	private final Counter copyCounter;
+
+	@Autowired
+	public PictureController(UploadService uploadService, PictureFileCache pictureFileCache, MeterRegistry meterRegistry) {
+		this.uploadService = uploadService;
+		this.pictureFileCache = pictureFileCache;
+		this.sendfileCounter = Counter.builder("uploads.picture.served").tag("transfer", "sendfile").register(meterRegistry);
+		this.copyCounter = Counter.builder("uploads.picture.served").tag("transfer", "copy").register(meterRegistry);
+	}
+
+	/**
+	 * Sends an uploaded picture, or the requested range of it.
+	 *
+	 * @param filename The name of the picture.
+	 * @param request  The current request.
+	 * @param response The response the picture is written to.
+	 * @throws IOException If the picture cannot be read or the response cannot be written.
+	 */
+	@GetMapping("/${file.upload-relative-path}/{filename:.+}")
+	public void getPicture(@PathVariable String filename, HttpServletRequest request, HttpServletResponse response) throws IOException {
+		Path path = uploadService.resolvePicture(filename);
+		if (path == null) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+
+		OpenPicture picture;
+		try {
+			picture = pictureFileCache.acquire(path);
+		} catch (NoSuchFileException e) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+
+		try {
+			response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+			response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+			// Sets the ETag and Last-Modified headers, and the 304 status when they match the conditional headers
+			if (new ServletWebRequest(request, response).checkNotModified(picture.etag(), picture.lastModified())) {
+				return;
+			}
+			response.setContentType(MediaTypeFactory.getMediaType(filename).orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+
+			long start = 0;
+			long end = picture.size() - 1;
+			HttpRange range = requestedRange(request, picture);
+			if (range != null) {
+				try {
+					start = range.getRangeStart(picture.size());
+					end = range.getRangeEnd(picture.size());
+				} catch (IllegalArgumentException e) {
+					response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + picture.size());
+					response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+					return;
+				}
+				response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+				response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + picture.size());
+			}
+			long length = end - start + 1;
+			response.setContentLengthLong(length);
+			if ("HEAD".equals(request.getMethod()) || length == 0) {
+				return;
+			}
+
+			if (length >= SENDFILE_MIN_SIZE && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+				// Tomcat sends the file once the request returns; the end position is exclusive
+				request.setAttribute(SENDFILE_FILENAME, picture.path().toString());
+				request.setAttribute(SENDFILE_START, start);
+				request.setAttribute(SENDFILE_END, end + 1);
+				sendfileCounter.increment();
+				return;
+			}
+			copy(picture, start, length, response.getOutputStream());
+			copyCounter.increment();
+		} finally {
+			picture.release();
+		}
+	}
+
+	/**
+	 * Returns the single range to send, or {@code null} to send the whole picture: when no range is requested,
+	 * when {@code If-Range} does not match the current ETag, or when several ranges are requested.
+	 * A malformed {@code Range} header is ignored.
+	 */
+	private HttpRange requestedRange(HttpServletRequest request, OpenPicture picture) {
+		String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+		if (rangeHeader == null) {
+			return null;
+		}
+		String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+		if (ifRange != null && !ifRange.equals(picture.etag())) {
+			return null;
+		}
+		try {
+			List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+			return ranges.size() == 1 ? ranges.get(0) : null;
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Copies a part of the picture with absolute reads, leaving the shared channel position untouched.
+	 * <p>
+	 * 		This is the fallback when sendfile is not used, and it is not zero-copy: the target wraps the servlet
+	 * 		output stream, so {@code transferTo} reads the file into a heap buffer and writes it to the stream.
+	 * </p>
+	 */
+	private void copy(OpenPicture picture, long start, long length, OutputStream outputStream) throws IOException {
+		WritableByteChannel target = Channels.newChannel(outputStream);
+		long position = start;
+		long remaining = length;
+		while (remaining > 0) {
+			long transferred = picture.channel().transferTo(position, remaining, target);
+			if (transferred <= 0) {
+				break;
+			}
+			position += transferred;
+			remaining -= transferred;
+		}
+	}
+}
@@ -1,24 +1,46 @@
 package fr.matthieu.chatop.controller;
 
+import fr.matthieu.chatop.cache.RentalListCache;
+import fr.matthieu.chatop.cache.RentalListCache.CachedPage;
 import fr.matthieu.chatop.common.ErrorResponse;
 import fr.matthieu.chatop.dto.CreateRentalDTO;
 import fr.matthieu.chatop.dto.RentalDTO;
+import fr.matthieu.chatop.dto.RentalAutocompleteQueryDTO;
+import fr.matthieu.chatop.dto.RentalFacetQueryDTO;
+import fr.matthieu.chatop.dto.RentalFacetsDTO;
+import fr.matthieu.chatop.dto.RentalPageDTO;
+import fr.matthieu.chatop.dto.RentalProjection;
+import fr.matthieu.chatop.dto.RentalSearchDTO;
+import fr.matthieu.chatop.dto.RentalSuggestionDTO;
+import fr.matthieu.chatop.dto.RentalTextSearchDTO;
+import fr.matthieu.chatop.dto.ResourceVersion;
 import fr.matthieu.chatop.model.RentalEntity;
+import fr.matthieu.chatop.service.RentalAutocompleteService;
+import fr.matthieu.chatop.service.RentalFacetService;
 import fr.matthieu.chatop.service.RentalService;
+import fr.matthieu.chatop.service.RentalSimilarityService;
+import fr.matthieu.chatop.service.RentalTextSearchService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
+import org.springdoc.core.annotations.ParameterObject;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
@@ -36,27 +58,107 @@ import static fr.matthieu.chatop.common.ResponseMessages.RENTAL_UPDATED;
 public class RentalController {
 
 	private final RentalService rentalService;
+	private final RentalListCache rentalListCache;
+	private final RentalFacetService rentalFacetService;
+	private final RentalTextSearchService rentalTextSearchService;
+	private final RentalAutocompleteService rentalAutocompleteService;
+	private final RentalSimilarityService rentalSimilarityService;
 
 	@Autowired
-	public RentalController(RentalService rentalService) {
+	public RentalController(RentalService rentalService, RentalListCache rentalListCache, RentalFacetService rentalFacetService,
+							RentalTextSearchService rentalTextSearchService, RentalAutocompleteService rentalAutocompleteService,
+							RentalSimilarityService rentalSimilarityService) {
 		this.rentalService = rentalService;
+		this.rentalListCache = rentalListCache;
+		this.rentalFacetService = rentalFacetService;
+		this.rentalTextSearchService = rentalTextSearchService;
+		this.rentalAutocompleteService = rentalAutocompleteService;
+		this.rentalSimilarityService = rentalSimilarityService;
 	}
 
 	/**
-	 * Retrieves a list of all rentals.
+	 * Retrieves a page of rentals.
+	 * <p>
+	 * 		Without parameters, the first page is returned. When the catalogue fits in one page,
+	 * 		the response is the complete list of rentals, without a {@code next_cursor}.
+	 * 		The response carries a strong ETag; a matching {@code If-None-Match} is answered with 304 Not Modified.
+	 * </p>
 	 *
-	 * @return A {@link ResponseEntity} containing the list of rentals or a message if no rentals are available.
+	 * @param cursor  The cursor returned with the previous page, if any.
+	 * @param limit   The maximum number of rentals to return, if any.
+	 * @param request The current request, used to evaluate {@code If-None-Match}.
+	 * @return A {@link ResponseEntity} containing the page of rentals or a message if no rentals are available,
+	 * 		or {@code null} when the response is 304 Not Modified.
 	 */
 	@GetMapping(RENTALS_URL)
 	@Operation(
 			summary = "Get all rentals",
-			description = "Fetches a list of all available rentals.",
+			description = "Fetches a page of available rentals. Pass the returned next_cursor to get the following page.",
 			security = @SecurityRequirement(name = "bearerAuth"),
 			responses = {
 					@ApiResponse(
 							responseCode = "200",
-							description = "Successful operation. Returns a list of rentals.",
-							content = @Content(mediaType = "application/json", schema = @Schema(implementation = RentalDTO.class))
+							description = "Successful operation. Returns a page of rentals.",
+							content = @Content(mediaType = "application/json", schema = @Schema(implementation = RentalPageDTO.class))
+					),
+					@ApiResponse(
+							responseCode = "304",
+							description = "Not Modified. The page matches the ETag sent in If-None-Match."
+					),
+					@ApiResponse(
+							responseCode = "400",
+							description = "Bad Request. Invalid pagination cursor.",
+							content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))
+					),
+					@ApiResponse(
+							responseCode = "401",
+							description = "Unauthorized. Invalid or missing JWT token.",
+							content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))
+					)
+			}
+	)
+	public ResponseEntity<byte[]> getAllRentals(
+			@Parameter(description = "The cursor returned with the previous page") @RequestParam(required = false) String cursor,
+			@Parameter(description = "The maximum number of rentals to return") @RequestParam(required = false) Integer limit,
+			WebRequest request) {
+		CachedPage page = rentalService.getRentalsPageJson(cursor, limit);
+		// Sets the ETag header, and the 304 status when it matches If-None-Match
+		if (request.checkNotModified(page.etag())) {
+			rentalListCache.recordNotModified(page);
+			return null;
+		}
+		return ResponseEntity.ok()
+				.contentType(MediaType.APPLICATION_JSON)
+				.body(page.body());
+	}
+
+	/**
+	 * Searches rentals by price, surface and owner.
+	 * <p>
+	 * 		When a {@code q} text is given, the names and descriptions are searched in full text and the
+	 * 		results are ranked by relevance, with the matching terms highlighted.
+	 * </p>
+	 *
+	 * @param rentalSearchDTO The search text, filters, sort and page, read from the query parameters.
+	 * @return A {@link ResponseEntity} containing the page of matching rentals.
+	 */
+	@GetMapping(RENTALS_SEARCH_URL)
+	@Operation(
+			summary = "Search rentals",
+			description = "Fetches the rentals matching the price, surface and owner filters, sorted and paginated. " +
+					"Pass the returned next_cursor with the same sort to get the following page. " +
+					"With q, returns the rentals matching the text ranked by relevance, in the text search format.",
+			security = @SecurityRequirement(name = "bearerAuth"),
+			responses = {
+					@ApiResponse(
+							responseCode = "200",
+							description = "Successful operation. Returns a page of matching rentals.",
+							content = @Content(mediaType = "application/json", schema = @Schema(oneOf = {RentalPageDTO.class, RentalTextSearchDTO.class}))
+					),
+					@ApiResponse(
+							responseCode = "400",
+							description = "Bad Request. Invalid filter, sort or pagination cursor.",
+							content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))
 					),
 					@ApiResponse(
 							responseCode = "401",
@@ -65,20 +167,132 @@ public class RentalController {
 					)
 			}
 	)
-	public ResponseEntity<?> getAllRentals() {
-		List<RentalDTO> rentals = rentalService.getAllRentalsDTO();
-		if (rentals.isEmpty()) {
-			return ResponseEntity.status(HttpStatus.OK)
-					.body(Map.of("message", "No rentals available"));
+	public ResponseEntity<?> searchRentals(@Valid @ParameterObject @ModelAttribute RentalSearchDTO rentalSearchDTO) {
+		if (rentalSearchDTO.q() != null && !rentalSearchDTO.q().isBlank()) {
+			return ResponseEntity.ok(rentalTextSearchService.search(rentalSearchDTO));
 		}
-		return ResponseEntity.ok().body(Map.of("rentals", rentals));
+		return ResponseEntity.ok(rentalService.searchRentals(rentalSearchDTO));
+	}
+
+	/**
+	 * Computes the price and surface facets of the rentals matching the given filters.
+	 * <p>
+	 * 		Answered from an in-memory snapshot of the rentals, without database access,
+	 * 		so it can be called on every filter change.
+	 * </p>
+	 *
+	 * @param rentalFacetQueryDTO The filters, histogram size and top rentals ranking, read from the query parameters.
+	 * @return A {@link ResponseEntity} containing the facets.
+	 */
+	@GetMapping(RENTALS_FACETS_URL)
+	@Operation(
+			summary = "Get rental facets",
+			description = "Fetches the number of matching rentals, the price and surface histograms and the top matching rentals.",
+			security = @SecurityRequirement(name = "bearerAuth"),
+			responses = {
+					@ApiResponse(
+							responseCode = "200",
+							description = "Successful operation. Returns the facets.",
+							content = @Content(mediaType = "application/json", schema = @Schema(implementation = RentalFacetsDTO.class))
+					),
+					@ApiResponse(
+							responseCode = "400",
+							description = "Bad Request. Invalid filter or ranking.",
+							content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))
+					),
+					@ApiResponse(
+							responseCode = "401",
+							description = "Unauthorized. Invalid or missing JWT token.",
+							content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))
+					)
+			}
+	)
+	public ResponseEntity<RentalFacetsDTO> getRentalFacets(@Valid @ParameterObject @ModelAttribute RentalFacetQueryDTO rentalFacetQueryDTO) {
+		return ResponseEntity.ok(rentalFacetService.getFacets(rentalFacetQueryDTO));
+	}
+
+	/**
+	 * Suggests the rentals whose name starts with the typed prefix.
+	 * <p>
+	 * 		Answered from an in-memory trie of the rental names, without database access,
+	 * 		so it can be called on every keystroke.
+	 * </p>
+	 *
+	 * @param rentalAutocompleteQueryDTO The typed prefix, number of suggestions and order, read from the query parameters.
+	 * @return A {@link ResponseEntity} containing the suggested rentals.
+	 */
+	@GetMapping(RENTALS_AUTOCOMPLETE_URL)
+	@Operation(
+			summary = "Suggest rental names",
+			description = "Fetches the most recent or cheapest rentals whose name starts with the typed prefix.",
+			security = @SecurityRequirement(name = "bearerAuth"),
+			responses = {
+					@ApiResponse(
+							responseCode = "200",
+							description = "Successful operation. Returns the suggested rentals.",
+							content = @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = RentalSuggestionDTO.class)))
+					),
+					@ApiResponse(
+							responseCode = "400",
+							description = "Bad Request. Missing prefix or invalid limit or order.",
+							content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))
+					),
+					@ApiResponse(
+							responseCode = "401",
+							description = "Unauthorized. Invalid or missing JWT token.",
+							content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))
+					)
+			}
+	)
+	public ResponseEntity<List<RentalSuggestionDTO>> autocompleteRentals(@Valid @ParameterObject @ModelAttribute RentalAutocompleteQueryDTO rentalAutocompleteQueryDTO) {
+		return ResponseEntity.ok(rentalAutocompleteService.suggest(rentalAutocompleteQueryDTO));
+	}
+
+	/**
+	 * Streams all rentals.
+	 * <p>
+	 * 		Meant for consumers needing the complete catalogue: the rentals are written to the response
+	 * 		as they are read from the database, in the {@code {"rentals": [...]}} format.
+	 * </p>
+	 *
+	 * @param response The HTTP response the rentals are written to.
+	 * @throws IOException If writing the response fails.
+	 */
+	@GetMapping(RENTALS_STREAM_URL)
+	@Operation(
+			summary = "Stream all rentals",
+			description = "Streams the complete list of rentals, without pagination.",
+			security = @SecurityRequirement(name = "bearerAuth"),
+			responses = {
+					@ApiResponse(
+							responseCode = "200",
+							description = "Successful operation. Returns all rentals.",
+							content = @Content(mediaType = "application/json", schema = @Schema(implementation = RentalDTO.class))
+					),
+					@ApiResponse(
+							responseCode = "401",
+							description = "Unauthorized. Invalid or missing JWT token.",
+							content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))
+					)
+			}
+	)
+	public void streamAllRentals(HttpServletResponse response) throws IOException {
+		response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+		response.setCharacterEncoding("UTF-8");
+		rentalService.writeAllRentals(response.getOutputStream());
 	}
 
 	/**
 	 * Retrieves the details of a specific rental by its ID.
+	 * <p>
+	 * 		The response carries an ETag (the rental version) and a Last-Modified date.
+	 * 		The rental and its version are read with a single statement; matching conditional headers
+	 * 		are answered with 304 Not Modified.
+	 * </p>
 	 *
 	 * @param id The ID of the rental to retrieve.
-	 * @return A {@link ResponseEntity} containing the rental details.
+	 * @param request The current request, used to evaluate the conditional headers.
+	 * @return A {@link ResponseEntity} containing the rental details, or {@code null} when the response is 304 Not Modified.
 	 */
 	@GetMapping(RENTAL_ID_URL)
 	@Operation(
@@ -91,6 +305,10 @@ public class RentalController {
 				description = "Successful operation",
 				content = @Content(mediaType = "application/json", schema = @Schema(implementation = RentalDTO.class))
 			),
+			@ApiResponse(
+					responseCode = "304",
+					description = "Not Modified. The rental matches the ETag or date sent in the conditional headers."
+			),
 			@ApiResponse(
 					responseCode = "401",
 					description = "Unauthorized. Invalid or missing JWT token.",
@@ -103,9 +321,49 @@ public class RentalController {
 			)
 		}
 	)
-	public ResponseEntity<RentalDTO> getRentalById(@PathVariable Long id) {
-		RentalDTO rental = rentalService.getRentalDTOById(id);
-		return ResponseEntity.ok(rental);
+	public ResponseEntity<RentalDTO> getRentalById(@PathVariable Long id, WebRequest request) {
+		RentalProjection rental = rentalService.getRentalProjectionById(id);
+		ResourceVersion version = rental.resourceVersion();
+		if (request.checkNotModified(version.etag(), version.lastModified())) {
+			return null;
+		}
+		return ResponseEntity.ok(rental.toDTO());
+	}
+
+	/**
+	 * Retrieves the rentals most similar to a specific rental by price, surface and creation date.
+	 *
+	 * @param id    The ID of the reference rental.
+	 * @param limit The maximum number of rentals to return, if any.
+	 * @return A {@link ResponseEntity} containing the similar rentals, closest first.
+	 */
+	@GetMapping(RENTAL_SIMILAR_URL)
+	@Operation(
+		summary = "Get similar rentals",
+		description = "Fetches the rentals closest to a specific rental by price, surface and creation date, closest first.",
+		security = @SecurityRequirement(name = "bearerAuth"),
+		responses = {
+			@ApiResponse(
+				responseCode = "200",
+				description = "Successful operation. Returns the similar rentals.",
+				content = @Content(mediaType = "application/json", schema = @Schema(implementation = RentalPageDTO.class))
+			),
+			@ApiResponse(
+				responseCode = "401",
+				description = "Unauthorized. Invalid or missing JWT token.",
+				content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))
+			),
+			@ApiResponse(
+				responseCode = "404",
+				description = "Rental not found.",
+				content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))
+			)
+		}
+	)
+	public ResponseEntity<RentalPageDTO> getSimilarRentals(
+			@PathVariable Long id,
+			@Parameter(description = "The maximum number of rentals to return") @RequestParam(required = false) Integer limit) {
+		return ResponseEntity.ok(rentalSimilarityService.getSimilarRentals(id, limit));
 	}
 
 	/**
@@ -149,9 +407,14 @@ public class RentalController {
 
 	/**
 	 * Updates the details of a specific rental by its ID.
+	 * <p>
+	 * 		When an {@code If-Match} header is sent, the update is only applied if it matches
+	 * 		the current ETag of the rental. The response carries the ETag of the updated rental.
+	 * </p>
 	 *
 	 * @param id              The ID of the rental to update.
 	 * @param createRentalDTO A DTO containing the updated details of the rental.
+	 * @param ifMatch         The ETags the rental is expected to match, if any.
 	 * @return A {@link ResponseEntity} containing a success message.
 	 */
 	@PutMapping(RENTAL_ID_URL)
@@ -174,12 +437,21 @@ public class RentalController {
 					responseCode = "401",
 					description = "Unauthorized. Invalid or missing JWT token.",
 					content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))
+			),
+			@ApiResponse(
+					responseCode = "412",
+					description = "Precondition Failed. The rental was modified since the ETag sent in If-Match.",
+					content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))
 			)
 		}
 	)
-	public ResponseEntity<Map<String, String>> updateRental(@PathVariable Long id, @Valid @ModelAttribute CreateRentalDTO createRentalDTO) {
+	public ResponseEntity<Map<String, String>> updateRental(@PathVariable Long id, @Valid @ModelAttribute CreateRentalDTO createRentalDTO,
+															@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 		RentalEntity rentalEntity = rentalService.checkOwner(id);
+		rentalService.checkIfMatch(rentalEntity, ifMatch);
 		rentalService.UpdateRental(rentalEntity, createRentalDTO);
-		return ResponseEntity.ok().body(Map.of("message", RENTAL_UPDATED));
+		return ResponseEntity.ok()
+				.eTag(rentalService.getRentalVersion(rentalEntity).etag())
+				.body(Map.of("message", RENTAL_UPDATED));
 	}
 }
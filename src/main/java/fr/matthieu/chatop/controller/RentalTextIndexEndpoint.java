@@ -0,0 +1,50 @@
+package fr.matthieu.chatop.controller;
+
+import fr.matthieu.chatop.index.RentalTextIndex;
+import fr.matthieu.chatop.service.RentalTextSearchService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Actuator endpoint ({@code /actuator/rentaltextindex}) to inspect and rebuild the full-text rental index.
+ * Like every actuator endpoint, it is only served on the management port, which listens on the loopback interface by default.
+ */
+@Component
+@Endpoint(id = "rentaltextindex")
+public class RentalTextIndexEndpoint {
+
+	private final RentalTextIndex rentalTextIndex;
+	private final RentalTextSearchService rentalTextSearchService;
+
+	@Autowired
+	public RentalTextIndexEndpoint(RentalTextIndex rentalTextIndex, RentalTextSearchService rentalTextSearchService) {
+		this.rentalTextIndex = rentalTextIndex;
+		this.rentalTextSearchService = rentalTextSearchService;
+	}
+
+	/**
+	 * Returns the number of indexed rentals.
+	 *
+	 * @return The status of the index.
+	 */
+	@ReadOperation
+	public Map<String, Object> status() {
+		return Map.of("documents", rentalTextIndex.numDocs());
+	}
+
+	/**
+	 * Rebuilds the index from the database ({@code POST /actuator/rentaltextindex}).
+	 *
+	 * @return The number of indexed rentals, or a notice if a rebuild is already running.
+	 */
+	@WriteOperation
+	public Map<String, Object> rebuild() {
+		long count = rentalTextSearchService.rebuild();
+		return count < 0 ? Map.of("status", "already rebuilding") : Map.of("status", "rebuilt", "documents", count);
+	}
+}
@@ -1,6 +1,7 @@
 package fr.matthieu.chatop.controller;
 
 import fr.matthieu.chatop.common.ErrorResponse;
+import fr.matthieu.chatop.dto.ResourceVersion;
 import fr.matthieu.chatop.dto.UserDTO;
 import fr.matthieu.chatop.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -14,6 +15,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import static fr.matthieu.chatop.common.ApiRoutes.USER_ID_URL;
 
@@ -35,10 +37,16 @@ public class UserController {
 
 	/**
 	 * Retrieves the details of a specific user by their ID.
+	 * <p>
+	 * 		The response carries an ETag and a Last-Modified date derived from the last update of the user.
+	 * 		Matching conditional headers are answered with 304 Not Modified from a version lookup only.
+	 * </p>
 	 *
-	 * @param id The ID of the user to retrieve.
+	 * @param id      The ID of the user to retrieve.
+	 * @param request The current request, used to evaluate the conditional headers.
 	 * @return A {@link ResponseEntity} containing the user details if found,
 	 *         or an error response if the user does not exist or if the request is invalid.
+	 *         {@code null} when the response is 304 Not Modified.
 	 */
 	@GetMapping(USER_ID_URL)
 	@Operation(
@@ -51,6 +59,10 @@ public class UserController {
 							description = "Rental created successfully",
 							content = @Content(mediaType = "application/json", schema = @Schema(implementation = UserDTO.class))
 					),
+					@ApiResponse(
+							responseCode = "304",
+							description = "Not Modified. The user matches the ETag or date sent in the conditional headers."
+					),
 					@ApiResponse(
 							responseCode = "400",
 							description = "Bad Request. Errors include: missing or invalid data",
@@ -63,8 +75,12 @@ public class UserController {
 					)
 			}
 	)
-	public ResponseEntity<UserDTO> getUserById(@PathVariable Long id) {
+	public ResponseEntity<UserDTO> getUserById(@PathVariable Long id, WebRequest request) {
 		log.info("Get user by ID: {}", id);
+		ResourceVersion version = userService.getUserVersion(id);
+		if (request.checkNotModified(version.etag(), version.lastModified())) {
+			return null;
+		}
 		UserDTO user = userService.getUserDTOById(id);
 		return ResponseEntity.ok().body(user);
 	}
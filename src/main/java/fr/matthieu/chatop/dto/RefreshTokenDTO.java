@@ -0,0 +1,20 @@
+package fr.matthieu.chatop.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotBlank;
+
+/**
+ * Data Transfer Object (DTO) carrying a refresh token.
+ *
+ * @param refreshToken The refresh token received at login, registration or on the previous refresh.
+ */
+@Schema(name = "Refresh", description = "Data required to obtain a new access token")
+public record RefreshTokenDTO(
+
+		@Schema(description = "The refresh token", example = "Yb3k0y4m1Q2c8VhJpKzQ7wq9Zr6aT1uXe5sN0dLfG3o")
+		@NotBlank(message = "Refresh token is required")
+		@JsonProperty("refresh_token")
+		String refreshToken
+) {
+}
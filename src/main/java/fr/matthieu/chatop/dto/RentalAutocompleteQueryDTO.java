@@ -0,0 +1,30 @@
+package fr.matthieu.chatop.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+
+/**
+ * Data Transfer Object (DTO) representing an autocomplete query on rental names.
+ */
+@Schema(name = "Rental autocomplete query", description = "Represents the typed prefix of a rental name")
+public record RentalAutocompleteQueryDTO(
+
+		@Schema(description = "The typed beginning of the name; case, accents and repeated spaces are ignored", example = "sea v")
+		@NotBlank(message = "The prefix is required.")
+		@Size(max = 100, message = "The prefix must not exceed {max} characters.")
+		String q,
+
+		@Schema(description = "The maximum number of suggestions", defaultValue = "10")
+		@Min(value = 1, message = "At least {value} suggestion is required.")
+		@Max(value = 20, message = "At most {value} suggestions are allowed.")
+		Integer limit,
+
+		@Schema(description = "The order of the suggestions: most recent or cheapest first", allowableValues = {"recent", "price"}, defaultValue = "recent")
+		@Pattern(regexp = "recent|price", message = "The sort must be recent or price.")
+		String sort
+) {
+}
@@ -8,7 +8,7 @@ import java.math.BigDecimal;
  * Data Transfer Object (DTO) representing the details of a rental property.
  * <p>
  * This DTO is used to transfer rental property data.
- * It includes information such as the rental's name, surface area, price, picture URL, description,
+ * It includes information such as the rental's name, surface area, price, picture URLs, description,
  * owner information, and timestamps for creation and updates.
  * </p>
  */
@@ -30,6 +30,18 @@ public record RentalDTO(
 		@Schema(description = "The URL of the rental property's picture file", example = "https://example.com/rental1.jpg")
 		String picture,
 
+		@Schema(description = "The URL of the picture resized for thumbnails, or of the original picture until it is generated", example = "https://example.com/rental1_w320.jpg")
+		String picture_thumbnail,
+
+		@Schema(description = "The URL of the picture resized for rental cards, or of the original picture until it is generated", example = "https://example.com/rental1_w640.jpg")
+		String picture_card,
+
+		@Schema(description = "The URL of the picture resized for the rental page, or of the original picture until it is generated", example = "https://example.com/rental1_w1280.jpg")
+		String picture_full,
+
+		@Schema(description = "The BlurHash of the picture, to show while it loads, or null until it is computed", example = "LEHV6nWB2yk8pyo0adR*.7kCMdnj")
+		String picture_placeholder,
+
 		@Schema(description = "A brief description of the rental property", example = "A cozy apartment with a sea view")
 		String description,
 
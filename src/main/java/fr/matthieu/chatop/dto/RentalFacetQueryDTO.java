@@ -0,0 +1,54 @@
+package fr.matthieu.chatop.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.PositiveOrZero;
+
+import java.math.BigDecimal;
+
+/**
+ * Data Transfer Object (DTO) representing the filters of a facet query on rentals.
+ */
+@Schema(name = "Rental facet query", description = "Represents the filters of a rental facet query")
+public record RentalFacetQueryDTO(
+
+		@Schema(description = "The minimum price per night in euros", example = "50")
+		@PositiveOrZero(message = "The minimum price must be positive.")
+		BigDecimal minPrice,
+
+		@Schema(description = "The maximum price per night in euros", example = "200")
+		@PositiveOrZero(message = "The maximum price must be positive.")
+		BigDecimal maxPrice,
+
+		@Schema(description = "The minimum surface area in square meters", example = "30")
+		@PositiveOrZero(message = "The minimum surface must be positive.")
+		Double minSurface,
+
+		@Schema(description = "The maximum surface area in square meters", example = "120")
+		@PositiveOrZero(message = "The maximum surface must be positive.")
+		Double maxSurface,
+
+		@Schema(description = "The unique identifier of the owner", example = "10")
+		Long ownerId,
+
+		@Schema(description = "The number of buckets of the price and surface histograms", defaultValue = "10")
+		@Min(value = 1, message = "At least {value} bucket is required.")
+		@Max(value = 100, message = "At most {value} buckets are allowed.")
+		Integer buckets,
+
+		@Schema(description = "The number of top rentals to return", defaultValue = "10")
+		@Min(value = 0, message = "The number of top rentals must be positive.")
+		@Max(value = 100, message = "At most {value} top rentals are allowed.")
+		Integer top,
+
+		@Schema(description = "The field ranking the top rentals", allowableValues = {"price", "surface"}, defaultValue = "price")
+		@Pattern(regexp = "price|surface", message = "The sort must be price or surface.")
+		String sort,
+
+		@Schema(description = "The ranking direction", allowableValues = {"asc", "desc"}, defaultValue = "asc")
+		@Pattern(regexp = "asc|desc", message = "The order must be asc or desc.")
+		String order
+) {
+}
@@ -0,0 +1,51 @@
+package fr.matthieu.chatop.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Data Transfer Object (DTO) representing the facets of the rentals matching a query.
+ *
+ * @param count   The number of rentals matching every filter.
+ * @param price   The price histogram, ignoring the price filter.
+ * @param surface The surface histogram, ignoring the surface filter.
+ * @param top     The top rentals matching every filter, best first.
+ */
+@Schema(name = "Rental facets", description = "Represents the counts and histograms of the rentals matching a query")
+public record RentalFacetsDTO(
+
+		@Schema(description = "The number of matching rentals", example = "42")
+		long count,
+
+		@Schema(description = "The price histogram, computed without the price filter")
+		List<Bucket> price,
+
+		@Schema(description = "The surface histogram, computed without the surface filter")
+		List<Bucket> surface,
+
+		@Schema(description = "The top matching rentals, best first")
+		List<RankedRental> top
+) {
+
+	/**
+	 * A histogram bucket, covering {@code [from, to)}.
+	 *
+	 * @param from  The lower bound of the bucket.
+	 * @param to    The upper bound of the bucket.
+	 * @param count The number of rentals in the bucket.
+	 */
+	@Schema(name = "Facet bucket", description = "Represents a histogram bucket")
+	public record Bucket(double from, double to, long count) {}
+
+	/**
+	 * A top rental with its ranking values.
+	 *
+	 * @param id      The ID of the rental.
+	 * @param price   The price of the rental.
+	 * @param surface The surface of the rental.
+	 */
+	@Schema(name = "Ranked rental", description = "Represents a top rental")
+	public record RankedRental(Long id, BigDecimal price, Double surface) {}
+}
@@ -0,0 +1,26 @@
+package fr.matthieu.chatop.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object (DTO) representing one page of rentals.
+ *
+ * @param rentals    The rentals of the page.
+ * @param nextCursor The opaque cursor to request the next page, or {@code null} on the last page.
+ */
+@Schema(name = "Rental page", description = "Represents one page of rentals")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record RentalPageDTO(
+
+		@Schema(description = "The rentals of the page")
+		List<RentalDTO> rentals,
+
+		@Schema(description = "The cursor of the next page, absent on the last page", example = "MjAyNC0wMS0xNVQxMDozMDowMHw0Mg")
+		@JsonProperty("next_cursor")
+		String nextCursor
+) {
+}
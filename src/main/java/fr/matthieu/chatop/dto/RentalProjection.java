@@ -0,0 +1,80 @@
+package fr.matthieu.chatop.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Read-only projection of a rental, selected column by column by the repository.
+ * <p>
+ * 		Unlike {@link fr.matthieu.chatop.model.RentalEntity}, it is not managed by the persistence context
+ * 		and only holds the owner ID, read from the {@code owner_id} column without joining the users table.
+ * </p>
+ *
+ * @param id                 The ID of the rental.
+ * @param name               The name of the rental.
+ * @param surface            The surface of the rental.
+ * @param price              The price of the rental.
+ * @param picture            The picture URL of the rental.
+ * @param pictureThumbnail   The URL of the thumbnail of the picture, {@code null} until it is generated.
+ * @param pictureCard        The URL of the card-sized picture, {@code null} until it is generated.
+ * @param pictureFull        The URL of the page-sized picture, {@code null} until it is generated.
+ * @param picturePlaceholder The BlurHash of the picture, {@code null} until it is computed.
+ * @param description        The description of the rental.
+ * @param ownerId            The ID of the owner.
+ * @param createdAt          The creation date of the rental.
+ * @param updatedAt          The last update date of the rental, if any.
+ * @param version            The optimistic locking version of the rental.
+ */
+public record RentalProjection(
+		Long id,
+		String name,
+		Double surface,
+		BigDecimal price,
+		String picture,
+		String pictureThumbnail,
+		String pictureCard,
+		String pictureFull,
+		String picturePlaceholder,
+		String description,
+		Long ownerId,
+		LocalDateTime createdAt,
+		LocalDateTime updatedAt,
+		Long version
+) {
+
+	private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy/MM/dd");
+
+	/**
+	 * Returns the version information of the rental, used to answer conditional requests.
+	 *
+	 * @return The {@link ResourceVersion} of the rental.
+	 */
+	public ResourceVersion resourceVersion() {
+		return new ResourceVersion(version, createdAt, updatedAt);
+	}
+
+	/**
+	 * Converts the projection into a {@link RentalDTO}.
+	 * The original picture stands for the resized copies not generated yet.
+	 *
+	 * @return A {@link RentalDTO} containing the rental details.
+	 */
+	public RentalDTO toDTO() {
+		return new RentalDTO(
+				id,
+				name,
+				surface,
+				price,
+				picture,
+				pictureThumbnail != null ? pictureThumbnail : picture,
+				pictureCard != null ? pictureCard : picture,
+				pictureFull != null ? pictureFull : picture,
+				picturePlaceholder,
+				description,
+				ownerId,
+				createdAt.format(DATE_FORMATTER),
+				updatedAt != null ? updatedAt.format(DATE_FORMATTER) : null
+		);
+	}
+}
@@ -0,0 +1,58 @@
+package fr.matthieu.chatop.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.PositiveOrZero;
+import jakarta.validation.constraints.Size;
+
+import java.math.BigDecimal;
+
+/**
+ * Data Transfer Object (DTO) representing the filters, sort and page of a rental search.
+ * <p>
+ * 		Every filter is optional. Results are ordered by the sort field, then by id,
+ * 		and paged with the cursor returned with the previous page.
+ * 		When a text is given, results are ranked by relevance instead.
+ * </p>
+ */
+@Schema(name = "Rental search", description = "Represents the criteria of a rental search")
+public record RentalSearchDTO(
+
+		@Schema(description = "Text searched in the rental names and descriptions; results are then ranked by relevance", example = "sea view")
+		@Size(max = 200, message = "The searched text must not exceed {max} characters.")
+		String q,
+
+		@Schema(description = "The minimum price per night in euros", example = "50")
+		@PositiveOrZero(message = "The minimum price must be positive.")
+		BigDecimal minPrice,
+
+		@Schema(description = "The maximum price per night in euros", example = "200")
+		@PositiveOrZero(message = "The maximum price must be positive.")
+		BigDecimal maxPrice,
+
+		@Schema(description = "The minimum surface area in square meters", example = "30")
+		@PositiveOrZero(message = "The minimum surface must be positive.")
+		Double minSurface,
+
+		@Schema(description = "The maximum surface area in square meters", example = "120")
+		@PositiveOrZero(message = "The maximum surface must be positive.")
+		Double maxSurface,
+
+		@Schema(description = "The unique identifier of the owner", example = "10")
+		Long ownerId,
+
+		@Schema(description = "The field to sort on", allowableValues = {"created_at", "price", "surface"}, defaultValue = "created_at")
+		@Pattern(regexp = "created_at|price|surface", message = "The sort must be one of created_at, price or surface.")
+		String sort,
+
+		@Schema(description = "The sort direction", allowableValues = {"asc", "desc"}, defaultValue = "asc")
+		@Pattern(regexp = "asc|desc", message = "The order must be asc or desc.")
+		String order,
+
+		@Schema(description = "The cursor returned with the previous page")
+		String cursor,
+
+		@Schema(description = "The maximum number of rentals to return", example = "20")
+		Integer limit
+) {
+}
@@ -0,0 +1,26 @@
+package fr.matthieu.chatop.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.math.BigDecimal;
+
+/**
+ * Data Transfer Object (DTO) representing a suggested rental name.
+ *
+ * @param id    The ID of the rental.
+ * @param name  The name of the rental.
+ * @param price The price of the rental.
+ */
+@Schema(name = "Rental suggestion", description = "Represents a rental whose name starts with the typed prefix")
+public record RentalSuggestionDTO(
+
+		@Schema(description = "The unique identifier of the rental", example = "1")
+		long id,
+
+		@Schema(description = "The name of the rental", example = "Seaside Apartment")
+		String name,
+
+		@Schema(description = "The price per night in euros", example = "150.0")
+		BigDecimal price
+) {
+}
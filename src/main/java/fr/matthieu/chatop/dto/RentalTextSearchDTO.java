@@ -0,0 +1,57 @@
+package fr.matthieu.chatop.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object (DTO) representing one page of full-text search results, ranked by relevance.
+ *
+ * @param results    The ranked results of the page.
+ * @param total      The number of matching rentals.
+ * @param nextCursor The opaque cursor to request the next page, or {@code null} on the last page.
+ */
+@Schema(name = "Rental text search", description = "Represents one page of full-text search results")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record RentalTextSearchDTO(
+
+		@Schema(description = "The results of the page, most relevant first")
+		List<Result> results,
+
+		@Schema(description = "The number of matching rentals", example = "42")
+		long total,
+
+		@Schema(description = "The cursor of the next page, absent on the last page")
+		@JsonProperty("next_cursor")
+		String nextCursor
+) {
+
+	/**
+	 * A ranked rental.
+	 *
+	 * @param rental               The rental.
+	 * @param score                The relevance score.
+	 * @param nameHighlight        The name with the matching terms wrapped in {@code <em>} tags, if any matches.
+	 * @param descriptionHighlight The best description fragment with the matching terms wrapped in {@code <em>} tags, if any matches.
+	 */
+	@Schema(name = "Rental text search result", description = "Represents a ranked rental")
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	public record Result(
+
+			@Schema(description = "The rental")
+			RentalDTO rental,
+
+			@Schema(description = "The relevance score", example = "3.2")
+			float score,
+
+			@Schema(description = "The HTML-escaped name, matching terms wrapped in <em> tags", example = "Seaside <em>Apartment</em>")
+			@JsonProperty("name_highlight")
+			String nameHighlight,
+
+			@Schema(description = "The HTML-escaped best description fragment, matching terms wrapped in <em> tags", example = "A cozy <em>apartment</em> with a sea view")
+			@JsonProperty("description_highlight")
+			String descriptionHighlight
+	) {}
+}
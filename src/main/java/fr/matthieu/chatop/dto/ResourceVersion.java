@@ -0,0 +1,45 @@
+package fr.matthieu.chatop.dto;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Version information of a stored resource, used to answer conditional requests
+ * without loading the resource itself.
+ *
+ * @param version   The optimistic locking version of the resource, or {@code null} if it has none.
+ * @param createdAt The creation date of the resource.
+ * @param updatedAt The last update date of the resource, if any.
+ */
+public record ResourceVersion(Long version, LocalDateTime createdAt, LocalDateTime updatedAt) {
+
+	/**
+	 * Creates the version information of a resource without optimistic locking version.
+	 *
+	 * @param createdAt The creation date of the resource.
+	 * @param updatedAt The last update date of the resource, if any.
+	 */
+	public ResourceVersion(LocalDateTime createdAt, LocalDateTime updatedAt) {
+		this(null, createdAt, updatedAt);
+	}
+
+	/**
+	 * Returns the strong ETag of the resource, quoted.
+	 * It is the version when the resource has one, and the last modification time otherwise.
+	 *
+	 * @return The ETag.
+	 */
+	public String etag() {
+		return "\"" + (version != null ? version : lastModified()) + "\"";
+	}
+
+	/**
+	 * Returns the last modification time of the resource.
+	 *
+	 * @return The last modification time, in milliseconds since the epoch.
+	 */
+	public long lastModified() {
+		LocalDateTime lastModified = updatedAt != null ? updatedAt : createdAt;
+		return lastModified.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+	}
+}
@@ -4,8 +4,10 @@ import fr.matthieu.chatop.common.ErrorResponse;
 import fr.matthieu.chatop.common.ResponseMessages;
 import io.jsonwebtoken.JwtException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -85,6 +87,19 @@ public class GlobalExceptionHandler {
 		return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ErrorResponse(e.getMessage()));
 	}
 
+	/**
+	 * Handles the {@link InvalidCursorException}.
+	 * This exception is thrown when a pagination cursor cannot be decoded.
+	 *
+	 * @param e The exception instance containing the error message.
+	 * @return A {@link ResponseEntity} with an error message and HTTP status 400 (Bad Request).
+	 */
+	@ExceptionHandler(InvalidCursorException.class)
+	public ResponseEntity<ErrorResponse> handleInvalidCursorException(InvalidCursorException e) {
+		log.info("Handling InvalidCursorException - Invalid pagination cursor.");
+		return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new ErrorResponse(e.getMessage()));
+	}
+
 	/**
 	 * Handles the {@link JwtException}.
 	 * This exception is thrown when there is an issue with JWT processing.
@@ -158,4 +173,51 @@ public class GlobalExceptionHandler {
 		return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new ErrorResponse(e.getMessage()));
 	}
 
+	/**
+	 * Handles the {@link ServiceOverloadedException}.
+	 * <p>
+	 * Thrown when a bounded resource, such as the password hashing executor, is saturated.
+	 * </p>
+	 *
+	 * @param e The exception instance containing the error message and the suggested retry delay.
+	 * @return A {@link ResponseEntity} with an error message, a {@code Retry-After} header and HTTP status 503 (Service Unavailable).
+	 */
+	@ExceptionHandler(ServiceOverloadedException.class)
+	public ResponseEntity<ErrorResponse> handleServiceOverloadedException(ServiceOverloadedException e) {
+		log.warn("ServiceOverloadedException : {}", e.getMessage());
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+				.header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+				.body(new ErrorResponse(e.getMessage()));
+	}
+
+	/**
+	 * Handles the {@link PreconditionFailedException}.
+	 * <p>
+	 * Thrown when the {@code If-Match} header of a write does not match the current version of the resource.
+	 * </p>
+	 *
+	 * @param e The exception instance containing the error message.
+	 * @return A {@link ResponseEntity} with an error message and HTTP status 412 (Precondition Failed).
+	 */
+	@ExceptionHandler(PreconditionFailedException.class)
+	public ResponseEntity<ErrorResponse> handlePreconditionFailedException(PreconditionFailedException e) {
+		log.info("Handling PreconditionFailedException - Resource version mismatch.");
+		return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(new ErrorResponse(e.getMessage()));
+	}
+
+	/**
+	 * Handles the {@link ObjectOptimisticLockingFailureException}.
+	 * <p>
+	 * Thrown when a versioned resource was modified by another request between its read and its write.
+	 * </p>
+	 *
+	 * @param e The exception instance.
+	 * @return A {@link ResponseEntity} with an error message and HTTP status 412 (Precondition Failed).
+	 */
+	@ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+	public ResponseEntity<ErrorResponse> handleOptimisticLockingFailureException(ObjectOptimisticLockingFailureException e) {
+		log.info("Handling ObjectOptimisticLockingFailureException - Concurrent update of {}.", e.getPersistentClassName());
+		return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(new ErrorResponse(ResponseMessages.RENTAL_MODIFIED));
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,10 @@
+package fr.matthieu.chatop.exception;
+
+/**
+ * Exception thrown when a conditional write does not match the current version of the resource.
+ */
+public class PreconditionFailedException extends RuntimeException {
+	public PreconditionFailedException(String message) {
+		super(message);
+	}
+}
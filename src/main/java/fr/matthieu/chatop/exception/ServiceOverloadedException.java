@@ -0,0 +1,18 @@
+package fr.matthieu.chatop.exception;
+
+/**
+ * Exception thrown when a bounded resource is saturated and the request cannot be accepted.
+ */
+public class ServiceOverloadedException extends RuntimeException {
+
+	private final long retryAfterSeconds;
+
+	public ServiceOverloadedException(String message, long retryAfterSeconds) {
+		super(message);
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+	public long getRetryAfterSeconds() {
+		return retryAfterSeconds;
+	}
+}
@@ -2,7 +2,10 @@ package fr.matthieu.chatop.filter;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import fr.matthieu.chatop.common.ErrorResponse;
-import fr.matthieu.chatop.model.UserEntity;
+import fr.matthieu.chatop.security.AuthenticatedUser;
+import fr.matthieu.chatop.security.RevokedTokenRegistry;
+import fr.matthieu.chatop.security.SessionRegistry;
+import fr.matthieu.chatop.security.VerifiedToken;
 import fr.matthieu.chatop.service.JWTService;
 import fr.matthieu.chatop.service.UserService;
 import io.jsonwebtoken.MalformedJwtException;
@@ -12,15 +15,17 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
+import org.springframework.util.AntPathMatcher;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.List;
 
 import static fr.matthieu.chatop.common.ResponseMessages.UNAUTHORIZED_ACCESS;
 import static fr.matthieu.chatop.common.ApiRoutes.*;
@@ -35,30 +40,42 @@ import static fr.matthieu.chatop.common.ApiRoutes.*;
 @Service
 public class JwtAuthFilter extends OncePerRequestFilter {
 
+	/**
+	 * Read-only routes that can be authenticated from the token claims alone
+	 * when the stateless read mode is enabled.
+	 */
+	private static final List<String> STATELESS_READ_URLS = List.of(RENTALS_URL, RENTAL_ID_URL, USER_ID_URL);
+
 	private final UserService userService;
 	private final JWTService jwtService;
 	private final ObjectMapper objectMapper;
+	private final RevokedTokenRegistry revokedTokenRegistry;
+	private final SessionRegistry sessionRegistry;
+	private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+	@Value("${auth.stateless-read.enabled:false}")
+	private boolean statelessReadEnabled;
 
 	@Autowired
-	public JwtAuthFilter(UserService userService, JWTService jwtService, ObjectMapper objectMapper) {
+	public JwtAuthFilter(UserService userService, JWTService jwtService, ObjectMapper objectMapper, RevokedTokenRegistry revokedTokenRegistry, SessionRegistry sessionRegistry) {
 		this.userService = userService;
 		this.jwtService = jwtService;
 		this.objectMapper = objectMapper;
+		this.revokedTokenRegistry = revokedTokenRegistry;
+		this.sessionRegistry = sessionRegistry;
 	}
 
 	@Override
 	protected void doFilterInternal(HttpServletRequest request,@NonNull HttpServletResponse response,@NonNull FilterChain filterChain) throws ServletException, IOException {
 		String token;
-		String username;
-		boolean isTokenExpired;
+		VerifiedToken verifiedToken;
 
 		final String authorization = request.getHeader("Authorization");
 
 		if(authorization != null && authorization.startsWith("Bearer ")) {
 			token = authorization.substring(7);
 			try {
-				isTokenExpired = jwtService.isTokenExpired(token);
-				username = jwtService.extractUsername(token);
+				verifiedToken = jwtService.verify(token);
 			} catch (MalformedJwtException e) {
 				sendErrorResponse(response);
 				return;
@@ -69,13 +86,15 @@ public class JwtAuthFilter extends OncePerRequestFilter {
 		}
 
 		// Validate the token and authenticate the user
-		if(!isTokenExpired && username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-			UserDetails userDetails =  userService.loadUserByUsername(username);
-			Integer tokenVersion = jwtService.getClaim(token, claims -> claims.get("tokenVersion", Integer.class));
-
-			// Check if the token version matches the user's current token version
-			if (tokenVersion != null && tokenVersion.equals(((UserEntity) userDetails).getTokenVersion())) {
-				UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+		if(!verifiedToken.isExpired() && verifiedToken.subject() != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+			AuthenticatedUser principal = resolvePrincipal(request, verifiedToken);
+			Integer tokenVersion = verifiedToken.tokenVersion();
+
+			// Check if the token version matches the user's current token version and its session is still active
+			if (principal != null && tokenVersion != null && tokenVersion.equals(principal.tokenVersion())
+					&& sessionRegistry.isActive(verifiedToken.sessionId(), principal.id())) {
+				UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+				authenticationToken.setDetails(verifiedToken);
 				SecurityContextHolder.getContext().setAuthentication(authenticationToken);
 			} else {
 				sendErrorResponse(response);
@@ -86,6 +105,47 @@ public class JwtAuthFilter extends OncePerRequestFilter {
 		filterChain.doFilter(request, response);
 	}
 
+	/**
+	 * Resolves the principal of the request.
+	 * <p>
+	 * 		In stateless read mode, GET requests on read-only routes are authenticated from the signed claims
+	 * 		and the {@link RevokedTokenRegistry}, without loading the user. Every other request loads the
+	 * 		principal through the {@link UserService}.
+	 * </p>
+	 *
+	 * @param request       Incoming HTTP request.
+	 * @param verifiedToken The verified token of the request.
+	 * @return The {@link AuthenticatedUser}, or {@code null} if the token has been revoked.
+	 */
+	private AuthenticatedUser resolvePrincipal(HttpServletRequest request, VerifiedToken verifiedToken) {
+		if (verifiedToken.userId() != null && isStatelessRead(request)) {
+			if (revokedTokenRegistry.isRevoked(verifiedToken.userId(), verifiedToken.tokenVersion())) {
+				return null;
+			}
+			return new AuthenticatedUser(
+					verifiedToken.userId(),
+					verifiedToken.subject(),
+					verifiedToken.name(),
+					verifiedToken.tokenVersion()
+			);
+		}
+		return userService.loadPrincipal(verifiedToken.subject());
+	}
+
+	/**
+	 * Determines if the request can be authenticated from the token claims alone.
+	 *
+	 * @param request Incoming HTTP request.
+	 * @return {@code true} if stateless read mode is enabled and the request is a GET on a read-only route.
+	 */
+	private boolean isStatelessRead(HttpServletRequest request) {
+		if (!statelessReadEnabled || !"GET".equals(request.getMethod())) {
+			return false;
+		}
+		String path = request.getRequestURI();
+		return STATELESS_READ_URLS.stream().anyMatch(pattern -> pathMatcher.match(pattern, path));
+	}
+
 	/**
 	 * Determines if the filter should not be applied for specific routes.
 	 *
@@ -98,6 +158,7 @@ public class JwtAuthFilter extends OncePerRequestFilter {
 
 		return path.startsWith(REGISTER_URL) ||
 		path.startsWith(LOGIN_URL) ||
+		path.startsWith(REFRESH_URL) ||
 		path.startsWith(SWAGGER_UI_URL) ||
 		path.startsWith(API_DOCS_URL) ||
 		path.startsWith("/uploads/");
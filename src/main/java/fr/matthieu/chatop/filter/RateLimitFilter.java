@@ -0,0 +1,110 @@
+package fr.matthieu.chatop.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.matthieu.chatop.common.ErrorResponse;
+import fr.matthieu.chatop.security.RateLimiter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Service;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static fr.matthieu.chatop.common.ApiRoutes.*;
+import static fr.matthieu.chatop.common.ResponseMessages.TOO_MANY_REQUESTS;
+
+/**
+ * Filter limiting the request rate of each IP address, before the JWT is validated.
+ * <p>
+ * 		Credential routes (login, register and refresh) are limited with a strict policy, to keep credential
+ * 		stuffing from turning into BCrypt CPU burn. Other API routes are limited with a looser policy,
+ * 		so that forged, malformed or revoked tokens are counted before they cost a signature check or a
+ * 		session lookup. Authenticated requests are then limited per user by {@link UserRateLimitFilter}.
+ * 		Rejected requests receive a 429 response with a {@code Retry-After} header.
+ * </p>
+ */
+@Slf4j
+@Service
+public class RateLimitFilter extends OncePerRequestFilter {
+
+	private final RateLimiter rateLimiter;
+	private final ObjectMapper objectMapper;
+	private final RateLimiter.Policy authPolicy;
+	private final RateLimiter.Policy ipPolicy;
+
+	@Value("${rate-limit.enabled:true}")
+	private boolean enabled;
+
+	@Autowired
+	public RateLimitFilter(RateLimiter rateLimiter, ObjectMapper objectMapper,
+						   @Value("${rate-limit.auth.capacity:10}") int authCapacity,
+						   @Value("${rate-limit.auth.refill-per-second:0.2}") double authRefillPerSecond,
+						   @Value("${rate-limit.ip.capacity:300}") int ipCapacity,
+						   @Value("${rate-limit.ip.refill-per-second:60}") double ipRefillPerSecond) {
+		this.rateLimiter = rateLimiter;
+		this.objectMapper = objectMapper;
+		this.authPolicy = new RateLimiter.Policy("auth", authCapacity, authRefillPerSecond);
+		this.ipPolicy = new RateLimiter.Policy("ip", ipCapacity, ipRefillPerSecond);
+	}
+
+	@Override
+	protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response, @NonNull FilterChain filterChain) throws ServletException, IOException {
+		String path = request.getRequestURI();
+		RateLimiter.Policy policy = path.startsWith(LOGIN_URL) || path.startsWith(REGISTER_URL) || path.startsWith(REFRESH_URL)
+				? authPolicy
+				: ipPolicy;
+		String clientKey = "ip:" + request.getRemoteAddr();
+
+		long waitNanos = rateLimiter.tryAcquire(policy, clientKey);
+		if (waitNanos > 0) {
+			log.debug("Rate limit exceeded for {} on {}", clientKey, path);
+			sendErrorResponse(response, objectMapper, waitNanos);
+			return;
+		}
+
+		filterChain.doFilter(request, response);
+	}
+
+	/**
+	 * Only API routes are rate limited, and only when rate limiting is enabled.
+	 *
+	 * @param request Incoming HTTP request.
+	 * @return {@code true} if the filter should be skipped for this request, otherwise {@code false}.
+	 */
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		String path = request.getRequestURI();
+		return !enabled ||
+		!path.startsWith(BASE_URL + "/") ||
+		path.startsWith(SWAGGER_UI_URL) ||
+		path.startsWith(API_DOCS_URL);
+	}
+
+	/**
+	 * Sends a 429 response when the client exceeded its rate limit.
+	 *
+	 * @param response     Outgoing HTTP response.
+	 * @param objectMapper Mapper writing the JSON body.
+	 * @param waitNanos    The time until the client may retry, in nanoseconds.
+	 * @throws IOException If an error occurs while writing the JSON response.
+	 */
+	static void sendErrorResponse(HttpServletResponse response, ObjectMapper objectMapper, long waitNanos) throws IOException {
+		long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+		ErrorResponse errorResponse = new ErrorResponse(TOO_MANY_REQUESTS);
+		response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+		response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+		response.setContentType("application/json");
+		response.setCharacterEncoding("UTF-8");
+		String json = objectMapper.writeValueAsString(errorResponse);
+		response.getWriter().write(json);
+	}
+}
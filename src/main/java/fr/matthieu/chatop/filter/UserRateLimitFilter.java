@@ -0,0 +1,81 @@
+package fr.matthieu.chatop.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.matthieu.chatop.security.AuthenticatedUser;
+import fr.matthieu.chatop.security.RateLimiter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+import static fr.matthieu.chatop.common.ApiRoutes.*;
+
+/**
+ * Filter limiting the request rate of each authenticated user, after the JWT is validated.
+ * <p>
+ * 		Requests have already been limited per IP address by {@link RateLimitFilter}; this policy
+ * 		keeps a single account from using the whole budget of a shared address, and follows the user
+ * 		across addresses. Unauthenticated requests are left to the IP address limit.
+ * </p>
+ */
+@Slf4j
+@Service
+public class UserRateLimitFilter extends OncePerRequestFilter {
+
+	private final RateLimiter rateLimiter;
+	private final ObjectMapper objectMapper;
+	private final RateLimiter.Policy apiPolicy;
+
+	@Value("${rate-limit.enabled:true}")
+	private boolean enabled;
+
+	@Autowired
+	public UserRateLimitFilter(RateLimiter rateLimiter, ObjectMapper objectMapper,
+							   @Value("${rate-limit.api.capacity:100}") int apiCapacity,
+							   @Value("${rate-limit.api.refill-per-second:20}") double apiRefillPerSecond) {
+		this.rateLimiter = rateLimiter;
+		this.objectMapper = objectMapper;
+		this.apiPolicy = new RateLimiter.Policy("api", apiCapacity, apiRefillPerSecond);
+	}
+
+	@Override
+	protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response, @NonNull FilterChain filterChain) throws ServletException, IOException {
+		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+		if (authentication != null && authentication.getPrincipal() instanceof AuthenticatedUser authenticatedUser) {
+			String clientKey = "user:" + authenticatedUser.id();
+			long waitNanos = rateLimiter.tryAcquire(apiPolicy, clientKey);
+			if (waitNanos > 0) {
+				log.debug("Rate limit exceeded for {} on {}", clientKey, request.getRequestURI());
+				RateLimitFilter.sendErrorResponse(response, objectMapper, waitNanos);
+				return;
+			}
+		}
+
+		filterChain.doFilter(request, response);
+	}
+
+	/**
+	 * Only API routes are rate limited, and only when rate limiting is enabled.
+	 *
+	 * @param request Incoming HTTP request.
+	 * @return {@code true} if the filter should be skipped for this request, otherwise {@code false}.
+	 */
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		String path = request.getRequestURI();
+		return !enabled ||
+		!path.startsWith(BASE_URL + "/") ||
+		path.startsWith(SWAGGER_UI_URL) ||
+		path.startsWith(API_DOCS_URL);
+	}
+}
@@ -0,0 +1,155 @@
+package fr.matthieu.chatop.index;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory Bloom filter of the registered email addresses.
+ * <p>
+ * 		A negative answer is definitive, so registering a new email can skip the existence query.
+ * 		A positive answer may be a false positive and must be confirmed against the database.
+ * 		Emails are only ever added; the filter is rebuilt from the {@code users} table at startup.
+ * </p>
+ */
+@Slf4j
+@Component
+public class EmailBloomFilter implements MeterBinder {
+
+	private final AtomicLongArray bits;
+	private final long bitCount;
+	private final int hashCount;
+
+	private final LongAdder insertions = new LongAdder();
+	private final LongAdder positives = new LongAdder();
+	private final LongAdder falsePositives = new LongAdder();
+	private volatile long lastRebuildMillis;
+
+	/**
+	 * Constructs an {@code EmailBloomFilter} sized for the expected number of users.
+	 *
+	 * @param expectedInsertions The number of emails the filter is sized for.
+	 * @param falsePositiveRate  The target false positive probability at that size.
+	 */
+	public EmailBloomFilter(@Value("${users.email-filter.expected-insertions:1000000}") long expectedInsertions,
+							@Value("${users.email-filter.false-positive-rate:0.01}") double falsePositiveRate) {
+		long size = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+		int words = (int) Math.max(1, (size + 63) / 64);
+		this.bits = new AtomicLongArray(words);
+		this.bitCount = (long) words * 64;
+		this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+		log.info("Email Bloom filter initialized with {} bits and {} hash functions", bitCount, hashCount);
+	}
+
+	/**
+	 * Adds an email to the filter.
+	 *
+	 * @param email The normalized (lowercase) email.
+	 */
+	public void put(String email) {
+		long hash1 = hash(email);
+		long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L);
+		for (int i = 0; i < hashCount; i++) {
+			long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+			setBit(bit);
+		}
+		insertions.increment();
+	}
+
+	/**
+	 * Checks whether an email may have been added to the filter.
+	 *
+	 * @param email The normalized (lowercase) email.
+	 * @return {@code false} if the email has definitely never been added, {@code true} otherwise.
+	 */
+	public boolean mightContain(String email) {
+		long hash1 = hash(email);
+		long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L);
+		for (int i = 0; i < hashCount; i++) {
+			long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+			if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		positives.increment();
+		return true;
+	}
+
+	/**
+	 * Records that a positive answer was not confirmed by the database.
+	 */
+	public void recordFalsePositive() {
+		falsePositives.increment();
+	}
+
+	/**
+	 * Records the duration of the last rebuild from the database.
+	 *
+	 * @param durationMillis The rebuild duration, in milliseconds.
+	 */
+	public void recordRebuild(long durationMillis) {
+		this.lastRebuildMillis = durationMillis;
+	}
+
+	/**
+	 * Returns the theoretical false positive probability for the current number of insertions.
+	 *
+	 * @return The expected false positive rate.
+	 */
+	public double expectedFalsePositiveRate() {
+		double fill = 1 - Math.exp(-(double) hashCount * insertions.sum() / bitCount);
+		return Math.pow(fill, hashCount);
+	}
+
+	@Override
+	public void bindTo(@NonNull MeterRegistry registry) {
+		FunctionCounter.builder("users.email.filter.insertions", insertions, LongAdder::sum).register(registry);
+		FunctionCounter.builder("users.email.filter.positives", positives, LongAdder::sum).register(registry);
+		FunctionCounter.builder("users.email.filter.false.positives", falsePositives, LongAdder::sum).register(registry);
+		Gauge.builder("users.email.filter.expected.false.positive.rate", this, EmailBloomFilter::expectedFalsePositiveRate).register(registry);
+		Gauge.builder("users.email.filter.rebuild.duration", this, filter -> filter.lastRebuildMillis)
+				.baseUnit("milliseconds")
+				.register(registry);
+	}
+
+	private void setBit(long bit) {
+		int index = (int) (bit >>> 6);
+		long mask = 1L << bit;
+		long current;
+		do {
+			current = bits.get(index);
+			if ((current & mask) != 0) {
+				return;
+			}
+		} while (!bits.compareAndSet(index, current, current | mask));
+	}
+
+	/**
+	 * 64-bit FNV-1a hash of the email, finalized with the MurmurHash3 mixer.
+	 */
+	private static long hash(String value) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < value.length(); i++) {
+			hash ^= value.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return mix(hash);
+	}
+
+	private static long mix(long value) {
+		value ^= value >>> 33;
+		value *= 0xff51afd7ed558ccdL;
+		value ^= value >>> 33;
+		value *= 0xc4ceb3fe1a85ec53L;
+		value ^= value >>> 33;
+		return value;
+	}
+}
@@ -0,0 +1,151 @@
+package fr.matthieu.chatop.index;
+
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * An immutable in-memory structure, read without locking, and the overlay of the rentals written since it was built.
+ * <p>
+ * 		Created and updated rentals are first kept in the overlay, which takes precedence over the structure.
+ * 		Once the overlay reaches its maximum size, a background thread merges it into a new structure.
+ * 		Rentals written during the merge stay in the overlay. A merge started before the structure was
+ * 		replaced by a rebuild is discarded, then started again from the rebuilt structure.
+ * </p>
+ *
+ * @param <S> The type of the structure.
+ * @param <E> The type of its entries.
+ */
+@Slf4j
+class OverlaidIndex<S, E> {
+
+	private final String name;
+	private final ToLongFunction<E> idOf;
+	private final BiFunction<S, Collection<E>, S> merger;
+	private final int overlaySize;
+	private final Timer buildTimer;
+
+	private final Object writeLock = new Object();
+	private volatile State<S, E> state;
+	private boolean merging;
+	private final ExecutorService mergeExecutor;
+
+	/**
+	 * Constructs an {@code OverlaidIndex}.
+	 *
+	 * @param name        The name of the index, used for the merge thread and in logs.
+	 * @param initial     The structure before the first rebuild.
+	 * @param idOf        Returns the rental ID of an entry.
+	 * @param merger      Returns a new structure holding the given entries, replacing those with the same IDs.
+	 * @param overlaySize The number of rentals in the overlay that triggers a merge.
+	 * @param buildTimer  The timer recording the merges.
+	 */
+	OverlaidIndex(String name, S initial, ToLongFunction<E> idOf, BiFunction<S, Collection<E>, S> merger,
+				  int overlaySize, Timer buildTimer) {
+		this.name = name;
+		this.idOf = idOf;
+		this.merger = merger;
+		this.overlaySize = overlaySize;
+		this.buildTimer = buildTimer;
+		this.state = new State<>(initial, Map.of());
+		this.mergeExecutor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, name + "-merge");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Returns the current structure and overlay, to be read together.
+	 *
+	 * @return The current state; never modified.
+	 */
+	State<S, E> state() {
+		return state;
+	}
+
+	/**
+	 * Inserts or replaces a rental in the overlay, and schedules a merge once the overlay is full.
+	 *
+	 * @param entry The rental.
+	 */
+	void upsert(E entry) {
+		synchronized (writeLock) {
+			Map<Long, E> overlay = new HashMap<>(state.overlay());
+			overlay.put(idOf.applyAsLong(entry), entry);
+			state = new State<>(state.structure(), Map.copyOf(overlay));
+			scheduleMergeIfFull();
+		}
+	}
+
+	/**
+	 * Replaces the structure with one built from the database. The overlay is kept, as it may hold
+	 * rentals committed after they were read.
+	 *
+	 * @param structure The rebuilt structure.
+	 */
+	void replace(S structure) {
+		synchronized (writeLock) {
+			state = new State<>(structure, state.overlay());
+		}
+	}
+
+	/**
+	 * Stops the merge thread.
+	 */
+	void close() {
+		mergeExecutor.shutdownNow();
+	}
+
+	private void scheduleMergeIfFull() {
+		if (state.overlay().size() >= overlaySize && !merging) {
+			merging = true;
+			mergeExecutor.execute(this::merge);
+		}
+	}
+
+	/**
+	 * Merges the overlay into a new structure, then removes from the overlay the rentals merged and not modified since.
+	 */
+	private void merge() {
+		State<S, E> merged = state;
+		boolean discarded = false;
+		try {
+			S structure = buildTimer.record(() -> merger.apply(merged.structure(), merged.overlay().values()));
+			synchronized (writeLock) {
+				if (state.structure() != merged.structure()) {
+					discarded = true;
+					log.debug("Merge of the {} overlay discarded, the structure was rebuilt meanwhile", name);
+					return;
+				}
+				Map<Long, E> overlay = new HashMap<>(state.overlay());
+				merged.overlay().forEach((id, entry) -> overlay.remove(id, entry));
+				state = new State<>(structure, Map.copyOf(overlay));
+			}
+		} catch (RuntimeException e) {
+			log.error("Unable to merge the {} overlay", name, e);
+		} finally {
+			synchronized (writeLock) {
+				merging = false;
+				if (discarded) {
+					scheduleMergeIfFull();
+				}
+			}
+		}
+	}
+
+	/**
+	 * The structure and the rentals written since it was built, which take precedence over it.
+	 *
+	 * @param structure The structure.
+	 * @param overlay   The rentals written since, by ID.
+	 */
+	record State<S, E>(S structure, Map<Long, E> overlay) {}
+}
@@ -0,0 +1,106 @@
+package fr.matthieu.chatop.index;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds the {@link RentalNameTrie} used to suggest rental names as the user types.
+ * <p>
+ * 		The trie is kept in an {@link OverlaidIndex}: created and updated rentals are first kept in an overlay,
+ * 		merged into a new trie in the background once it reaches {@code rentals.autocomplete.overlay-size} rentals.
+ * </p>
+ */
+@Slf4j
+@Component
+public class RentalAutocompleteIndex {
+
+	private final OverlaidIndex<RentalNameTrie, RentalNameTrie.Entry> index;
+
+	private final Timer lookupTimer;
+	private final Timer buildTimer;
+
+	@Autowired
+	public RentalAutocompleteIndex(@Value("${rentals.autocomplete.overlay-size:512}") int overlaySize, MeterRegistry registry) {
+		this.lookupTimer = Timer.builder("rentals.autocomplete.lookup")
+				.description("Latency of the rental name suggestions")
+				.publishPercentiles(0.5, 0.99)
+				.register(registry);
+		this.buildTimer = Timer.builder("rentals.autocomplete.build")
+				.description("Duration of the rental name trie builds")
+				.register(registry);
+		this.index = new OverlaidIndex<>("rental-autocomplete", RentalNameTrie.EMPTY, RentalNameTrie.Entry::id,
+				RentalNameTrie::with, overlaySize, buildTimer);
+		Gauge.builder("rentals.autocomplete.names", index, i -> i.state().structure().size()).register(registry);
+		Gauge.builder("rentals.autocomplete.nodes", index, i -> i.state().structure().nodeCount()).register(registry);
+		Gauge.builder("rentals.autocomplete.overlay", index, i -> i.state().overlay().size()).register(registry);
+		Gauge.builder("rentals.autocomplete.memory", index, i -> i.state().structure().estimatedBytes())
+				.baseUnit("bytes")
+				.register(registry);
+	}
+
+	/**
+	 * Suggests the rentals whose name starts with the typed prefix.
+	 *
+	 * @param prefix  The typed prefix; accents, case and repeated spaces are ignored.
+	 * @param limit   The maximum number of suggestions, at most {@link RentalNameTrie#TOP_K}.
+	 * @param ranking The order of the suggestions.
+	 * @return The suggested rentals, best first.
+	 */
+	public List<RentalNameTrie.Entry> suggest(String prefix, int limit, RentalNameTrie.Ranking ranking) {
+		return lookupTimer.record(() -> {
+			String normalized = RentalNameTrie.normalizePrefix(prefix);
+			OverlaidIndex.State<RentalNameTrie, RentalNameTrie.Entry> current = index.state();
+			List<RentalNameTrie.Entry> trieHits = current.structure().lookup(normalized, limit, ranking, current.overlay()::containsKey);
+			if (current.overlay().isEmpty()) {
+				return trieHits;
+			}
+
+			List<RentalNameTrie.Entry> hits = new ArrayList<>(trieHits);
+			for (RentalNameTrie.Entry entry : current.overlay().values()) {
+				if (RentalNameTrie.normalizeName(entry.name()).startsWith(normalized)) {
+					hits.add(entry);
+				}
+			}
+			hits.sort(RentalNameTrie.Entry.order(ranking));
+			return hits.size() > limit ? List.copyOf(hits.subList(0, limit)) : hits;
+		});
+	}
+
+	/**
+	 * Inserts or replaces a rental in the overlay, and schedules a merge once the overlay is full.
+	 *
+	 * @param entry The rental.
+	 */
+	public void upsert(RentalNameTrie.Entry entry) {
+		index.upsert(entry);
+	}
+
+	/**
+	 * Replaces the trie with one built from the database. The overlay is kept, as it may hold
+	 * rentals committed after they were read.
+	 *
+	 * @param entries The rentals read from the database.
+	 */
+	public void rebuild(List<RentalNameTrie.Entry> entries) {
+		RentalNameTrie trie = buildTimer.record(() -> RentalNameTrie.build(entries));
+		index.replace(trie);
+		log.info("Rental name trie built with {} names and {} nodes (~{} KB)", trie.size(), trie.nodeCount(), trie.estimatedBytes() / 1024);
+	}
+
+	/**
+	 * Stops the merge thread.
+	 */
+	@PreDestroy
+	public void close() {
+		index.close();
+	}
+}
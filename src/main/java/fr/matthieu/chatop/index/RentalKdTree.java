@@ -0,0 +1,375 @@
+package fr.matthieu.chatop.index;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.LongPredicate;
+
+/**
+ * Immutable 3-d tree of the rentals, to find the rentals closest to a given one by price, surface and recency.
+ * <p>
+ * 		Each rental is a point ({@code ln(1 + price)}, {@code ln(1 + surface)}, {@code createdAt / recencyScale}):
+ * 		the logarithms make a 10% difference weigh the same for cheap and expensive rentals,
+ * 		and the recency scale sets how many milliseconds of age weigh as much as a factor {@code e} in price.
+ * </p>
+ * <p>
+ * 		The tree is implicit: points are stored in flat arrays, each sub-range being split at its median on the
+ * 		axis of widest spread, so no node object is allocated. A nearest-neighbour query descends towards the
+ * 		point and only visits the other side of a split when it may hold a closer rental.
+ * </p>
+ */
+public final class RentalKdTree {
+
+	private static final int DIMENSIONS = 3;
+	private static final int LEAF_SIZE = 8;
+
+	private final double recencyScaleMillis;
+	private final long[] ids;
+	private final double[] points;
+	private final byte[] axes;
+	private final Entry[] entries;
+	private final int size;
+
+	private final long[] sortedIds;
+	private final int[] rowsBySortedId;
+
+	/**
+	 * Builds the tree of the given rentals.
+	 *
+	 * @param entries            The rentals, each id appearing once.
+	 * @param recencyScaleMillis The age difference weighing as much as a factor {@code e} in price or surface.
+	 */
+	public RentalKdTree(Collection<Entry> entries, double recencyScaleMillis) {
+		this.recencyScaleMillis = recencyScaleMillis;
+		this.size = entries.size();
+		this.entries = entries.toArray(new Entry[0]);
+		this.ids = new long[size];
+		this.points = new double[size * DIMENSIONS];
+		this.axes = new byte[size];
+
+		double[] input = new double[size * DIMENSIONS];
+		int[] order = new int[size];
+		for (int i = 0; i < size; i++) {
+			System.arraycopy(point(this.entries[i]), 0, input, i * DIMENSIONS, DIMENSIONS);
+			order[i] = i;
+		}
+		split(order, input, 0, size);
+
+		Entry[] sorted = new Entry[size];
+		for (int row = 0; row < size; row++) {
+			sorted[row] = this.entries[order[row]];
+			ids[row] = sorted[row].id();
+			System.arraycopy(input, order[row] * DIMENSIONS, points, row * DIMENSIONS, DIMENSIONS);
+		}
+		System.arraycopy(sorted, 0, this.entries, 0, size);
+
+		Integer[] byId = new Integer[size];
+		for (int row = 0; row < size; row++) {
+			byId[row] = row;
+		}
+		Arrays.sort(byId, (a, b) -> Long.compare(ids[a], ids[b]));
+		this.sortedIds = new long[size];
+		this.rowsBySortedId = new int[size];
+		for (int i = 0; i < size; i++) {
+			rowsBySortedId[i] = byId[i];
+			sortedIds[i] = ids[byId[i]];
+		}
+	}
+
+	/**
+	 * Returns a new tree in which the given rentals are inserted, or replace the rentals with the same id.
+	 *
+	 * @param updates The inserted or updated rentals.
+	 * @return The new tree.
+	 */
+	public RentalKdTree with(Collection<Entry> updates) {
+		Set<Long> updatedIds = new HashSet<>();
+		for (Entry update : updates) {
+			updatedIds.add(update.id());
+		}
+		List<Entry> merged = new ArrayList<>(size + updates.size());
+		for (Entry entry : entries) {
+			if (!updatedIds.contains(entry.id())) {
+				merged.add(entry);
+			}
+		}
+		merged.addAll(updates);
+		return new RentalKdTree(merged, recencyScaleMillis);
+	}
+
+	/**
+	 * Returns the rental with the given id.
+	 *
+	 * @param id The ID of the rental.
+	 * @return The rental, or {@code null} if it is not in the tree.
+	 */
+	public Entry get(long id) {
+		int position = Arrays.binarySearch(sortedIds, id);
+		return position >= 0 ? entries[rowsBySortedId[position]] : null;
+	}
+
+	/**
+	 * Finds the rentals closest to the given one.
+	 *
+	 * @param target   The rental to compare with.
+	 * @param limit    The maximum number of rentals.
+	 * @param excluded The ids to skip, including the one of the target if it must not be returned.
+	 * @return The closest rentals, closest first.
+	 */
+	public List<Neighbor> nearest(Entry target, int limit, LongPredicate excluded) {
+		if (limit <= 0 || size == 0) {
+			return List.of();
+		}
+		Neighbors neighbors = new Neighbors(limit);
+		search(point(target), 0, size, excluded, neighbors);
+		return neighbors.sorted();
+	}
+
+	/**
+	 * Returns the distance between two rentals, consistent with {@link #nearest(Entry, int, LongPredicate)}.
+	 *
+	 * @param a The first rental.
+	 * @param b The second rental.
+	 * @return The Euclidean distance of their points.
+	 */
+	public double distance(Entry a, Entry b) {
+		double[] pa = point(a);
+		double[] pb = point(b);
+		double sum = 0;
+		for (int axis = 0; axis < DIMENSIONS; axis++) {
+			double delta = pa[axis] - pb[axis];
+			sum += delta * delta;
+		}
+		return Math.sqrt(sum);
+	}
+
+	/**
+	 * Returns the number of rentals in the tree.
+	 *
+	 * @return The number of points.
+	 */
+	public int size() {
+		return size;
+	}
+
+	private double[] point(Entry entry) {
+		return new double[] {
+				Math.log1p(entry.priceCents() / 100.0),
+				Math.log1p(entry.surface()),
+				entry.createdAtMillis() / recencyScaleMillis
+		};
+	}
+
+	/**
+	 * Orders {@code order[from, to)} so that each sub-range has its median point in the middle,
+	 * splitting on the axis of widest spread.
+	 */
+	private void split(int[] order, double[] input, int from, int to) {
+		if (to - from <= 1) {
+			if (to > from) {
+				axes[from] = 0;
+			}
+			return;
+		}
+		int axis = widestAxis(order, input, from, to);
+		int middle = (from + to) >>> 1;
+		select(order, input, axis, from, to - 1, middle);
+		axes[middle] = (byte) axis;
+		split(order, input, from, middle);
+		split(order, input, middle + 1, to);
+	}
+
+	private int widestAxis(int[] order, double[] input, int from, int to) {
+		int widest = 0;
+		double widestSpread = -1;
+		for (int axis = 0; axis < DIMENSIONS; axis++) {
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			for (int i = from; i < to; i++) {
+				double value = input[order[i] * DIMENSIONS + axis];
+				min = Math.min(min, value);
+				max = Math.max(max, value);
+			}
+			if (max - min > widestSpread) {
+				widestSpread = max - min;
+				widest = axis;
+			}
+		}
+		return widest;
+	}
+
+	/**
+	 * Quickselect: moves to {@code order[k]} the point that would be there if {@code order[left, right]}
+	 * was sorted on the axis, smaller points before it and greater points after it.
+	 */
+	private static void select(int[] order, double[] input, int axis, int left, int right, int k) {
+		while (left < right) {
+			double pivot = input[order[(left + right) >>> 1] * DIMENSIONS + axis];
+			int i = left;
+			int j = right;
+			while (i <= j) {
+				while (input[order[i] * DIMENSIONS + axis] < pivot) {
+					i++;
+				}
+				while (input[order[j] * DIMENSIONS + axis] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					int tmp = order[i];
+					order[i] = order[j];
+					order[j] = tmp;
+					i++;
+					j--;
+				}
+			}
+			if (k <= j) {
+				right = j;
+			} else if (k >= i) {
+				left = i;
+			} else {
+				return;
+			}
+		}
+	}
+
+	private void search(double[] target, int from, int to, LongPredicate excluded, Neighbors neighbors) {
+		if (to - from <= LEAF_SIZE) {
+			for (int row = from; row < to; row++) {
+				offer(target, row, excluded, neighbors);
+			}
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		offer(target, middle, excluded, neighbors);
+		double delta = target[axes[middle]] - points[middle * DIMENSIONS + axes[middle]];
+		if (delta < 0) {
+			search(target, from, middle, excluded, neighbors);
+			if (neighbors.accepts(delta * delta)) {
+				search(target, middle + 1, to, excluded, neighbors);
+			}
+		} else {
+			search(target, middle + 1, to, excluded, neighbors);
+			if (neighbors.accepts(delta * delta)) {
+				search(target, from, middle, excluded, neighbors);
+			}
+		}
+	}
+
+	private void offer(double[] target, int row, LongPredicate excluded, Neighbors neighbors) {
+		double sum = 0;
+		for (int axis = 0; axis < DIMENSIONS; axis++) {
+			double delta = target[axis] - points[row * DIMENSIONS + axis];
+			sum += delta * delta;
+		}
+		if (neighbors.accepts(sum) && !excluded.test(ids[row])) {
+			neighbors.add(row, sum);
+		}
+	}
+
+	/**
+	 * Bounded max-heap of the closest rows found so far, the farthest at the root.
+	 */
+	private final class Neighbors {
+
+		private final int[] rows;
+		private final double[] distances;
+		private int count;
+
+		private Neighbors(int capacity) {
+			this.rows = new int[capacity];
+			this.distances = new double[capacity];
+		}
+
+		/**
+		 * Whether a row at the given squared distance would be kept.
+		 */
+		private boolean accepts(double squaredDistance) {
+			return count < rows.length || squaredDistance < distances[0];
+		}
+
+		private void add(int row, double squaredDistance) {
+			int index;
+			if (count < rows.length) {
+				index = count++;
+				while (index > 0 && distances[(index - 1) / 2] < squaredDistance) {
+					rows[index] = rows[(index - 1) / 2];
+					distances[index] = distances[(index - 1) / 2];
+					index = (index - 1) / 2;
+				}
+			} else {
+				index = 0;
+				while (true) {
+					int child = 2 * index + 1;
+					if (child >= count) {
+						break;
+					}
+					if (child + 1 < count && distances[child + 1] > distances[child]) {
+						child++;
+					}
+					if (distances[child] <= squaredDistance) {
+						break;
+					}
+					rows[index] = rows[child];
+					distances[index] = distances[child];
+					index = child;
+				}
+			}
+			rows[index] = row;
+			distances[index] = squaredDistance;
+		}
+
+		private List<Neighbor> sorted() {
+			Integer[] positions = new Integer[count];
+			for (int i = 0; i < count; i++) {
+				positions[i] = i;
+			}
+			Arrays.sort(positions, (a, b) -> {
+				int comparison = Double.compare(distances[a], distances[b]);
+				return comparison != 0 ? comparison : Long.compare(ids[rows[a]], ids[rows[b]]);
+			});
+			return Arrays.stream(positions)
+					.map(position -> new Neighbor(entries[rows[position]], Math.sqrt(distances[position])))
+					.toList();
+		}
+	}
+
+	/**
+	 * The fields of a rental compared by the tree.
+	 *
+	 * @param id              The rental id.
+	 * @param priceCents      The price in cents.
+	 * @param surface         The surface.
+	 * @param createdAtMillis The creation date, in milliseconds.
+	 */
+	public record Entry(long id, long priceCents, double surface, long createdAtMillis) {
+
+		/**
+		 * Builds the entry of a rental.
+		 *
+		 * @param id        The ID of the rental.
+		 * @param price     The price of the rental, in euros.
+		 * @param surface   The surface of the rental.
+		 * @param createdAt The creation date of the rental.
+		 * @return The entry.
+		 */
+		public static Entry of(Long id, BigDecimal price, Double surface, LocalDateTime createdAt) {
+			return new Entry(id, price.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact(), surface,
+					createdAt.toInstant(ZoneOffset.UTC).toEpochMilli());
+		}
+	}
+
+	/**
+	 * A rental close to the target.
+	 *
+	 * @param entry    The rental.
+	 * @param distance Its distance to the target.
+	 */
+	public record Neighbor(Entry entry, double distance) {}
+}
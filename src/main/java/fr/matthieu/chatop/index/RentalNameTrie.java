@@ -0,0 +1,461 @@
+package fr.matthieu.chatop.index;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.Normalizer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.LongPredicate;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable, read-optimised radix trie of the normalised rental names.
+ * <p>
+ * 		Names are normalised (lower case, without accents, single spaces), sorted, and concatenated
+ * 		in a single {@code char[]}; the other rental fields are held in primitive arrays indexed the same way.
+ * 		The nodes of the trie are stored breadth-first in parallel {@code int[]} arrays, so the children of
+ * 		a node are contiguous and found by binary search, and every node covers a contiguous range of the
+ * 		sorted names. The heap usage is a handful of arrays whatever the number of rentals, with no object per
+ * 		name or per node.
+ * </p>
+ * <p>
+ * 		Nodes covering more than {@value #SCAN_THRESHOLD} names keep their {@value #TOP_K} most recent and
+ * 		cheapest rentals, so a lookup on a short prefix does not scan its whole range.
+ * 		Smaller ranges are scanned.
+ * </p>
+ */
+public final class RentalNameTrie {
+
+	/**
+	 * The maximum number of suggestions returned by a lookup.
+	 */
+	public static final int TOP_K = 20;
+
+	private static final int SCAN_THRESHOLD = 256;
+	private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+	private static final Pattern SPACES = Pattern.compile("\\s+");
+
+	/**
+	 * An empty trie.
+	 */
+	public static final RentalNameTrie EMPTY = build(List.of());
+
+	private final char[] keys;
+	private final int[] keyOffsets;
+	private final char[] names;
+	private final int[] nameOffsets;
+	private final long[] ids;
+	private final long[] createdAts;
+	private final long[] priceCents;
+	private final int size;
+
+	private final int[] nodeDepths;
+	private final int[] nodeStarts;
+	private final int[] nodeEnds;
+	private final int[] nodeFirstChildren;
+	private final int[] nodeChildCounts;
+	private final int[] nodeTopOffsets;
+	private final int[] topRecent;
+	private final int[] topCheapest;
+	private final int nodeCount;
+
+	/**
+	 * Builds the trie of the given entries, sorted by key then id.
+	 */
+	private RentalNameTrie(List<Entry> sorted, List<String> sortedKeys) {
+		this.size = sorted.size();
+		this.keyOffsets = new int[size + 1];
+		this.nameOffsets = new int[size + 1];
+		this.ids = new long[size];
+		this.createdAts = new long[size];
+		this.priceCents = new long[size];
+		StringBuilder allKeys = new StringBuilder();
+		StringBuilder allNames = new StringBuilder();
+		for (int i = 0; i < size; i++) {
+			Entry entry = sorted.get(i);
+			keyOffsets[i] = allKeys.length();
+			nameOffsets[i] = allNames.length();
+			allKeys.append(sortedKeys.get(i));
+			allNames.append(entry.name());
+			ids[i] = entry.id();
+			createdAts[i] = entry.createdAtMillis();
+			priceCents[i] = entry.priceCents();
+		}
+		keyOffsets[size] = allKeys.length();
+		nameOffsets[size] = allNames.length();
+		this.keys = allKeys.toString().toCharArray();
+		this.names = allNames.toString().toCharArray();
+
+		NodeBuilder nodes = new NodeBuilder();
+		nodes.add(0, 0, size);
+		for (int node = 0; node < nodes.count; node++) {
+			int depth = nodes.depths[node];
+			int start = nodes.starts[node];
+			int end = nodes.ends[node];
+			while (start < end && keyLength(start) == depth) {
+				start++;
+			}
+			nodes.firstChildren[node] = nodes.count;
+			while (start < end) {
+				char label = keyChar(start, depth);
+				int groupEnd = start + 1;
+				while (groupEnd < end && keyChar(groupEnd, depth) == label) {
+					groupEnd++;
+				}
+				nodes.add(commonPrefixLength(start, groupEnd - 1), start, groupEnd);
+				start = groupEnd;
+			}
+			nodes.childCounts[node] = nodes.count - nodes.firstChildren[node];
+		}
+		this.nodeCount = nodes.count;
+		this.nodeDepths = Arrays.copyOf(nodes.depths, nodeCount);
+		this.nodeStarts = Arrays.copyOf(nodes.starts, nodeCount);
+		this.nodeEnds = Arrays.copyOf(nodes.ends, nodeCount);
+		this.nodeFirstChildren = Arrays.copyOf(nodes.firstChildren, nodeCount);
+		this.nodeChildCounts = Arrays.copyOf(nodes.childCounts, nodeCount);
+
+		this.nodeTopOffsets = new int[nodeCount];
+		int heavyNodes = 0;
+		for (int node = 0; node < nodeCount; node++) {
+			boolean heavy = nodeEnds[node] - nodeStarts[node] > SCAN_THRESHOLD;
+			nodeTopOffsets[node] = heavy ? heavyNodes++ * TOP_K : -1;
+		}
+		this.topRecent = new int[heavyNodes * TOP_K];
+		this.topCheapest = new int[heavyNodes * TOP_K];
+		for (int node = 0; node < nodeCount; node++) {
+			if (nodeTopOffsets[node] >= 0) {
+				int[] recent = select(nodeStarts[node], nodeEnds[node], TOP_K, Ranking.RECENT, id -> false);
+				int[] cheapest = select(nodeStarts[node], nodeEnds[node], TOP_K, Ranking.CHEAPEST, id -> false);
+				System.arraycopy(recent, 0, topRecent, nodeTopOffsets[node], TOP_K);
+				System.arraycopy(cheapest, 0, topCheapest, nodeTopOffsets[node], TOP_K);
+			}
+		}
+	}
+
+	/**
+	 * Builds a trie of the given rentals.
+	 *
+	 * @param entries The rentals, each id appearing once.
+	 * @return The trie.
+	 */
+	public static RentalNameTrie build(Collection<Entry> entries) {
+		List<Keyed> keyed = new ArrayList<>(entries.size());
+		for (Entry entry : entries) {
+			keyed.add(new Keyed(normalizeName(entry.name()), entry));
+		}
+		keyed.sort(Comparator.comparing(Keyed::key).thenComparingLong(k -> k.entry().id()));
+		return new RentalNameTrie(keyed.stream().map(Keyed::entry).toList(), keyed.stream().map(Keyed::key).toList());
+	}
+
+	/**
+	 * Returns a new trie in which the given rentals are inserted, or replace the rentals with the same id.
+	 *
+	 * @param updates The inserted or updated rentals.
+	 * @return The new trie.
+	 */
+	public RentalNameTrie with(Collection<Entry> updates) {
+		Set<Long> updatedIds = new HashSet<>();
+		for (Entry update : updates) {
+			updatedIds.add(update.id());
+		}
+		List<Entry> entries = new ArrayList<>(size + updates.size());
+		for (int i = 0; i < size; i++) {
+			if (!updatedIds.contains(ids[i])) {
+				entries.add(entry(i));
+			}
+		}
+		entries.addAll(updates);
+		return build(entries);
+	}
+
+	/**
+	 * Returns the best rentals whose normalised name starts with the given normalised prefix.
+	 *
+	 * @param prefix   The prefix, normalised with {@link #normalizePrefix(String)}.
+	 * @param limit    The maximum number of rentals, at most {@link #TOP_K}.
+	 * @param ranking  The order of the rentals.
+	 * @param excluded The ids to skip.
+	 * @return The rentals, best first.
+	 */
+	public List<Entry> lookup(String prefix, int limit, Ranking ranking, LongPredicate excluded) {
+		int node = find(prefix);
+		if (node < 0 || limit <= 0) {
+			return List.of();
+		}
+		int[] rows = null;
+		int offset = nodeTopOffsets[node];
+		if (offset >= 0) {
+			int[] top = ranking == Ranking.RECENT ? topRecent : topCheapest;
+			int[] kept = new int[limit];
+			int count = 0;
+			for (int i = offset; i < offset + TOP_K && count < limit; i++) {
+				if (!excluded.test(ids[top[i]])) {
+					kept[count++] = top[i];
+				}
+			}
+			if (count == limit) {
+				rows = kept;
+			}
+		}
+		if (rows == null) {
+			rows = select(nodeStarts[node], nodeEnds[node], limit, ranking, excluded);
+		}
+
+		List<Entry> result = new ArrayList<>(rows.length);
+		for (int row : rows) {
+			if (row >= 0) {
+				result.add(entry(row));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of rentals in the trie.
+	 *
+	 * @return The number of names.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of nodes of the trie.
+	 *
+	 * @return The number of nodes.
+	 */
+	public int nodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Estimates the heap used by the arrays of the trie.
+	 *
+	 * @return The size of the arrays, in bytes.
+	 */
+	public long estimatedBytes() {
+		return 2L * (keys.length + names.length)
+				+ 4L * (keyOffsets.length + nameOffsets.length)
+				+ 8L * 3 * size
+				+ 4L * 6 * nodeCount
+				+ 4L * (topRecent.length + topCheapest.length);
+	}
+
+	/**
+	 * Normalises a rental name: accents are removed, letters lower-cased and spaces collapsed and trimmed.
+	 *
+	 * @param name The name.
+	 * @return The normalised name.
+	 */
+	public static String normalizeName(String name) {
+		return normalizePrefix(name).stripTrailing();
+	}
+
+	/**
+	 * Normalises a typed prefix like {@link #normalizeName(String)}, keeping a trailing space
+	 * so that "sea " only matches names with a word starting with "sea".
+	 *
+	 * @param prefix The typed prefix.
+	 * @return The normalised prefix.
+	 */
+	public static String normalizePrefix(String prefix) {
+		String stripped = DIACRITICS.matcher(Normalizer.normalize(prefix, Normalizer.Form.NFD)).replaceAll("");
+		return SPACES.matcher(stripped.toLowerCase(Locale.ROOT)).replaceAll(" ").stripLeading();
+	}
+
+	/**
+	 * Walks down the trie along the prefix.
+	 *
+	 * @return The highest node whose names all start with the prefix, or -1 if no name does.
+	 */
+	private int find(String prefix) {
+		int node = 0;
+		int matched = 0;
+		while (matched < prefix.length()) {
+			int depth = nodeDepths[node];
+			int child = findChild(node, depth, prefix.charAt(depth));
+			if (child < 0) {
+				return -1;
+			}
+			int to = Math.min(nodeDepths[child], prefix.length());
+			int row = nodeStarts[child];
+			for (int i = depth + 1; i < to; i++) {
+				if (keyChar(row, i) != prefix.charAt(i)) {
+					return -1;
+				}
+			}
+			matched = to;
+			node = child;
+		}
+		return nodeStarts[node] < nodeEnds[node] ? node : -1;
+	}
+
+	/**
+	 * Finds by binary search the child of a node whose label starts with the given character.
+	 *
+	 * @return The child, or -1 if none.
+	 */
+	private int findChild(int node, int depth, char label) {
+		int low = nodeFirstChildren[node];
+		int high = low + nodeChildCounts[node] - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			char middleLabel = keyChar(nodeStarts[middle], depth);
+			if (middleLabel < label) {
+				low = middle + 1;
+			} else if (middleLabel > label) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Selects the best rows of a range by insertion into a small sorted array.
+	 *
+	 * @return The rows, best first, padded with -1 when the range holds fewer rows.
+	 */
+	private int[] select(int start, int end, int limit, Ranking ranking, LongPredicate excluded) {
+		int[] best = new int[limit];
+		Arrays.fill(best, -1);
+		int count = 0;
+		for (int row = start; row < end; row++) {
+			if (excluded.test(ids[row])) {
+				continue;
+			}
+			if (count == limit && !isBetter(row, best[limit - 1], ranking)) {
+				continue;
+			}
+			int position = Math.min(count, limit - 1);
+			while (position > 0 && isBetter(row, best[position - 1], ranking)) {
+				best[position] = best[position - 1];
+				position--;
+			}
+			best[position] = row;
+			count = Math.min(count + 1, limit);
+		}
+		return best;
+	}
+
+	private boolean isBetter(int a, int b, Ranking ranking) {
+		int comparison = ranking == Ranking.RECENT
+				? Long.compare(createdAts[b], createdAts[a])
+				: Long.compare(priceCents[a], priceCents[b]);
+		if (comparison != 0) {
+			return comparison < 0;
+		}
+		return ranking == Ranking.RECENT ? ids[a] > ids[b] : ids[a] < ids[b];
+	}
+
+	private Entry entry(int row) {
+		return new Entry(ids[row], new String(names, nameOffsets[row], nameOffsets[row + 1] - nameOffsets[row]),
+				createdAts[row], priceCents[row]);
+	}
+
+	private int keyLength(int row) {
+		return keyOffsets[row + 1] - keyOffsets[row];
+	}
+
+	private char keyChar(int row, int index) {
+		return keys[keyOffsets[row] + index];
+	}
+
+	/**
+	 * Returns the length of the common prefix of two keys, which is also the one of every key between them.
+	 */
+	private int commonPrefixLength(int first, int last) {
+		int length = Math.min(keyLength(first), keyLength(last));
+		int i = 0;
+		while (i < length && keyChar(first, i) == keyChar(last, i)) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Growable node arrays used while building the trie.
+	 */
+	private static final class NodeBuilder {
+
+		private int[] depths = new int[1024];
+		private int[] starts = new int[1024];
+		private int[] ends = new int[1024];
+		private int[] firstChildren = new int[1024];
+		private int[] childCounts = new int[1024];
+		private int count;
+
+		private void add(int depth, int start, int end) {
+			if (count == depths.length) {
+				int capacity = count * 2;
+				depths = Arrays.copyOf(depths, capacity);
+				starts = Arrays.copyOf(starts, capacity);
+				ends = Arrays.copyOf(ends, capacity);
+				firstChildren = Arrays.copyOf(firstChildren, capacity);
+				childCounts = Arrays.copyOf(childCounts, capacity);
+			}
+			depths[count] = depth;
+			starts[count] = start;
+			ends[count] = end;
+			count++;
+		}
+	}
+
+	private record Keyed(String key, Entry entry) {}
+
+	/**
+	 * The order of the suggestions.
+	 */
+	public enum Ranking {
+		/** Most recently created first. */
+		RECENT,
+		/** Lowest price first. */
+		CHEAPEST
+	}
+
+	/**
+	 * The fields of a rental kept in the trie.
+	 *
+	 * @param id              The rental id.
+	 * @param name            The name, as entered by the owner.
+	 * @param createdAtMillis The creation date, in milliseconds.
+	 * @param priceCents      The price in cents.
+	 */
+	public record Entry(long id, String name, long createdAtMillis, long priceCents) {
+
+		/**
+		 * Builds the entry of a rental.
+		 *
+		 * @param id        The ID of the rental.
+		 * @param name      The name of the rental.
+		 * @param createdAt The creation date of the rental.
+		 * @param price     The price of the rental, in euros.
+		 * @return The entry.
+		 */
+		public static Entry of(Long id, String name, LocalDateTime createdAt, BigDecimal price) {
+			return new Entry(id, name, createdAt.toInstant(ZoneOffset.UTC).toEpochMilli(),
+					price.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact());
+		}
+
+		/**
+		 * Compares entries by the given ranking, best first.
+		 *
+		 * @param ranking The ranking.
+		 * @return The comparator.
+		 */
+		public static Comparator<Entry> order(Ranking ranking) {
+			return ranking == Ranking.RECENT
+					? Comparator.comparingLong(Entry::createdAtMillis).thenComparingLong(Entry::id).reversed()
+					: Comparator.comparingLong(Entry::priceCents).thenComparingLong(Entry::id);
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package fr.matthieu.chatop.index;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Holds the {@link RentalKdTree} used to find the rentals similar to a given one.
+ * <p>
+ * 		The tree is kept in an {@link OverlaidIndex}: created and updated rentals are first kept in an overlay,
+ * 		merged into a new tree in the background once it reaches {@code rentals.similar.overlay-size} rentals.
+ * </p>
+ */
+@Slf4j
+@Component
+public class RentalSimilarityIndex {
+
+	private final double recencyScaleMillis;
+	private final OverlaidIndex<RentalKdTree, RentalKdTree.Entry> index;
+
+	private final Timer lookupTimer;
+	private final Timer buildTimer;
+
+	@Autowired
+	public RentalSimilarityIndex(@Value("${rentals.similar.recency-days:365}") long recencyDays,
+								 @Value("${rentals.similar.overlay-size:512}") int overlaySize,
+								 MeterRegistry registry) {
+		this.recencyScaleMillis = Duration.ofDays(recencyDays).toMillis();
+		this.lookupTimer = Timer.builder("rentals.similar.lookup")
+				.description("Latency of the similar rentals queries")
+				.publishPercentiles(0.5, 0.99)
+				.register(registry);
+		this.buildTimer = Timer.builder("rentals.similar.build")
+				.description("Duration of the rental k-d tree builds")
+				.register(registry);
+		this.index = new OverlaidIndex<>("rental-similarity", new RentalKdTree(List.of(), recencyScaleMillis),
+				RentalKdTree.Entry::id, RentalKdTree::with, overlaySize, buildTimer);
+		Gauge.builder("rentals.similar.size", index, i -> i.state().structure().size()).register(registry);
+		Gauge.builder("rentals.similar.overlay", index, i -> i.state().overlay().size()).register(registry);
+	}
+
+	/**
+	 * Returns the indexed fields of a rental.
+	 *
+	 * @param id The ID of the rental.
+	 * @return The rental, or {@code null} if it is not indexed.
+	 */
+	public RentalKdTree.Entry get(long id) {
+		OverlaidIndex.State<RentalKdTree, RentalKdTree.Entry> current = index.state();
+		RentalKdTree.Entry entry = current.overlay().get(id);
+		return entry != null ? entry : current.structure().get(id);
+	}
+
+	/**
+	 * Finds the rentals closest to the given one by price, surface and recency, excluding itself.
+	 *
+	 * @param target The rental to compare with.
+	 * @param limit  The maximum number of rentals.
+	 * @return The closest rentals, closest first.
+	 */
+	public List<RentalKdTree.Neighbor> nearest(RentalKdTree.Entry target, int limit) {
+		return lookupTimer.record(() -> {
+			OverlaidIndex.State<RentalKdTree, RentalKdTree.Entry> current = index.state();
+			List<RentalKdTree.Neighbor> treeHits = current.structure().nearest(target, limit,
+					id -> id == target.id() || current.overlay().containsKey(id));
+			if (current.overlay().isEmpty()) {
+				return treeHits;
+			}
+
+			List<RentalKdTree.Neighbor> hits = new ArrayList<>(treeHits);
+			for (RentalKdTree.Entry entry : current.overlay().values()) {
+				if (entry.id() != target.id()) {
+					hits.add(new RentalKdTree.Neighbor(entry, current.structure().distance(target, entry)));
+				}
+			}
+			hits.sort(Comparator.comparingDouble(RentalKdTree.Neighbor::distance)
+					.thenComparingLong(neighbor -> neighbor.entry().id()));
+			return hits.size() > limit ? List.copyOf(hits.subList(0, limit)) : hits;
+		});
+	}
+
+	/**
+	 * Inserts or replaces a rental in the overlay, and schedules a merge once the overlay is full.
+	 *
+	 * @param entry The rental.
+	 */
+	public void upsert(RentalKdTree.Entry entry) {
+		index.upsert(entry);
+	}
+
+	/**
+	 * Replaces the tree with one built from the database. The overlay is kept, as it may hold
+	 * rentals committed after they were read.
+	 *
+	 * @param entries The rentals read from the database.
+	 */
+	public void rebuild(List<RentalKdTree.Entry> entries) {
+		RentalKdTree tree = buildTimer.record(() -> new RentalKdTree(entries, recencyScaleMillis));
+		index.replace(tree);
+		log.info("Rental k-d tree built with {} rentals", tree.size());
+	}
+
+	/**
+	 * Stops the merge thread.
+	 */
+	@PreDestroy
+	public void close() {
+		index.close();
+	}
+}
@@ -0,0 +1,473 @@
+package fr.matthieu.chatop.index;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable, column-oriented copy of the filterable rental fields.
+ * <p>
+ * 		Rows are sorted by rental id and split into chunks of about {@value #CHUNK_SIZE} rows. Each chunk holds
+ * 		every field in its own primitive array, so filters and facets are computed with sequential scans,
+ * 		without boxing nor database access.
+ * 		Modifications return a new snapshot (copy-on-write) that shares every chunk but the modified one;
+ * 		a snapshot is never changed once built.
+ * </p>
+ * <p>
+ * 		A facet query still scans every row: at one million rentals it takes 7 to 9 ms on a single core
+ * 		(see {@code RentalSnapshotBenchmark}), so it does not fit a sub-millisecond budget at that size.
+ * </p>
+ */
+public final class RentalSnapshot {
+
+	/**
+	 * The number of rows per chunk when a snapshot is built. A chunk is split in two once it holds twice as many.
+	 */
+	static final int CHUNK_SIZE = 1024;
+
+	/**
+	 * An empty snapshot.
+	 */
+	public static final RentalSnapshot EMPTY = new RentalSnapshot(new Chunk[0]);
+
+	private final Chunk[] chunks;
+	private final long[] firstIds;
+	private final int size;
+
+	private final long minPriceCents;
+	private final long maxPriceCents;
+	private final double minSurface;
+	private final double maxSurface;
+
+	/**
+	 * Wraps the given chunks, which must not be modified afterwards.
+	 *
+	 * @param chunks The chunks, none of them empty, sorted by rental id.
+	 */
+	private RentalSnapshot(Chunk[] chunks) {
+		this.chunks = chunks;
+		this.firstIds = new long[chunks.length];
+
+		int rows = 0;
+		long minPrice = Long.MAX_VALUE;
+		long maxPrice = Long.MIN_VALUE;
+		double minSurf = Double.POSITIVE_INFINITY;
+		double maxSurf = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < chunks.length; i++) {
+			Chunk chunk = chunks[i];
+			firstIds[i] = chunk.ids[0];
+			rows += chunk.size();
+			minPrice = Math.min(minPrice, chunk.minPriceCents);
+			maxPrice = Math.max(maxPrice, chunk.maxPriceCents);
+			minSurf = Math.min(minSurf, chunk.minSurface);
+			maxSurf = Math.max(maxSurf, chunk.maxSurface);
+		}
+		this.size = rows;
+		this.minPriceCents = size == 0 ? 0 : minPrice;
+		this.maxPriceCents = size == 0 ? 0 : maxPrice;
+		this.minSurface = size == 0 ? 0 : minSurf;
+		this.maxSurface = size == 0 ? 0 : maxSurf;
+	}
+
+	/**
+	 * Returns the number of rentals in the snapshot.
+	 *
+	 * @return The number of rows.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns a copy of this snapshot in which the given rental is inserted, or replaced if its id is already present.
+	 * Only the chunk holding the rental is copied.
+	 *
+	 * @param row The rental.
+	 * @return The new snapshot.
+	 */
+	public RentalSnapshot with(Row row) {
+		if (chunks.length == 0) {
+			return new RentalSnapshot(new Chunk[] {Chunk.EMPTY.with(row)});
+		}
+		int position = Arrays.binarySearch(firstIds, row.id());
+		int index = position >= 0 ? position : Math.max(0, -position - 2);
+		Chunk chunk = chunks[index].with(row);
+
+		Chunk[] newChunks;
+		if (chunk.size() > 2 * CHUNK_SIZE) {
+			newChunks = new Chunk[chunks.length + 1];
+			System.arraycopy(chunks, 0, newChunks, 0, index);
+			newChunks[index] = chunk.slice(0, CHUNK_SIZE);
+			newChunks[index + 1] = chunk.slice(CHUNK_SIZE, chunk.size());
+			System.arraycopy(chunks, index + 1, newChunks, index + 2, chunks.length - index - 1);
+		} else {
+			newChunks = chunks.clone();
+			newChunks[index] = chunk;
+		}
+		return new RentalSnapshot(newChunks);
+	}
+
+	/**
+	 * Scans the snapshot once to count the rentals matching the query, build the price and surface
+	 * histograms and select the top rentals.
+	 * <p>
+	 * 		Each histogram ignores the filter on its own field, so it shows the distribution the user can
+	 * 		still choose from. Buckets split the range of the whole snapshot, so they stay stable across queries.
+	 * </p>
+	 *
+	 * @param query The filters, histogram size and top-N selection.
+	 * @return The {@link FacetResult}.
+	 */
+	public FacetResult facets(Query query) {
+		int buckets = Math.max(1, query.buckets());
+		long priceWidth = Math.max(1, (maxPriceCents - minPriceCents + buckets) / buckets);
+		double surfaceWidth = maxSurface > minSurface ? (maxSurface - minSurface) / buckets : 1;
+		long[] priceCounts = new long[buckets];
+		long[] surfaceCounts = new long[buckets];
+		TopRows top = new TopRows(Math.max(0, query.top()), query.sortBySurface(), query.descending());
+		long count = 0;
+
+		for (Chunk chunk : chunks) {
+			long[] chunkIds = chunk.ids;
+			long[] chunkPrices = chunk.priceCents;
+			double[] chunkSurfaces = chunk.surfaces;
+			long[] chunkOwners = chunk.ownerIds;
+			for (int row = 0; row < chunkIds.length; row++) {
+				if (query.ownerId() != 0 && chunkOwners[row] != query.ownerId()) {
+					continue;
+				}
+				long price = chunkPrices[row];
+				double surface = chunkSurfaces[row];
+				boolean priceMatches = price >= query.minPriceCents() && price <= query.maxPriceCents();
+				boolean surfaceMatches = surface >= query.minSurface() && surface <= query.maxSurface();
+
+				if (surfaceMatches) {
+					priceCounts[(int) Math.min(buckets - 1, (price - minPriceCents) / priceWidth)]++;
+				}
+				if (priceMatches) {
+					surfaceCounts[(int) Math.min(buckets - 1, (surface - minSurface) / surfaceWidth)]++;
+				}
+				if (priceMatches && surfaceMatches) {
+					count++;
+					top.offer(chunkIds[row], price, surface);
+				}
+			}
+		}
+
+		long[] topIds = new long[top.count];
+		long[] topPrices = new long[top.count];
+		double[] topSurfaces = new double[top.count];
+		top.drainTo(topIds, topPrices, topSurfaces);
+		return new FacetResult(count, minPriceCents, priceWidth, priceCounts, minSurface, surfaceWidth, surfaceCounts,
+				topIds, topPrices, topSurfaces);
+	}
+
+	private static long[] insert(long[] array, int index, long value) {
+		long[] copy = new long[array.length + 1];
+		System.arraycopy(array, 0, copy, 0, index);
+		copy[index] = value;
+		System.arraycopy(array, index, copy, index + 1, array.length - index);
+		return copy;
+	}
+
+	private static double[] insert(double[] array, int index, double value) {
+		double[] copy = new double[array.length + 1];
+		System.arraycopy(array, 0, copy, 0, index);
+		copy[index] = value;
+		System.arraycopy(array, index, copy, index + 1, array.length - index);
+		return copy;
+	}
+
+	/**
+	 * A run of consecutive rows, with the range of its prices and surfaces. Never modified once built.
+	 */
+	private static final class Chunk {
+
+		private static final Chunk EMPTY = new Chunk(new long[0], new long[0], new double[0], new long[0]);
+
+		private final long[] ids;
+		private final long[] priceCents;
+		private final double[] surfaces;
+		private final long[] ownerIds;
+
+		private final long minPriceCents;
+		private final long maxPriceCents;
+		private final double minSurface;
+		private final double maxSurface;
+
+		private Chunk(long[] ids, long[] priceCents, double[] surfaces, long[] ownerIds) {
+			this.ids = ids;
+			this.priceCents = priceCents;
+			this.surfaces = surfaces;
+			this.ownerIds = ownerIds;
+
+			long minPrice = Long.MAX_VALUE;
+			long maxPrice = Long.MIN_VALUE;
+			double minSurf = Double.POSITIVE_INFINITY;
+			double maxSurf = Double.NEGATIVE_INFINITY;
+			for (int row = 0; row < ids.length; row++) {
+				minPrice = Math.min(minPrice, priceCents[row]);
+				maxPrice = Math.max(maxPrice, priceCents[row]);
+				minSurf = Math.min(minSurf, surfaces[row]);
+				maxSurf = Math.max(maxSurf, surfaces[row]);
+			}
+			this.minPriceCents = minPrice;
+			this.maxPriceCents = maxPrice;
+			this.minSurface = minSurf;
+			this.maxSurface = maxSurf;
+		}
+
+		private int size() {
+			return ids.length;
+		}
+
+		/**
+		 * Returns a copy of this chunk in which the given rental is inserted, or replaced if its id is already present.
+		 */
+		private Chunk with(Row row) {
+			int position = Arrays.binarySearch(ids, row.id());
+			if (position >= 0) {
+				long[] newPrices = priceCents.clone();
+				double[] newSurfaces = surfaces.clone();
+				long[] newOwners = ownerIds.clone();
+				newPrices[position] = row.priceCents();
+				newSurfaces[position] = row.surface();
+				newOwners[position] = row.ownerId();
+				return new Chunk(ids, newPrices, newSurfaces, newOwners);
+			}
+
+			int insertAt = -position - 1;
+			return new Chunk(
+					insert(ids, insertAt, row.id()),
+					insert(priceCents, insertAt, row.priceCents()),
+					insert(surfaces, insertAt, row.surface()),
+					insert(ownerIds, insertAt, row.ownerId()));
+		}
+
+		private Chunk slice(int from, int to) {
+			return new Chunk(Arrays.copyOfRange(ids, from, to), Arrays.copyOfRange(priceCents, from, to),
+					Arrays.copyOfRange(surfaces, from, to), Arrays.copyOfRange(ownerIds, from, to));
+		}
+	}
+
+	/**
+	 * Bounded heap keeping the best rows for the requested sort, with the worst kept row at the root.
+	 * Ties are broken by ascending rental id. The fields of the kept rows are copied, so chunks are not looked up again.
+	 */
+	private static final class TopRows {
+
+		private final long[] ids;
+		private final long[] priceCents;
+		private final double[] surfaces;
+		private final boolean bySurface;
+		private final boolean descending;
+		private int count;
+
+		private TopRows(int capacity, boolean bySurface, boolean descending) {
+			this.ids = new long[capacity];
+			this.priceCents = new long[capacity];
+			this.surfaces = new double[capacity];
+			this.bySurface = bySurface;
+			this.descending = descending;
+		}
+
+		private void offer(long id, long price, double surface) {
+			if (ids.length == 0) {
+				return;
+			}
+			if (count < ids.length) {
+				set(count, id, price, surface);
+				siftUp(count++);
+			} else if (isWorse(0, id, price, surface)) {
+				set(0, id, price, surface);
+				siftDown(0, count);
+			}
+		}
+
+		/**
+		 * Empties the heap into the given arrays, ordered from the best row to the worst.
+		 */
+		private void drainTo(long[] topIds, long[] topPrices, double[] topSurfaces) {
+			for (int last = count - 1; last >= 0; last--) {
+				topIds[last] = ids[0];
+				topPrices[last] = priceCents[0];
+				topSurfaces[last] = surfaces[0];
+				set(0, ids[last], priceCents[last], surfaces[last]);
+				siftDown(0, last);
+			}
+			count = 0;
+		}
+
+		/**
+		 * Returns whether the kept row at the given index is worse than the given row.
+		 */
+		private boolean isWorse(int index, long id, long price, double surface) {
+			int comparison = bySurface
+					? Double.compare(surfaces[index], surface)
+					: Long.compare(priceCents[index], price);
+			if (comparison != 0) {
+				return descending ? comparison < 0 : comparison > 0;
+			}
+			return ids[index] > id;
+		}
+
+		private boolean isWorse(int a, int b) {
+			return isWorse(a, ids[b], priceCents[b], surfaces[b]);
+		}
+
+		private void siftUp(int index) {
+			while (index > 0) {
+				int parent = (index - 1) / 2;
+				if (!isWorse(index, parent)) {
+					return;
+				}
+				swap(index, parent);
+				index = parent;
+			}
+		}
+
+		private void siftDown(int index, int length) {
+			while (true) {
+				int worst = index;
+				int left = 2 * index + 1;
+				int right = left + 1;
+				if (left < length && isWorse(left, worst)) {
+					worst = left;
+				}
+				if (right < length && isWorse(right, worst)) {
+					worst = right;
+				}
+				if (worst == index) {
+					return;
+				}
+				swap(index, worst);
+				index = worst;
+			}
+		}
+
+		private void set(int index, long id, long price, double surface) {
+			ids[index] = id;
+			priceCents[index] = price;
+			surfaces[index] = surface;
+		}
+
+		private void swap(int i, int j) {
+			long id = ids[i];
+			long price = priceCents[i];
+			double surface = surfaces[i];
+			set(i, ids[j], priceCents[j], surfaces[j]);
+			set(j, id, price, surface);
+		}
+	}
+
+	/**
+	 * Accumulates rows into chunks to build a snapshot. Rows must be added by ascending id.
+	 */
+	public static final class Builder {
+
+		private final List<Chunk> chunks = new ArrayList<>();
+		private long[] ids = new long[CHUNK_SIZE];
+		private long[] priceCents = new long[CHUNK_SIZE];
+		private double[] surfaces = new double[CHUNK_SIZE];
+		private long[] ownerIds = new long[CHUNK_SIZE];
+		private int size;
+
+		/**
+		 * Appends a row.
+		 *
+		 * @param row The rental, whose id must be greater than the id of the previous row.
+		 * @return This builder.
+		 */
+		public Builder add(Row row) {
+			ids[size] = row.id();
+			priceCents[size] = row.priceCents();
+			surfaces[size] = row.surface();
+			ownerIds[size] = row.ownerId();
+			size++;
+			if (size == CHUNK_SIZE) {
+				chunks.add(new Chunk(ids, priceCents, surfaces, ownerIds));
+				ids = new long[CHUNK_SIZE];
+				priceCents = new long[CHUNK_SIZE];
+				surfaces = new double[CHUNK_SIZE];
+				ownerIds = new long[CHUNK_SIZE];
+				size = 0;
+			}
+			return this;
+		}
+
+		/**
+		 * Builds the snapshot, trimming the last chunk to its number of rows.
+		 *
+		 * @return The snapshot.
+		 */
+		public RentalSnapshot build() {
+			List<Chunk> built = new ArrayList<>(chunks);
+			if (size > 0) {
+				built.add(new Chunk(Arrays.copyOf(ids, size), Arrays.copyOf(priceCents, size),
+						Arrays.copyOf(surfaces, size), Arrays.copyOf(ownerIds, size)));
+			}
+			return new RentalSnapshot(built.toArray(Chunk[]::new));
+		}
+	}
+
+	/**
+	 * The filterable fields of one rental.
+	 *
+	 * @param id         The rental id.
+	 * @param priceCents The price in cents.
+	 * @param surface    The surface.
+	 * @param ownerId    The owner id.
+	 */
+	public record Row(long id, long priceCents, double surface, long ownerId) {
+
+		/**
+		 * Builds the row of a rental.
+		 *
+		 * @param id      The ID of the rental.
+		 * @param price   The price of the rental, in euros.
+		 * @param surface The surface of the rental.
+		 * @param ownerId The ID of the owner.
+		 * @return The row.
+		 */
+		public static Row of(Long id, BigDecimal price, Double surface, Long ownerId) {
+			return new Row(id, price.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact(), surface, ownerId);
+		}
+	}
+
+	/**
+	 * A facet query. Unbounded ranges use the extreme values of their type.
+	 *
+	 * @param minPriceCents The minimum price in cents.
+	 * @param maxPriceCents The maximum price in cents.
+	 * @param minSurface    The minimum surface.
+	 * @param maxSurface    The maximum surface.
+	 * @param ownerId       The owner id, or 0 for any owner.
+	 * @param buckets       The number of histogram buckets.
+	 * @param top           The number of top rentals to select.
+	 * @param sortBySurface Whether the top rentals are ranked by surface rather than by price.
+	 * @param descending    Whether the top rentals are the highest rather than the lowest.
+	 */
+	public record Query(long minPriceCents, long maxPriceCents, double minSurface, double maxSurface, long ownerId,
+						int buckets, int top, boolean sortBySurface, boolean descending) {}
+
+	/**
+	 * The result of a facet query. Bucket {@code i} covers {@code [min + i * width, min + (i + 1) * width)},
+	 * the last one also holding the maximum value.
+	 *
+	 * @param count             The number of rentals matching every filter.
+	 * @param priceMinCents     The lower bound of the first price bucket, in cents.
+	 * @param priceWidthCents   The width of the price buckets, in cents.
+	 * @param priceCounts       The number of rentals per price bucket.
+	 * @param surfaceMin        The lower bound of the first surface bucket.
+	 * @param surfaceWidth      The width of the surface buckets.
+	 * @param surfaceCounts     The number of rentals per surface bucket.
+	 * @param topIds            The ids of the top rentals, best first.
+	 * @param topPriceCents     The prices of the top rentals, in cents.
+	 * @param topSurfaces       The surfaces of the top rentals.
+	 */
+	public record FacetResult(long count, long priceMinCents, long priceWidthCents, long[] priceCounts,
+							  double surfaceMin, double surfaceWidth, long[] surfaceCounts,
+							  long[] topIds, long[] topPriceCents, double[] topSurfaces) {}
+}
@@ -0,0 +1,116 @@
+package fr.matthieu.chatop.index;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Holds the current {@link RentalSnapshot} used to answer facet queries.
+ * <p>
+ * 		Readers get the current snapshot without locking. Writers replace it with a modified copy;
+ * 		rows written while a rebuild from the database is running are replayed on the rebuilt snapshot,
+ * 		so no committed change is lost.
+ * </p>
+ */
+@Slf4j
+@Component
+public class RentalSnapshotIndex implements MeterBinder {
+
+	private final Object writeLock = new Object();
+	private volatile RentalSnapshot snapshot = RentalSnapshot.EMPTY;
+	private List<RentalSnapshot.Row> pendingDuringRebuild;
+
+	private final LongAdder queries = new LongAdder();
+	private final LongAdder updates = new LongAdder();
+	private volatile long lastRebuildMillis;
+
+	/**
+	 * Returns the current snapshot.
+	 *
+	 * @return The snapshot; never modified, it can be read without synchronization.
+	 */
+	public RentalSnapshot current() {
+		queries.increment();
+		return snapshot;
+	}
+
+	/**
+	 * Inserts or replaces a rental in the snapshot.
+	 *
+	 * @param row The rental.
+	 */
+	public void upsert(RentalSnapshot.Row row) {
+		synchronized (writeLock) {
+			snapshot = snapshot.with(row);
+			if (pendingDuringRebuild != null) {
+				pendingDuringRebuild.add(row);
+			}
+		}
+		updates.increment();
+	}
+
+	/**
+	 * Starts recording the rows written until {@link #completeRebuild(RentalSnapshot, long)} is called.
+	 * Must be called before reading the rentals from the database.
+	 */
+	public void beginRebuild() {
+		synchronized (writeLock) {
+			pendingDuringRebuild = new ArrayList<>();
+		}
+	}
+
+	/**
+	 * Installs a snapshot rebuilt from the database, with the rows written since {@link #beginRebuild()}.
+	 *
+	 * @param rebuilt        The snapshot read from the database.
+	 * @param durationMillis The time spent reading it.
+	 */
+	public void completeRebuild(RentalSnapshot rebuilt, long durationMillis) {
+		synchronized (writeLock) {
+			RentalSnapshot result = rebuilt;
+			for (RentalSnapshot.Row row : pendingDuringRebuild) {
+				result = result.with(row);
+			}
+			snapshot = result;
+			pendingDuringRebuild = null;
+		}
+		lastRebuildMillis = durationMillis;
+		log.info("Rental snapshot rebuilt with {} rentals in {} ms", snapshot.size(), durationMillis);
+	}
+
+	/**
+	 * Stops recording the written rows after a failed rebuild. The current snapshot is kept.
+	 */
+	public void cancelRebuild() {
+		synchronized (writeLock) {
+			pendingDuringRebuild = null;
+		}
+	}
+
+	/**
+	 * Returns the number of rentals in the current snapshot.
+	 *
+	 * @return The snapshot size.
+	 */
+	public int size() {
+		return snapshot.size();
+	}
+
+	@Override
+	public void bindTo(@NonNull MeterRegistry registry) {
+		Gauge.builder("rentals.snapshot.size", this, RentalSnapshotIndex::size).register(registry);
+		FunctionCounter.builder("rentals.snapshot.queries", queries, LongAdder::sum).register(registry);
+		FunctionCounter.builder("rentals.snapshot.updates", updates, LongAdder::sum).register(registry);
+		Gauge.builder("rentals.snapshot.rebuild.duration", this, index -> index.lastRebuildMillis)
+				.baseUnit("milliseconds")
+				.register(registry);
+	}
+}
@@ -0,0 +1,464 @@
+package fr.matthieu.chatop.index;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoublePoint;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PointValues;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.highlight.Highlighter;
+import org.apache.lucene.search.highlight.InvalidTokenOffsetsException;
+import org.apache.lucene.search.highlight.QueryScorer;
+import org.apache.lucene.search.highlight.SimpleHTMLEncoder;
+import org.apache.lucene.search.highlight.SimpleHTMLFormatter;
+import org.apache.lucene.search.highlight.SimpleSpanFragmenter;
+import org.apache.lucene.store.FSDirectory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Embedded Lucene index of the rental names and descriptions.
+ * <p>
+ * 		The index is stored in a local directory and kept in sync with the database after each committed
+ * 		rental change. Names weigh twice as much as descriptions in the relevance ranking.
+ * 		Price, surface and owner are indexed as points so that the filters of the search endpoint
+ * 		also apply to full-text queries.
+ * </p>
+ * <p>
+ * 		A rebuild writes the rentals read from the database to a separate directory, then swaps them into
+ * 		the live index in a single commit, so searches never see a partial index. Rentals indexed while the
+ * 		rebuild is running are replayed over the rebuilt content, so no committed change is lost.
+ * </p>
+ * <p>
+ * 		Changes are searchable as soon as they are indexed, but only written durably by a scheduled commit
+ * 		and when the index is closed, so that a rental write does not wait for an fsync. Each commit records
+ * 		whether it was made by a clean close: an index left by a crash may miss the last changes, so it does
+ * 		not {@link #matches match} the database and is rebuilt at startup.
+ * </p>
+ */
+@Slf4j
+@Component
+public class RentalTextIndex {
+
+	private static final String ID = "id";
+	private static final String NAME = "name";
+	private static final String DESCRIPTION = "description";
+	private static final String PRICE = "price";
+	private static final String SURFACE = "surface";
+	private static final String OWNER = "owner";
+	private static final String CREATED_AT = "created_at";
+	private static final int FRAGMENT_SIZE = 150;
+	private static final String CLOSED_CLEANLY = "closed_cleanly";
+
+	private final FSDirectory directory;
+	private final Path rebuildPath;
+	private final Analyzer analyzer = new StandardAnalyzer();
+	private final IndexWriter writer;
+	private final SearcherManager searcherManager;
+	private final Object writeLock = new Object();
+	private List<Entry> pendingDuringRebuild;
+	private volatile boolean complete;
+
+	private final Timer searchTimer;
+	private final Timer indexTimer;
+	private final Counter indexFailures;
+
+	/**
+	 * Opens the index, creating it if the directory is empty.
+	 *
+	 * @param directoryPath The directory holding the index files.
+	 * @param registry      The registry the latency metrics are published to.
+	 * @throws IOException If the index cannot be opened.
+	 */
+	public RentalTextIndex(@Value("${rentals.text-index.directory:data/rental-index}") String directoryPath,
+						   MeterRegistry registry) throws IOException {
+		this.directory = FSDirectory.open(Path.of(directoryPath));
+		this.rebuildPath = Path.of(directoryPath + "-rebuild");
+		boolean existed = DirectoryReader.indexExists(directory);
+		this.writer = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+		this.complete = !existed || closedCleanly(writer.getLiveCommitData());
+		// Until the next clean close, the commits may miss the changes made after them
+		writer.setLiveCommitData(Map.of(CLOSED_CLEANLY, "false").entrySet());
+		writer.commit();
+		this.searcherManager = new SearcherManager(writer, null);
+
+		this.searchTimer = Timer.builder("rentals.text.search")
+				.description("Latency of the full-text rental searches")
+				.publishPercentiles(0.5, 0.95, 0.99)
+				.register(registry);
+		this.indexTimer = Timer.builder("rentals.text.index")
+				.description("Latency of the full-text index updates")
+				.register(registry);
+		this.indexFailures = Counter.builder("rentals.text.index.failures").register(registry);
+		Gauge.builder("rentals.text.index.documents", this, RentalTextIndex::numDocs)
+				.register(registry);
+		log.info("Rental text index opened in {} with {} documents", directoryPath, numDocs());
+	}
+
+	/**
+	 * Indexes a rental, replacing its previous version. Failures are logged and counted,
+	 * the index being recoverable with a rebuild.
+	 * The rental is searchable at once, and written durably by the next {@link #commit()}.
+	 *
+	 * @param entry The rental to index.
+	 */
+	public void upsert(Entry entry) {
+		indexTimer.record(() -> {
+			synchronized (writeLock) {
+				if (pendingDuringRebuild != null) {
+					pendingDuringRebuild.add(entry);
+				}
+				try {
+					writer.updateDocument(new Term(ID, String.valueOf(entry.id())), toDocument(entry));
+					searcherManager.maybeRefresh();
+				} catch (IOException e) {
+					indexFailures.increment();
+					log.error("Unable to index rental {}", entry.id(), e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Writes the indexed changes durably, if any.
+	 * Holds the write lock, so a rebuild is never committed half swapped.
+	 */
+	@Scheduled(fixedDelayString = "${rentals.text-index.commit-interval-ms:30000}")
+	public void commit() {
+		synchronized (writeLock) {
+			if (!writer.isOpen() || !writer.hasUncommittedChanges()) {
+				return;
+			}
+			try {
+				writer.commit();
+			} catch (IOException e) {
+				indexFailures.increment();
+				log.error("Unable to commit the rental text index", e);
+			}
+		}
+	}
+
+	/**
+	 * Starts recording the rentals indexed until {@link #completeRebuild(Stream)} is called.
+	 * Must be called before reading the rentals from the database.
+	 */
+	public void beginRebuild() {
+		synchronized (writeLock) {
+			pendingDuringRebuild = new ArrayList<>();
+		}
+	}
+
+	/**
+	 * Replaces the content of the index with the given rentals, then with the rentals indexed since {@link #beginRebuild()}.
+	 * The live index is left untouched until the given rentals are all written.
+	 *
+	 * @param entries The rentals read from the database.
+	 * @return The number of rentals read from the database.
+	 * @throws UncheckedIOException If the index cannot be written; the live index is then kept.
+	 */
+	public long completeRebuild(Stream<Entry> entries) {
+		try {
+			deleteRebuildDirectory();
+			long count = 0;
+			try (FSDirectory rebuilt = FSDirectory.open(rebuildPath)) {
+				try (IndexWriter rebuildWriter = new IndexWriter(rebuilt,
+						new IndexWriterConfig(analyzer).setOpenMode(IndexWriterConfig.OpenMode.CREATE))) {
+					for (Entry entry : (Iterable<Entry>) entries::iterator) {
+						rebuildWriter.addDocument(toDocument(entry));
+						count++;
+					}
+				}
+				synchronized (writeLock) {
+					writer.deleteAll();
+					writer.addIndexes(rebuilt);
+					for (Entry entry : pendingDuringRebuild) {
+						writer.updateDocument(new Term(ID, String.valueOf(entry.id())), toDocument(entry));
+					}
+					writer.commit();
+					searcherManager.maybeRefresh();
+					pendingDuringRebuild = null;
+					complete = true;
+				}
+			}
+			deleteRebuildDirectory();
+			return count;
+		} catch (IOException e) {
+			cancelRebuild();
+			indexFailures.increment();
+			throw new UncheckedIOException("Unable to rebuild the rental text index", e);
+		}
+	}
+
+	/**
+	 * Stops recording the indexed rentals after a failed rebuild. The live index is kept.
+	 */
+	public void cancelRebuild() {
+		synchronized (writeLock) {
+			pendingDuringRebuild = null;
+		}
+	}
+
+	/**
+	 * Tells whether the index holds as many rentals as the database, the most recent one included.
+	 * Ids being reused when the database is recreated, the count alone does not tell a stale index apart.
+	 * An index that was not closed cleanly never matches, as it may miss updates of existing rentals.
+	 *
+	 * @param rentalCount     The number of rentals in the database.
+	 * @param latestCreatedAt The creation date of the most recent rental, or {@code null} if there is none.
+	 * @return {@code true} if the index matches the database.
+	 * @throws UncheckedIOException If the index cannot be read.
+	 */
+	public boolean matches(long rentalCount, LocalDateTime latestCreatedAt) {
+		if (!complete || numDocs() != rentalCount) {
+			return false;
+		}
+		if (rentalCount == 0) {
+			return true;
+		}
+		try {
+			IndexSearcher searcher = searcherManager.acquire();
+			try {
+				Long latest = null;
+				for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+					PointValues points = leaf.reader().getPointValues(CREATED_AT);
+					if (points != null) {
+						long max = LongPoint.decodeDimension(points.getMaxPackedValue(), 0);
+						latest = latest == null ? max : Math.max(latest, max);
+					}
+				}
+				return latest != null && latestCreatedAt != null && latest == toMillis(latestCreatedAt);
+			} finally {
+				searcherManager.release(searcher);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to read the rental text index", e);
+		}
+	}
+
+	/**
+	 * Searches the rentals matching the text and the filters, ranked by relevance.
+	 *
+	 * @param query  The text and filters.
+	 * @param offset The number of ranked hits to skip.
+	 * @param limit  The maximum number of hits to return.
+	 * @return The {@link Result} holding the hits and the total number of matches.
+	 * @throws UncheckedIOException If the index cannot be read.
+	 */
+	public Result search(TextQuery query, int offset, int limit) {
+		return searchTimer.record(() -> {
+			try {
+				return doSearch(query, offset, limit);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Unable to search the rental text index", e);
+			}
+		});
+	}
+
+	/**
+	 * Returns the number of indexed rentals.
+	 *
+	 * @return The number of documents.
+	 */
+	public long numDocs() {
+		return writer.getDocStats().numDocs;
+	}
+
+	/**
+	 * Commits pending changes, marked as a clean close, and closes the index.
+	 *
+	 * @throws IOException If the index cannot be closed.
+	 */
+	@PreDestroy
+	public void close() throws IOException {
+		searcherManager.close();
+		synchronized (writeLock) {
+			writer.setLiveCommitData(Map.of(CLOSED_CLEANLY, "true").entrySet());
+			writer.close();
+		}
+		directory.close();
+	}
+
+	private static boolean closedCleanly(Iterable<Map.Entry<String, String>> commitData) {
+		if (commitData != null) {
+			for (Map.Entry<String, String> entry : commitData) {
+				if (CLOSED_CLEANLY.equals(entry.getKey())) {
+					return Boolean.parseBoolean(entry.getValue());
+				}
+			}
+		}
+		return false;
+	}
+
+	private void deleteRebuildDirectory() throws IOException {
+		if (!Files.exists(rebuildPath)) {
+			return;
+		}
+		try (Stream<Path> files = Files.walk(rebuildPath)) {
+			for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+				Files.delete(file);
+			}
+		}
+	}
+
+	private Result doSearch(TextQuery query, int offset, int limit) throws IOException {
+		SimpleQueryParser parser = new SimpleQueryParser(analyzer, Map.of(NAME, 2f, DESCRIPTION, 1f));
+		Query textQuery = parser.parse(query.text());
+
+		BooleanQuery.Builder builder = new BooleanQuery.Builder().add(textQuery, BooleanClause.Occur.MUST);
+		if (query.minPrice() != null || query.maxPrice() != null) {
+			long min = query.minPrice() != null ? toCents(query.minPrice(), RoundingMode.CEILING) : Long.MIN_VALUE;
+			long max = query.maxPrice() != null ? toCents(query.maxPrice(), RoundingMode.FLOOR) : Long.MAX_VALUE;
+			builder.add(LongPoint.newRangeQuery(PRICE, min, max), BooleanClause.Occur.FILTER);
+		}
+		if (query.minSurface() != null || query.maxSurface() != null) {
+			double min = query.minSurface() != null ? query.minSurface() : Double.NEGATIVE_INFINITY;
+			double max = query.maxSurface() != null ? query.maxSurface() : Double.POSITIVE_INFINITY;
+			builder.add(DoublePoint.newRangeQuery(SURFACE, min, max), BooleanClause.Occur.FILTER);
+		}
+		if (query.ownerId() != null) {
+			builder.add(LongPoint.newExactQuery(OWNER, query.ownerId()), BooleanClause.Occur.FILTER);
+		}
+
+		QueryScorer scorer = new QueryScorer(textQuery);
+		Highlighter highlighter = new Highlighter(new SimpleHTMLFormatter("<em>", "</em>"), new SimpleHTMLEncoder(), scorer);
+		highlighter.setTextFragmenter(new SimpleSpanFragmenter(scorer, FRAGMENT_SIZE));
+
+		IndexSearcher searcher = searcherManager.acquire();
+		try {
+			TopDocs topDocs = searcher.search(builder.build(), offset + limit);
+			StoredFields storedFields = searcher.storedFields();
+			List<Hit> hits = new ArrayList<>();
+			for (int i = offset; i < topDocs.scoreDocs.length; i++) {
+				ScoreDoc scoreDoc = topDocs.scoreDocs[i];
+				Document document = storedFields.document(scoreDoc.doc);
+				hits.add(new Hit(
+						Long.parseLong(document.get(ID)),
+						scoreDoc.score,
+						highlight(highlighter, NAME, document.get(NAME)),
+						highlight(highlighter, DESCRIPTION, document.get(DESCRIPTION))));
+			}
+			return new Result(hits, topDocs.totalHits.value);
+		} finally {
+			searcherManager.release(searcher);
+		}
+	}
+
+	/**
+	 * Returns the best fragment of a field with the matching terms wrapped in {@code <em>} tags.
+	 * The rest of the text is HTML-escaped.
+	 *
+	 * @return The fragment, or {@code null} when no term of the field matches.
+	 */
+	private String highlight(Highlighter highlighter, String field, String text) throws IOException {
+		try {
+			return highlighter.getBestFragment(analyzer, field, text);
+		} catch (InvalidTokenOffsetsException e) {
+			return null;
+		}
+	}
+
+	private Document toDocument(Entry entry) {
+		Document document = new Document();
+		document.add(new StringField(ID, String.valueOf(entry.id()), Field.Store.YES));
+		document.add(new TextField(NAME, entry.name(), Field.Store.YES));
+		document.add(new TextField(DESCRIPTION, entry.description(), Field.Store.YES));
+		document.add(new LongPoint(PRICE, toCents(entry.price(), RoundingMode.HALF_UP)));
+		document.add(new DoublePoint(SURFACE, entry.surface()));
+		document.add(new LongPoint(OWNER, entry.ownerId()));
+		if (entry.createdAt() != null) {
+			document.add(new LongPoint(CREATED_AT, toMillis(entry.createdAt())));
+		}
+		return document;
+	}
+
+	private static long toMillis(LocalDateTime dateTime) {
+		return dateTime.truncatedTo(ChronoUnit.MILLIS).toInstant(ZoneOffset.UTC).toEpochMilli();
+	}
+
+	private static long toCents(BigDecimal price, RoundingMode rounding) {
+		return price.movePointRight(2).setScale(0, rounding).longValueExact();
+	}
+
+	/**
+	 * The indexed fields of a rental.
+	 *
+	 * @param id          The ID of the rental.
+	 * @param name        The name of the rental.
+	 * @param description The description of the rental.
+	 * @param price       The price of the rental.
+	 * @param surface     The surface of the rental.
+	 * @param ownerId     The ID of the owner.
+	 * @param createdAt   The creation date of the rental.
+	 */
+	public record Entry(long id, String name, String description, BigDecimal price, double surface, long ownerId,
+						LocalDateTime createdAt) {}
+
+	/**
+	 * A full-text query with optional filters.
+	 *
+	 * @param text       The searched text.
+	 * @param minPrice   The minimum price, or {@code null}.
+	 * @param maxPrice   The maximum price, or {@code null}.
+	 * @param minSurface The minimum surface, or {@code null}.
+	 * @param maxSurface The maximum surface, or {@code null}.
+	 * @param ownerId    The ID of the owner, or {@code null}.
+	 */
+	public record TextQuery(String text, BigDecimal minPrice, BigDecimal maxPrice, Double minSurface, Double maxSurface, Long ownerId) {}
+
+	/**
+	 * A ranked hit.
+	 *
+	 * @param id                   The ID of the rental.
+	 * @param score                The relevance score.
+	 * @param nameHighlight        The highlighted name, or {@code null} if no term matches it.
+	 * @param descriptionHighlight The highlighted description fragment, or {@code null} if no term matches it.
+	 */
+	public record Hit(long id, float score, String nameHighlight, String descriptionHighlight) {}
+
+	/**
+	 * A page of ranked hits.
+	 *
+	 * @param hits      The hits of the page.
+	 * @param totalHits The number of matching rentals (a lower bound beyond a thousand matches).
+	 */
+	public record Result(List<Hit> hits, long totalHits) {}
+}
@@ -0,0 +1,83 @@
+package fr.matthieu.chatop.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * An opaque refresh token, stored as the SHA-256 hash of its value.
+ * <p>
+ * 		Refresh tokens are rotated on every use. All the tokens descending from the same login
+ * 		belong to the same family, identified by the id of the login session.
+ * </p>
+ */
+@Data
+@Entity
+@Table(name = "refresh_tokens", indexes = {
+		@Index(name = "idx_refresh_tokens_family_id", columnList = "family_id"),
+		@Index(name = "idx_refresh_tokens_expires_at", columnList = "expires_at")
+})
+public class RefreshTokenEntity implements Persistable<String> {
+
+	@Id
+	@Column(name = "token_hash", length = 64)
+	private String tokenHash;
+
+	@Column(name = "family_id", nullable = false, length = 36)
+	private String familyId;
+
+	@Column(name = "user_id", nullable = false)
+	private Long userId;
+
+	@Column(name = "token_version", nullable = false)
+	private Integer tokenVersion;
+
+	@Column(name = "expires_at", nullable = false)
+	private LocalDateTime expiresAt;
+
+	@Column(name = "used", nullable = false)
+	private boolean used;
+
+	@Column(name = "revoked", nullable = false)
+	private boolean revoked;
+
+	/**
+	 * Whether the token has not been persisted yet.
+	 * Lets {@code save} issue a plain INSERT instead of a SELECT followed by an INSERT.
+	 */
+	@Transient
+	private boolean newToken = true;
+
+	/**
+	 * Default constructor required by JPA.
+	 * This constructor should not be used in application code.
+	 */
+	@Deprecated
+	protected RefreshTokenEntity() {}
+
+	public RefreshTokenEntity(String tokenHash, String familyId, Long userId, Integer tokenVersion, LocalDateTime expiresAt) {
+		this.tokenHash = tokenHash;
+		this.familyId = familyId;
+		this.userId = userId;
+		this.tokenVersion = tokenVersion;
+		this.expiresAt = expiresAt;
+	}
+
+	@Override
+	public String getId() {
+		return tokenHash;
+	}
+
+	@Override
+	public boolean isNew() {
+		return newToken;
+	}
+
+	@PostPersist
+	@PostLoad
+	public void markNotNew() {
+		this.newToken = false;
+	}
+}
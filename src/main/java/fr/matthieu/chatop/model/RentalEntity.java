@@ -2,13 +2,22 @@ package fr.matthieu.chatop.model;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
+import static fr.matthieu.chatop.common.CacheRegions.RENTALS;
+
 @Data
 @Entity
-@Table(name = "rentals")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = RENTALS)
+// The search indexes on (price, id), (surface, id), (created_at, id) and (owner_id, created_at) are created by schema-<platform>.sql
+@Table(name = "rentals", indexes = {
+		@Index(name = "idx_rentals_picture_thumbnail", columnList = "picture_thumbnail")
+})
 public class RentalEntity {
 
 
@@ -28,10 +37,28 @@ public class RentalEntity {
 	@Column(name = "picture", nullable = false)
 	private String picture;
 
+	/**
+	 * URLs of the resized copies of the picture, {@code null} until they are generated.
+	 */
+	@Column(name = "picture_thumbnail")
+	private String pictureThumbnail;
+
+	@Column(name = "picture_card")
+	private String pictureCard;
+
+	@Column(name = "picture_full")
+	private String pictureFull;
+
+	/**
+	 * BlurHash of the picture, shown by clients while it loads; {@code null} until it is computed.
+	 */
+	@Column(name = "picture_placeholder", length = 64)
+	private String picturePlaceholder;
+
 	@Column(name = "description", nullable = false, length = 1000)
 	private String description;
 
-	@ManyToOne
+	@ManyToOne(fetch = FetchType.LAZY)
 	@JoinColumn(name = "owner_id", nullable = false)
 	private UserEntity owner;
 
@@ -41,6 +68,10 @@ public class RentalEntity {
 	@Column(name = "updated_at")
 	private LocalDateTime updatedAt;
 
+	@Version
+	@Column(name = "version", nullable = false)
+	private Long version;
+
 
 	/**
 	 * Default constructor required by JPA.
@@ -0,0 +1,75 @@
+package fr.matthieu.chatop.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * A login session of a user on one device.
+ * <p>
+ * 		The table is kept narrow on purpose: it only references the user by id,
+ * 		so opening or revoking a session never touches the {@code users} row.
+ * </p>
+ */
+@Data
+@Entity
+@Table(name = "sessions", indexes = {
+		@Index(name = "idx_sessions_user_id", columnList = "user_id"),
+		@Index(name = "idx_sessions_expires_at", columnList = "expires_at")
+})
+public class SessionEntity implements Persistable<String> {
+
+	@Id
+	@Column(name = "id", length = 36)
+	private String id;
+
+	@Column(name = "user_id", nullable = false)
+	private Long userId;
+
+	@Column(name = "created_at", nullable = false, updatable = false)
+	private LocalDateTime createdAt;
+
+	@Column(name = "expires_at", nullable = false)
+	private LocalDateTime expiresAt;
+
+	@Column(name = "revoked", nullable = false)
+	private boolean revoked;
+
+	/**
+	 * Whether the session has not been persisted yet.
+	 * Lets {@code save} issue a plain INSERT instead of a SELECT followed by an INSERT.
+	 */
+	@Transient
+	private boolean newSession = true;
+
+	/**
+	 * Default constructor required by JPA.
+	 * This constructor should not be used in application code.
+	 */
+	@Deprecated
+	protected SessionEntity() {}
+
+	public SessionEntity(String id, Long userId, LocalDateTime expiresAt) {
+		this.id = id;
+		this.userId = userId;
+		this.expiresAt = expiresAt;
+	}
+
+	@Override
+	public boolean isNew() {
+		return newSession;
+	}
+
+	@PrePersist
+	public void prePersist() {
+		this.createdAt = LocalDateTime.now();
+	}
+
+	@PostPersist
+	@PostLoad
+	public void markNotNew() {
+		this.newSession = false;
+	}
+}
@@ -5,6 +5,8 @@ import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 import lombok.Data;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
@@ -12,8 +14,12 @@ import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.List;
 
+import static fr.matthieu.chatop.common.CacheRegions.USERS;
+
 @Data
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = USERS)
 @Table(name = "users")
 public class UserEntity implements UserDetails {
 
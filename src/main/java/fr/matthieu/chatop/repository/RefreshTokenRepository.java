@@ -0,0 +1,30 @@
+package fr.matthieu.chatop.repository;
+
+import fr.matthieu.chatop.model.RefreshTokenEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface RefreshTokenRepository extends JpaRepository<RefreshTokenEntity, String> {
+
+	@Transactional
+	@Modifying
+	@Query("UPDATE RefreshTokenEntity r SET r.used = true WHERE r.tokenHash = :tokenHash AND r.used = false")
+	int markUsed(@Param("tokenHash") String tokenHash);
+
+	@Transactional
+	@Modifying
+	@Query("UPDATE RefreshTokenEntity r SET r.revoked = true WHERE r.familyId = :familyId")
+	int revokeFamily(@Param("familyId") String familyId);
+
+	@Transactional
+	@Modifying
+	@Query(value = "DELETE FROM refresh_tokens WHERE expires_at < :now LIMIT :limit", nativeQuery = true)
+	int deleteExpired(@Param("now") LocalDateTime now, @Param("limit") int limit);
+}
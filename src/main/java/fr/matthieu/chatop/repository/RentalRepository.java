@@ -1,9 +1,106 @@
 package fr.matthieu.chatop.repository;
 
+import fr.matthieu.chatop.dto.RentalProjection;
 import fr.matthieu.chatop.model.RentalEntity;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 @Repository
-public interface RentalRepository  extends JpaRepository<RentalEntity, Long> {
+public interface RentalRepository  extends JpaRepository<RentalEntity, Long>, RentalSearchRepository {
+
+	/**
+	 * Selects the {@link RentalProjection} columns. {@code r.owner.id} is read from the
+	 * {@code owner_id} foreign key, so the users table is never joined.
+	 */
+	String SELECT_PROJECTION = "SELECT new fr.matthieu.chatop.dto.RentalProjection(" +
+			"r.id, r.name, r.surface, r.price, r.picture, r.pictureThumbnail, r.pictureCard, r.pictureFull, r.picturePlaceholder, r.description, r.owner.id, r.createdAt, r.updatedAt, r.version) " +
+			"FROM RentalEntity r ";
+
+	/**
+	 * Returns the rental with the given ID as a projection.
+	 */
+	@Query(SELECT_PROJECTION + "WHERE r.id = :id")
+	Optional<RentalProjection> findProjectionById(@Param("id") Long id);
+
+	/**
+	 * Returns the rentals with the given IDs as projections, in no particular order.
+	 */
+	@Query(SELECT_PROJECTION + "WHERE r.id IN :ids")
+	List<RentalProjection> findProjectionsByIdIn(@Param("ids") Collection<Long> ids);
+
+	/**
+	 * Returns the first rentals ordered by creation date, then id.
+	 */
+	@Query(SELECT_PROJECTION + "ORDER BY r.createdAt ASC, r.id ASC")
+	List<RentalProjection> findFirstPage(Limit limit);
+
+	/**
+	 * Returns the rentals following the given (creation date, id) position.
+	 * Served by the {@code (created_at, id)} index as a range scan, whatever the page depth.
+	 */
+	@Query(SELECT_PROJECTION +
+			"WHERE r.createdAt > :createdAt OR (r.createdAt = :createdAt AND r.id > :id) " +
+			"ORDER BY r.createdAt ASC, r.id ASC")
+	List<RentalProjection> findPageAfter(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Limit limit);
+
+	/**
+	 * Returns the creation date of the most recent rental.
+	 */
+	@Query("SELECT MAX(r.createdAt) FROM RentalEntity r")
+	Optional<LocalDateTime> findLatestCreatedAt();
+
+	/**
+	 * Returns the most recent rentals whose resized pictures were not generated yet.
+	 */
+	@Query(SELECT_PROJECTION + "WHERE r.pictureThumbnail IS NULL ORDER BY r.id DESC")
+	List<RentalProjection> findWithoutPictureVariants(Limit limit);
+
+	/**
+	 * Records the URLs of the resized pictures of a rental and its placeholder, unless its picture changed or they were already recorded.
+	 * The version is incremented, as the representation of the rental changes.
+	 *
+	 * @return The number of updated rentals, 0 or 1.
+	 */
+	@Transactional
+	@Modifying
+	@Query("UPDATE RentalEntity r SET r.pictureThumbnail = :thumbnail, r.pictureCard = :card, r.pictureFull = :full, " +
+			"r.picturePlaceholder = :placeholder, " +
+			"r.version = r.version + 1 WHERE r.id = :id AND r.picture = :picture AND r.pictureThumbnail IS NULL")
+	int updatePictureVariants(@Param("id") Long id, @Param("picture") String picture, @Param("thumbnail") String thumbnail,
+							  @Param("card") String card, @Param("full") String full,
+							  @Param("placeholder") String placeholder);
+
+	/**
+	 * Streams all rentals with a forward-only cursor.
+	 * <p>
+	 * 		The MySQL driver only streams rows when the fetch size is {@link Integer#MIN_VALUE}.
+	 * 		Projections are not managed by the persistence context, so memory usage stays constant.
+	 * 		Must be consumed inside a transaction.
+	 * </p>
+	 */
+	@Query(SELECT_PROJECTION + "ORDER BY r.createdAt ASC, r.id ASC")
+	@QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+	Stream<RentalProjection> streamAll();
+
+	/**
+	 * Streams all rentals by ascending id with a forward-only cursor. Must be consumed inside a transaction.
+	 */
+	@Query(SELECT_PROJECTION + "ORDER BY r.id ASC")
+	@QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+	Stream<RentalProjection> streamAllOrderById();
 }
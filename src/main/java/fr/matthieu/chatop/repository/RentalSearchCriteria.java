@@ -0,0 +1,29 @@
+package fr.matthieu.chatop.repository;
+
+import java.math.BigDecimal;
+
+/**
+ * Criteria of a rental search, as understood by {@link RentalSearchRepository}.
+ *
+ * @param minPrice   The minimum price, or {@code null}.
+ * @param maxPrice   The maximum price, or {@code null}.
+ * @param minSurface The minimum surface, or {@code null}.
+ * @param maxSurface The maximum surface, or {@code null}.
+ * @param ownerId    The ID of the owner, or {@code null}.
+ * @param sort       The sort field.
+ * @param descending Whether the results are sorted in descending order.
+ * @param afterValue The sort value of the last rental of the previous page, or {@code null} for the first page.
+ * @param afterId    The ID of the last rental of the previous page, or {@code null} for the first page.
+ */
+public record RentalSearchCriteria(
+		BigDecimal minPrice,
+		BigDecimal maxPrice,
+		Double minSurface,
+		Double maxSurface,
+		Long ownerId,
+		RentalSort sort,
+		boolean descending,
+		Comparable<?> afterValue,
+		Long afterId
+) {
+}
@@ -0,0 +1,21 @@
+package fr.matthieu.chatop.repository;
+
+import fr.matthieu.chatop.dto.RentalProjection;
+
+import java.util.List;
+
+/**
+ * Repository fragment for rental searches combining optional filters, a sort field and keyset pagination.
+ */
+public interface RentalSearchRepository {
+
+	/**
+	 * Returns the rentals matching the criteria, ordered by the sort field then id,
+	 * starting after the position given in the criteria.
+	 *
+	 * @param criteria The search criteria.
+	 * @param limit    The maximum number of rentals to return.
+	 * @return The matching rentals.
+	 */
+	List<RentalProjection> search(RentalSearchCriteria criteria, int limit);
+}
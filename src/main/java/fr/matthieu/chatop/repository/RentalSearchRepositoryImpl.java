@@ -0,0 +1,83 @@
+package fr.matthieu.chatop.repository;
+
+import fr.matthieu.chatop.dto.RentalProjection;
+import fr.matthieu.chatop.model.RentalEntity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Criteria API implementation of {@link RentalSearchRepository}.
+ * <p>
+ * 		Only the given filters end up in the statement, so MySQL can use the composite index
+ * 		matching the filter and sort: {@code (price, id)}, {@code (surface, id)}, {@code (created_at, id)}
+ * 		or {@code (owner_id, created_at)}. Pages are selected with a range on (sort value, id)
+ * 		instead of an offset.
+ * </p>
+ */
+public class RentalSearchRepositoryImpl implements RentalSearchRepository {
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Override
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public List<RentalProjection> search(RentalSearchCriteria criteria, int limit) {
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<RentalProjection> query = cb.createQuery(RentalProjection.class);
+		Root<RentalEntity> rental = query.from(RentalEntity.class);
+		Path<Long> id = rental.get("id");
+		Path<Long> ownerId = rental.get("owner").get("id");
+
+		query.select(cb.construct(RentalProjection.class,
+				id, rental.get("name"), rental.get("surface"), rental.get("price"), rental.get("picture"),
+				rental.get("pictureThumbnail"), rental.get("pictureCard"), rental.get("pictureFull"),
+				rental.get("picturePlaceholder"), rental.get("description"), ownerId, rental.get("createdAt"), rental.get("updatedAt"),
+				rental.get("version")));
+
+		List<Predicate> predicates = new ArrayList<>();
+		if (criteria.minPrice() != null) {
+			predicates.add(cb.greaterThanOrEqualTo(rental.get("price"), criteria.minPrice()));
+		}
+		if (criteria.maxPrice() != null) {
+			predicates.add(cb.lessThanOrEqualTo(rental.get("price"), criteria.maxPrice()));
+		}
+		if (criteria.minSurface() != null) {
+			predicates.add(cb.greaterThanOrEqualTo(rental.get("surface"), criteria.minSurface()));
+		}
+		if (criteria.maxSurface() != null) {
+			predicates.add(cb.lessThanOrEqualTo(rental.get("surface"), criteria.maxSurface()));
+		}
+		if (criteria.ownerId() != null) {
+			predicates.add(cb.equal(ownerId, criteria.ownerId()));
+		}
+
+		Expression<Comparable> sortKey = rental.get(criteria.sort().attribute());
+		if (criteria.afterValue() != null && criteria.afterId() != null) {
+			Comparable afterValue = criteria.afterValue();
+			// The redundant bound on the sort value alone gives the planner a range on the index
+			predicates.add(criteria.descending()
+					? cb.and(cb.lessThanOrEqualTo(sortKey, afterValue),
+							cb.or(cb.lessThan(sortKey, afterValue), cb.lessThan(id, criteria.afterId())))
+					: cb.and(cb.greaterThanOrEqualTo(sortKey, afterValue),
+							cb.or(cb.greaterThan(sortKey, afterValue), cb.greaterThan(id, criteria.afterId()))));
+		}
+
+		query.where(predicates.toArray(Predicate[]::new));
+		query.orderBy(criteria.descending()
+				? List.of(cb.desc(sortKey), cb.desc(id))
+				: List.of(cb.asc(sortKey), cb.asc(id)));
+
+		return entityManager.createQuery(query)
+				.setMaxResults(limit)
+				.getResultList();
+	}
+}
@@ -0,0 +1,90 @@
+package fr.matthieu.chatop.repository;
+
+import fr.matthieu.chatop.dto.RentalProjection;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+/**
+ * Fields rental searches can be sorted on.
+ * Each of them is backed by a composite index ending with the rental id, which breaks ties.
+ */
+public enum RentalSort {
+
+	CREATED_AT("created_at", "createdAt"),
+	PRICE("price", "price"),
+	SURFACE("surface", "surface");
+
+	private final String parameter;
+	private final String attribute;
+
+	RentalSort(String parameter, String attribute) {
+		this.parameter = parameter;
+		this.attribute = attribute;
+	}
+
+	/**
+	 * Returns the sort matching a request parameter.
+	 *
+	 * @param parameter The request parameter, or {@code null} for the default sort.
+	 * @return The matching {@link RentalSort}, {@link #CREATED_AT} by default.
+	 * @throws IllegalArgumentException If the parameter matches no sort.
+	 */
+	public static RentalSort fromParameter(String parameter) {
+		if (parameter == null) {
+			return CREATED_AT;
+		}
+		return Arrays.stream(values())
+				.filter(sort -> sort.parameter.equals(parameter))
+				.findFirst()
+				.orElseThrow(() -> new IllegalArgumentException("Unknown rental sort: " + parameter));
+	}
+
+	/**
+	 * Returns the name of the request parameter value.
+	 *
+	 * @return The parameter value.
+	 */
+	public String parameter() {
+		return parameter;
+	}
+
+	/**
+	 * Returns the name of the sorted {@link fr.matthieu.chatop.model.RentalEntity} attribute.
+	 *
+	 * @return The attribute name.
+	 */
+	public String attribute() {
+		return attribute;
+	}
+
+	/**
+	 * Returns the value of the sort field of a rental.
+	 *
+	 * @param rental The rental.
+	 * @return The sort value.
+	 */
+	public Comparable<?> valueOf(RentalProjection rental) {
+		return switch (this) {
+			case CREATED_AT -> rental.createdAt();
+			case PRICE -> rental.price();
+			case SURFACE -> rental.surface();
+		};
+	}
+
+	/**
+	 * Parses a sort value formatted with {@link Object#toString()}.
+	 *
+	 * @param value The formatted value.
+	 * @return The sort value.
+	 * @throws RuntimeException If the value cannot be parsed.
+	 */
+	public Comparable<?> parseValue(String value) {
+		return switch (this) {
+			case CREATED_AT -> LocalDateTime.parse(value);
+			case PRICE -> new BigDecimal(value);
+			case SURFACE -> Double.valueOf(value);
+		};
+	}
+}
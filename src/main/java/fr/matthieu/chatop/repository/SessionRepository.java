@@ -0,0 +1,25 @@
+package fr.matthieu.chatop.repository;
+
+import fr.matthieu.chatop.model.SessionEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface SessionRepository extends JpaRepository<SessionEntity, String> {
+
+	@Transactional
+	@Modifying
+	@Query("UPDATE SessionEntity s SET s.revoked = true WHERE s.id = :id")
+	int revoke(@Param("id") String id);
+
+	@Transactional
+	@Modifying
+	@Query(value = "DELETE FROM sessions WHERE expires_at < :now LIMIT :limit", nativeQuery = true)
+	int deleteExpired(@Param("now") LocalDateTime now, @Param("limit") int limit);
+}
@@ -1,12 +1,46 @@
 package fr.matthieu.chatop.repository;
 
+import fr.matthieu.chatop.dto.ResourceVersion;
 import fr.matthieu.chatop.model.UserEntity;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface UserRepository extends JpaRepository<UserEntity, Long> {
+	/**
+	 * Finds a user by email. The result is kept in the query cache when the second-level cache is enabled,
+	 * and invalidated by any write to the users table.
+	 */
+	@QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
 	Optional<UserEntity> findByEmail(String email);
+
+	boolean existsByEmail(String email);
+
+	/**
+	 * Returns the version information of the user with the given ID, without loading the user.
+	 */
+	@Query("SELECT new fr.matthieu.chatop.dto.ResourceVersion(u.createdAt, u.updatedAt) FROM UserEntity u WHERE u.id = :id")
+	Optional<ResourceVersion> findVersionById(@Param("id") Long id);
+
+	/**
+	 * Streams the email of every user.
+	 * <p>
+	 * 		With a fetch size of {@link Integer#MIN_VALUE}, the MySQL driver reads the emails as they are consumed
+	 * 		instead of buffering the whole table. Must be consumed inside a transaction, without running
+	 * 		other statements until the stream is closed.
+	 * </p>
+	 */
+	@Query("SELECT u.email FROM UserEntity u")
+	@QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+	Stream<String> streamAllEmails();
 }
@@ -0,0 +1,59 @@
+package fr.matthieu.chatop.security;
+
+import fr.matthieu.chatop.model.UserEntity;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Lightweight principal stored in the security context for authenticated requests.
+ * <p>
+ * 		Only holds the user data needed to authorize a request, so it can be cached
+ * 		and shared without keeping a JPA entity (and its password hash) around.
+ * </p>
+ *
+ * @param id           The unique identifier of the user.
+ * @param email        The email address of the user.
+ * @param name         The name of the user.
+ * @param tokenVersion The current token version of the user.
+ */
+public record AuthenticatedUser(
+		Long id,
+		String email,
+		String name,
+		Integer tokenVersion
+) implements UserDetails {
+
+	/**
+	 * Builds a principal from a {@link UserEntity}.
+	 *
+	 * @param userEntity The user entity.
+	 * @return The matching {@link AuthenticatedUser}.
+	 */
+	public static AuthenticatedUser from(UserEntity userEntity) {
+		return new AuthenticatedUser(
+				userEntity.getId(),
+				userEntity.getEmail(),
+				userEntity.getName(),
+				userEntity.getTokenVersion()
+		);
+	}
+
+	@Override
+	public Collection<? extends GrantedAuthority> getAuthorities() {
+		// No granted authorities are currently associated with this user.
+		return List.of();
+	}
+
+	@Override
+	public String getPassword() {
+		return null;
+	}
+
+	@Override
+	public String getUsername() {
+		return email;
+	}
+}
@@ -0,0 +1,49 @@
+package fr.matthieu.chatop.security;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * {@link BCryptPasswordEncoder} that asks for a re-encoding whenever a stored hash
+ * was produced with a different cost than the configured one.
+ * <p>
+ * 		The default encoder only upgrades weaker hashes; this one also downgrades stronger ones,
+ * 		so that every stored hash converges to the cost calibrated for the current hardware.
+ * </p>
+ */
+public class CalibratedBCryptPasswordEncoder extends BCryptPasswordEncoder {
+
+	private final int strength;
+
+	/**
+	 * Creates an encoder using the given cost.
+	 *
+	 * @param strength The log rounds used to encode passwords (4 to 31).
+	 */
+	public CalibratedBCryptPasswordEncoder(int strength) {
+		super(strength);
+		this.strength = strength;
+	}
+
+	/**
+	 * Returns the cost used to encode new passwords.
+	 *
+	 * @return The log rounds.
+	 */
+	public int getStrength() {
+		return strength;
+	}
+
+	@Override
+	public boolean upgradeEncoding(String encodedPassword) {
+		if (encodedPassword == null || encodedPassword.length() < 7 || encodedPassword.charAt(0) != '$') {
+			return false;
+		}
+		// BCrypt hashes have the form $2a$10$..., the cost being the two digits after the version.
+		try {
+			int cost = Integer.parseInt(encodedPassword.substring(4, 6));
+			return cost != strength;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+}
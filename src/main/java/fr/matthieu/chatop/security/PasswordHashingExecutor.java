@@ -0,0 +1,108 @@
+package fr.matthieu.chatop.security;
+
+import fr.matthieu.chatop.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static fr.matthieu.chatop.common.ResponseMessages.AUTHENTICATION_BUSY;
+
+/**
+ * Dedicated, bounded executor for password hashing and verification.
+ * <p>
+ * 		BCrypt is deliberately slow, so running it on the servlet worker threads lets a burst of logins
+ * 		starve every other endpoint. Tasks submitted here run on a fixed number of threads with a bounded
+ * 		queue; once both are full, submissions fail fast with a {@link ServiceOverloadedException}.
+ * </p>
+ */
+@Slf4j
+@Component
+public class PasswordHashingExecutor implements DisposableBean {
+
+	private final ThreadPoolExecutor executor;
+	private final long retryAfterSeconds;
+	private final Timer waitTimer;
+	private final Timer executionTimer;
+	private final Counter rejectedCounter;
+
+	/**
+	 * Constructs a {@code PasswordHashingExecutor}.
+	 *
+	 * @param maxConcurrency    The number of hashing threads (defaults to the number of processors).
+	 * @param queueCapacity     The number of tasks allowed to wait for a thread.
+	 * @param retryAfterSeconds The delay suggested to clients when the executor is saturated.
+	 * @param meterRegistry     The registry used to publish hashing metrics.
+	 */
+	public PasswordHashingExecutor(@Value("${auth.hashing.max-concurrency:0}") int maxConcurrency,
+								   @Value("${auth.hashing.queue-capacity:50}") int queueCapacity,
+								   @Value("${auth.hashing.retry-after-seconds:1}") long retryAfterSeconds,
+								   MeterRegistry meterRegistry) {
+		int threads = maxConcurrency > 0 ? maxConcurrency : Runtime.getRuntime().availableProcessors();
+		AtomicInteger threadCount = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(
+				threads, threads,
+				0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity),
+				runnable -> {
+					Thread thread = new Thread(runnable, "password-hashing-" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				},
+				new ThreadPoolExecutor.AbortPolicy()
+		);
+		this.retryAfterSeconds = retryAfterSeconds;
+		this.waitTimer = Timer.builder("auth.hashing.wait").register(meterRegistry);
+		// Times the whole task (user lookup, session and token writes, JWT signing), not BCrypt alone
+		this.executionTimer = Timer.builder("auth.task.duration")
+				.description("Time spent running an authentication task on the password hashing executor")
+				.register(meterRegistry);
+		this.rejectedCounter = Counter.builder("auth.hashing.rejected").register(meterRegistry);
+		Gauge.builder("auth.hashing.queue.depth", executor, e -> e.getQueue().size()).register(meterRegistry);
+		Gauge.builder("auth.hashing.active", executor, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+		log.info("Password hashing executor initialized with {} threads and a queue of {}", threads, queueCapacity);
+	}
+
+	/**
+	 * Submits a task performing password hashing or verification.
+	 *
+	 * @param task The task to run.
+	 * @param <T>  The type of the task result.
+	 * @return A {@link CompletableFuture} completed with the task result.
+	 * @throws ServiceOverloadedException If the executor and its queue are full.
+	 */
+	public <T> CompletableFuture<T> submit(Supplier<T> task) {
+		long submittedAt = System.nanoTime();
+		try {
+			return CompletableFuture.supplyAsync(() -> {
+				long startedAt = System.nanoTime();
+				waitTimer.record(startedAt - submittedAt, TimeUnit.NANOSECONDS);
+				try {
+					return task.get();
+				} finally {
+					executionTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+				}
+			}, executor);
+		} catch (RejectedExecutionException e) {
+			rejectedCounter.increment();
+			throw new ServiceOverloadedException(AUTHENTICATION_BUSY, retryAfterSeconds);
+		}
+	}
+
+	@Override
+	public void destroy() {
+		executor.shutdown();
+	}
+}
@@ -0,0 +1,125 @@
+package fr.matthieu.chatop.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process cache of authenticated principals keyed by email.
+ * <p>
+ * 		Used on the JWT hot path to avoid loading the user from the database on every request.
+ * 		The cache is bounded both in size (Caffeine evicts the entries least likely to be used again)
+ * 		and in time (entries older than the configured TTL are reloaded). Reads take no global lock.
+ * </p>
+ * <p>
+ * 		Every invalidation advances a generation counter. A principal loaded before an invalidation is
+ * 		not cached, so a request which read the user before a concurrent update cannot put back the stale principal.
+ * </p>
+ */
+@Component
+public class PrincipalCache implements MeterBinder {
+
+	private final Cache<String, AuthenticatedUser> entries;
+	private final AtomicLong generation = new AtomicLong();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Constructs a {@code PrincipalCache}.
+	 *
+	 * @param maxSize    The maximum number of principals kept in memory.
+	 * @param ttlSeconds The number of seconds a principal is considered fresh.
+	 */
+	public PrincipalCache(@Value("${auth.principal-cache.max-size:10000}") int maxSize,
+						  @Value("${auth.principal-cache.ttl-seconds:60}") long ttlSeconds) {
+		this.entries = Caffeine.newBuilder()
+				.maximumSize(maxSize)
+				.expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+				.<String, AuthenticatedUser>evictionListener((email, principal, cause) -> evictions.increment())
+				.build();
+	}
+
+	/**
+	 * Returns the cached principal for the given email, if present and fresh.
+	 *
+	 * @param email The email of the user.
+	 * @return The cached {@link AuthenticatedUser}, or {@code null} on a miss.
+	 */
+	public AuthenticatedUser get(String email) {
+		AuthenticatedUser principal = entries.getIfPresent(email);
+		if (principal == null) {
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		return principal;
+	}
+
+	/**
+	 * Returns the current generation, to be read before loading a principal and passed to {@link #put}.
+	 *
+	 * @return The number of invalidations so far.
+	 */
+	public long generation() {
+		return generation.get();
+	}
+
+	/**
+	 * Stores a principal in the cache, unless an invalidation happened since it started being loaded.
+	 *
+	 * @param principal  The principal to cache.
+	 * @param generation The {@link #generation()} read before the principal was loaded.
+	 * @return {@code true} if the principal was cached.
+	 */
+	public boolean put(AuthenticatedUser principal, long generation) {
+		if (this.generation.get() != generation) {
+			return false;
+		}
+		entries.put(principal.email(), principal);
+		// An invalidation which advanced the generation before the entry was stored may have missed it
+		if (this.generation.get() != generation) {
+			entries.asMap().remove(principal.email(), principal);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Removes the principal cached for the given email.
+	 *
+	 * @param email The email of the user.
+	 */
+	public void invalidate(String email) {
+		generation.incrementAndGet();
+		entries.invalidate(email);
+	}
+
+	/**
+	 * Returns the current number of cached principals.
+	 *
+	 * @return The cache size.
+	 */
+	public int size() {
+		return (int) entries.estimatedSize();
+	}
+
+	@Override
+	public void bindTo(@NonNull MeterRegistry registry) {
+		FunctionCounter.builder("auth.principal.cache.hits", hits, LongAdder::sum).register(registry);
+		FunctionCounter.builder("auth.principal.cache.misses", misses, LongAdder::sum).register(registry);
+		FunctionCounter.builder("auth.principal.cache.evictions", evictions, LongAdder::sum).register(registry);
+		Gauge.builder("auth.principal.cache.size", this, PrincipalCache::size).register(registry);
+	}
+}
@@ -0,0 +1,68 @@
+package fr.matthieu.chatop.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps one {@link TokenBucket} per policy and client key.
+ * <p>
+ * 		Buckets live in a {@link ConcurrentHashMap}, whose lock striping keeps lookups
+ * 		for different clients independent. Buckets that have been full for longer than
+ * 		{@code rate-limit.idle-seconds} are evicted periodically.
+ * </p>
+ */
+@Component
+public class RateLimiter {
+
+	private final ConcurrentMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+	@Value("${rate-limit.idle-seconds:600}")
+	private long idleSeconds;
+
+	/**
+	 * A rate limiting policy.
+	 *
+	 * @param name            The name of the policy, used to separate the buckets.
+	 * @param capacity        The maximum number of requests allowed in a burst.
+	 * @param refillPerSecond The number of requests allowed per second in the long run.
+	 */
+	public record Policy(String name, int capacity, double refillPerSecond) {}
+
+	/**
+	 * Tries to accept a request for the given client under the given policy.
+	 *
+	 * @param policy    The policy to apply.
+	 * @param clientKey The key identifying the client (user or IP address).
+	 * @return {@code 0} if the request is accepted, otherwise the number of nanoseconds to wait.
+	 */
+	public long tryAcquire(Policy policy, String clientKey) {
+		long now = System.nanoTime();
+		TokenBucket bucket = buckets.computeIfAbsent(policy.name() + ':' + clientKey,
+				key -> new TokenBucket(policy.capacity(), policy.refillPerSecond(), now));
+		return bucket.tryConsume(now);
+	}
+
+	/**
+	 * Removes the buckets that have been idle for too long.
+	 */
+	@Scheduled(fixedDelayString = "${rate-limit.cleanup-interval-ms:60000}")
+	public void evictIdle() {
+		long now = System.nanoTime();
+		long idleNanos = TimeUnit.SECONDS.toNanos(idleSeconds);
+		buckets.values().removeIf(bucket -> bucket.isIdle(now, idleNanos));
+	}
+
+	/**
+	 * Returns the number of buckets currently tracked.
+	 *
+	 * @return The number of buckets.
+	 */
+	public int size() {
+		return buckets.size();
+	}
+}
@@ -0,0 +1,84 @@
+package fr.matthieu.chatop.security;
+
+import fr.matthieu.chatop.service.JWTService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory registry of revoked token versions.
+ * <p>
+ * 		Token versions only ever increase, so a revocation is stored as a single entry per user holding
+ * 		the lowest token version still valid: every token carrying a lower version is revoked.
+ * 		An entry only needs to live as long as the tokens it revokes, so it is dropped once the
+ * 		token lifetime has elapsed.
+ * </p>
+ * <p>
+ * 		The registry is local to the running instance and is empty after a restart.
+ * </p>
+ */
+@Component
+public class RevokedTokenRegistry {
+
+	private static final long PURGE_INTERVAL_MILLIS = 60 * 1000;
+
+	private final Map<Long, Revocation> revocations = new ConcurrentHashMap<>();
+	private final long retentionMillis;
+	private volatile long nextPurgeAt;
+
+	@Autowired
+	public RevokedTokenRegistry(JWTService jwtService) {
+		this.retentionMillis = jwtService.getTokenLifetimeMillis();
+	}
+
+	/**
+	 * Revokes every token of a user whose version is lower than {@code minValidVersion}.
+	 *
+	 * @param userId          The unique identifier of the user.
+	 * @param minValidVersion The lowest token version still accepted for this user.
+	 */
+	public void revokeBefore(Long userId, int minValidVersion) {
+		long now = System.currentTimeMillis();
+		Revocation revocation = new Revocation(minValidVersion, now + retentionMillis);
+		revocations.merge(userId, revocation,
+				(current, candidate) -> candidate.minValidVersion() >= current.minValidVersion() ? candidate : current);
+		purgeExpired(now);
+	}
+
+	/**
+	 * Checks whether the token version of a user has been revoked.
+	 *
+	 * @param userId       The unique identifier of the user.
+	 * @param tokenVersion The version carried by the token.
+	 * @return {@code true} if the token has been revoked, otherwise {@code false}.
+	 */
+	public boolean isRevoked(Long userId, Integer tokenVersion) {
+		Revocation revocation = revocations.get(userId);
+		if (revocation == null) {
+			return false;
+		}
+		if (revocation.expiresAt() < System.currentTimeMillis()) {
+			revocations.remove(userId, revocation);
+			return false;
+		}
+		return tokenVersion == null || tokenVersion < revocation.minValidVersion();
+	}
+
+	/**
+	 * Removes the revocations that outlived every token they apply to.
+	 * Runs at most once per {@link #PURGE_INTERVAL_MILLIS}.
+	 *
+	 * @param now The current time in milliseconds.
+	 */
+	private void purgeExpired(long now) {
+		if (now < nextPurgeAt) {
+			return;
+		}
+		nextPurgeAt = now + PURGE_INTERVAL_MILLIS;
+		revocations.values().removeIf(revocation -> revocation.expiresAt() < now);
+	}
+
+	private record Revocation(int minValidVersion, long expiresAt) {}
+}
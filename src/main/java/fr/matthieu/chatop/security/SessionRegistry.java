@@ -0,0 +1,202 @@
+package fr.matthieu.chatop.security;
+
+import fr.matthieu.chatop.model.SessionEntity;
+import fr.matthieu.chatop.repository.SessionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the active login sessions.
+ * <p>
+ * 		Each login opens a session identified by a random id, which is embedded in the issued token.
+ * 		Sessions are persisted in the narrow {@code sessions} table and indexed in memory, so that
+ * 		validating a token on each request is a map lookup rather than a database query.
+ * 		Expired sessions are removed from the table in batches.
+ * </p>
+ * <p>
+ * 		A revoked session stays in the index as a revoked entry until it expires, so that a request which
+ * 		loaded the session before it was revoked cannot put it back as active.
+ * </p>
+ * <p>
+ * 		A session revoked on another instance (a logout, or a reused refresh token) is only seen here once
+ * 		its active entry is checked against the database again, which happens when it is used after being
+ * 		indexed for longer than {@code auth.sessions.recheck-seconds}. The session stays usable on this
+ * 		instance for at most that long after its revocation.
+ * </p>
+ */
+@Slf4j
+@Component
+public class SessionRegistry {
+
+	private final SessionRepository sessionRepository;
+	private final long sessionLifetimeMillis;
+	private final long recheckMillis;
+	private final Map<String, ActiveSession> index = new ConcurrentHashMap<>();
+
+	@Value("${auth.sessions.cleanup-batch-size:1000}")
+	private int cleanupBatchSize;
+
+	/**
+	 * Constructs a {@code SessionRegistry}.
+	 * A session lives as long as the refresh tokens issued for it.
+	 *
+	 * @param sessionRepository     The repository storing the sessions.
+	 * @param refreshExpirationDays The lifetime of a session, in days.
+	 * @param recheckSeconds        The number of seconds an active entry is trusted before the database is read again.
+	 */
+	@Autowired
+	public SessionRegistry(SessionRepository sessionRepository, @Value("${jwt.refresh-expiration-days:14}") long refreshExpirationDays,
+						   @Value("${auth.sessions.recheck-seconds:30}") long recheckSeconds) {
+		this.sessionRepository = sessionRepository;
+		this.sessionLifetimeMillis = Duration.ofDays(refreshExpirationDays).toMillis();
+		this.recheckMillis = Duration.ofSeconds(recheckSeconds).toMillis();
+	}
+
+	/**
+	 * Opens a new session for a user.
+	 *
+	 * @param userId The unique identifier of the user.
+	 * @return The id of the new session.
+	 */
+	public String open(Long userId) {
+		String sessionId = UUID.randomUUID().toString();
+		LocalDateTime expiresAt = LocalDateTime.now().plus(Duration.ofMillis(sessionLifetimeMillis));
+		sessionRepository.save(new SessionEntity(sessionId, userId, expiresAt));
+		index.put(sessionId, new ActiveSession(userId, toEpochMillis(expiresAt), false, System.currentTimeMillis()));
+		return sessionId;
+	}
+
+	/**
+	 * Checks whether a session is active for the given user.
+	 * <p>
+	 * 		Sessions unknown to the in-memory index (opened on another instance or before a restart)
+	 * 		are loaded from the database, and active entries are read again once they are older than the
+	 * 		recheck interval, so that a revoke on another instance is seen.
+	 * </p>
+	 *
+	 * @param sessionId The id of the session.
+	 * @param userId    The unique identifier of the user the token was issued to.
+	 * @return {@code true} if the session exists, belongs to the user, is not revoked and has not expired.
+	 */
+	public boolean isActive(String sessionId, Long userId) {
+		if (sessionId == null) {
+			return false;
+		}
+		long now = System.currentTimeMillis();
+		ActiveSession session = index.get(sessionId);
+		if (session == null) {
+			ActiveSession loaded = load(sessionId, now).orElse(null);
+			if (loaded == null) {
+				return false;
+			}
+			// Keeps the entry of a revoke that happened since the row was read
+			ActiveSession previous = index.putIfAbsent(sessionId, loaded);
+			session = previous != null ? previous : loaded;
+		} else if (!session.revoked() && now - session.verifiedAt() >= recheckMillis) {
+			session = recheck(sessionId, session, now);
+		}
+		if (session.revoked()) {
+			return false;
+		}
+		if (session.expiresAt() < now) {
+			index.remove(sessionId);
+			return false;
+		}
+		return userId == null || session.userId().equals(userId);
+	}
+
+	/**
+	 * Revokes a session, in the database first so that it cannot be loaded again as active,
+	 * then in the index, where it is kept as revoked until it expires.
+	 *
+	 * @param sessionId The id of the session.
+	 */
+	public void revoke(String sessionId) {
+		if (sessionId == null) {
+			return;
+		}
+		sessionRepository.revoke(sessionId);
+		index.compute(sessionId, (id, session) -> new ActiveSession(
+				session != null ? session.userId() : null,
+				session != null ? session.expiresAt() : System.currentTimeMillis() + sessionLifetimeMillis,
+				true, System.currentTimeMillis()));
+	}
+
+	/**
+	 * Removes the expired sessions from the index and from the database.
+	 * Rows are deleted in batches to keep each statement short.
+	 */
+	@Scheduled(fixedDelayString = "${auth.sessions.cleanup-interval-ms:300000}")
+	public void removeExpired() {
+		long now = System.currentTimeMillis();
+		index.values().removeIf(session -> session.expiresAt() < now);
+
+		LocalDateTime limit = LocalDateTime.now();
+		int deleted;
+		int total = 0;
+		do {
+			deleted = sessionRepository.deleteExpired(limit, cleanupBatchSize);
+			total += deleted;
+		} while (deleted == cleanupBatchSize);
+		if (total > 0) {
+			log.info("Removed {} expired sessions", total);
+		}
+	}
+
+	/**
+	 * Reads an indexed active session again from the database, marking it revoked if its row is revoked or gone.
+	 *
+	 * @param sessionId The id of the session.
+	 * @param session   The indexed entry.
+	 * @param now       The current time, in epoch milliseconds.
+	 * @return The entry now indexed for the session.
+	 */
+	private ActiveSession recheck(String sessionId, ActiveSession session, long now) {
+		ActiveSession reloaded = load(sessionId, now)
+				.orElseGet(() -> new ActiveSession(session.userId(), session.expiresAt(), true, now));
+		// Keeps the entry of a revoke or another recheck that happened since the row was read
+		if (index.replace(sessionId, session, reloaded)) {
+			return reloaded;
+		}
+		ActiveSession current = index.get(sessionId);
+		return current != null ? current : reloaded;
+	}
+
+	/**
+	 * Loads an active session from the database.
+	 *
+	 * @param sessionId The id of the session.
+	 * @param now       The current time, in epoch milliseconds.
+	 * @return The session if it exists and is not revoked.
+	 */
+	private Optional<ActiveSession> load(String sessionId, long now) {
+		return sessionRepository.findById(sessionId)
+				.filter(entity -> !entity.isRevoked())
+				.map(entity -> new ActiveSession(entity.getUserId(), toEpochMillis(entity.getExpiresAt()), false, now));
+	}
+
+	private static long toEpochMillis(LocalDateTime dateTime) {
+		return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+	}
+
+	/**
+	 * An indexed session.
+	 *
+	 * @param userId     The unique identifier of the user, {@code null} for a session revoked before it was indexed.
+	 * @param expiresAt  The expiry date of the session, in epoch milliseconds.
+	 * @param revoked    Whether the session was revoked.
+	 * @param verifiedAt When the entry was opened, revoked or read from the database, in epoch milliseconds.
+	 */
+	private record ActiveSession(Long userId, long expiresAt, boolean revoked, long verifiedAt) {}
+}
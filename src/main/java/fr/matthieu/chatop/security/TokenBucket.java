@@ -0,0 +1,64 @@
+package fr.matthieu.chatop.security;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket.
+ * <p>
+ * 		Implemented as a generic cell rate algorithm: the whole bucket state is a single
+ * 		"theoretical arrival time" updated with a compare-and-set, so concurrent requests
+ * 		never block each other. It behaves exactly like a bucket of {@code capacity} tokens
+ * 		refilled at a constant rate.
+ * </p>
+ */
+public class TokenBucket {
+
+	private final long emissionIntervalNanos;
+	private final long burstToleranceNanos;
+	private final AtomicLong theoreticalArrivalTime;
+
+	/**
+	 * Creates a full bucket.
+	 *
+	 * @param capacity        The maximum number of tokens (burst size).
+	 * @param refillPerSecond The number of tokens added per second.
+	 * @param nowNanos        The current time, from {@link System#nanoTime()}.
+	 */
+	public TokenBucket(int capacity, double refillPerSecond, long nowNanos) {
+		this.emissionIntervalNanos = (long) (1_000_000_000L / refillPerSecond);
+		this.burstToleranceNanos = emissionIntervalNanos * (capacity - 1);
+		this.theoreticalArrivalTime = new AtomicLong(nowNanos);
+	}
+
+	/**
+	 * Tries to take one token from the bucket.
+	 *
+	 * @param nowNanos The current time, from {@link System#nanoTime()}.
+	 * @return {@code 0} if a token was taken, otherwise the number of nanoseconds until one is available.
+	 */
+	public long tryConsume(long nowNanos) {
+		while (true) {
+			long current = theoreticalArrivalTime.get();
+			long tat = Math.max(current, nowNanos);
+			long waitNanos = tat - burstToleranceNanos - nowNanos;
+			if (waitNanos > 0) {
+				return waitNanos;
+			}
+			if (theoreticalArrivalTime.compareAndSet(current, tat + emissionIntervalNanos)) {
+				return 0;
+			}
+		}
+	}
+
+	/**
+	 * Checks whether the bucket has been full for at least the given duration,
+	 * in which case dropping it is indistinguishable from keeping it.
+	 *
+	 * @param nowNanos  The current time, from {@link System#nanoTime()}.
+	 * @param idleNanos The idle duration.
+	 * @return {@code true} if the bucket has been idle for longer than {@code idleNanos}.
+	 */
+	public boolean isIdle(long nowNanos, long idleNanos) {
+		return nowNanos - theoreticalArrivalTime.get() > idleNanos;
+	}
+}
@@ -0,0 +1,36 @@
+package fr.matthieu.chatop.security;
+
+import java.util.Date;
+
+/**
+ * Immutable view of a JWT whose signature has already been verified.
+ * <p>
+ * 		Holds the claims needed on every authenticated request so that the token
+ * 		only has to be parsed once per request.
+ * </p>
+ *
+ * @param subject      The subject of the token (the user's email).
+ * @param userId       The unique identifier of the user, or {@code null} for tokens issued without it.
+ * @param tokenVersion The token version the token was issued with.
+ * @param sessionId    The id of the login session the token belongs to, or {@code null} for tokens issued without it.
+ * @param expiration   The expiration date of the token.
+ * @param name         The name of the user.
+ */
+public record VerifiedToken(
+		String subject,
+		Long userId,
+		Integer tokenVersion,
+		String sessionId,
+		Date expiration,
+		String name
+) {
+
+	/**
+	 * Checks whether the token has expired.
+	 *
+	 * @return {@code true} if the expiration date is in the past, otherwise {@code false}.
+	 */
+	public boolean isExpired() {
+		return expiration != null && expiration.before(new Date());
+	}
+}
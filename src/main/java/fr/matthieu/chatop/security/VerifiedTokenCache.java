@@ -0,0 +1,100 @@
+package fr.matthieu.chatop.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded cache of recently verified tokens.
+ * <p>
+ * 		Entries are keyed by the SHA-256 digest of the raw token, so the bearer itself is never kept in memory.
+ * 		Each entry expires with its token. Reads and writes take no global lock, and a hit does not reorder
+ * 		the entries, so concurrent requests do not serialize on the cache.
+ * </p>
+ */
+public class VerifiedTokenCache {
+
+	private final Cache<String, VerifiedToken> entries;
+
+	/**
+	 * Creates a cache holding at most {@code maxSize} verified tokens.
+	 *
+	 * @param maxSize The maximum number of entries kept before Caffeine evicts the ones least likely to be used again.
+	 */
+	public VerifiedTokenCache(int maxSize) {
+		this.entries = Caffeine.newBuilder()
+				.maximumSize(maxSize)
+				.expireAfter(new Expiry<String, VerifiedToken>() {
+					@Override
+					public long expireAfterCreate(String key, VerifiedToken verifiedToken, long currentTime) {
+						return timeToLiveNanos(verifiedToken);
+					}
+
+					@Override
+					public long expireAfterUpdate(String key, VerifiedToken verifiedToken, long currentTime, long currentDuration) {
+						return timeToLiveNanos(verifiedToken);
+					}
+
+					@Override
+					public long expireAfterRead(String key, VerifiedToken verifiedToken, long currentTime, long currentDuration) {
+						return currentDuration;
+					}
+				})
+				.build();
+	}
+
+	/**
+	 * Returns the verified token cached for the given raw token, if it is still valid.
+	 *
+	 * @param token The raw JWT.
+	 * @return The cached {@link VerifiedToken}, or {@code null} if absent or expired.
+	 */
+	public VerifiedToken get(String token) {
+		return entries.getIfPresent(digest(token));
+	}
+
+	/**
+	 * Stores a verified token.
+	 *
+	 * @param token         The raw JWT.
+	 * @param verifiedToken The result of the signature verification.
+	 */
+	public void put(String token, VerifiedToken verifiedToken) {
+		entries.put(digest(token), verifiedToken);
+	}
+
+	/**
+	 * Keeps an entry until its token expires, or indefinitely for tokens without an expiration date.
+	 *
+	 * @param verifiedToken The cached verified token.
+	 * @return The time the entry may stay in the cache, in nanoseconds.
+	 */
+	private static long timeToLiveNanos(VerifiedToken verifiedToken) {
+		if (verifiedToken.expiration() == null) {
+			return Long.MAX_VALUE;
+		}
+		return TimeUnit.MILLISECONDS.toNanos(Math.max(0, verifiedToken.expiration().getTime() - System.currentTimeMillis()));
+	}
+
+	/**
+	 * Computes the SHA-256 digest of the raw token.
+	 *
+	 * @param token The raw JWT.
+	 * @return The Base64-encoded digest.
+	 */
+	private String digest(String token) {
+		try {
+			MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+			byte[] hash = messageDigest.digest(token.getBytes(StandardCharsets.US_ASCII));
+			return Base64.getEncoder().encodeToString(hash);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 algorithm not available", e);
+		}
+	}
+}
@@ -2,7 +2,10 @@ package fr.matthieu.chatop.service;
 
 
 import fr.matthieu.chatop.model.UserEntity;
+import fr.matthieu.chatop.security.VerifiedToken;
+import fr.matthieu.chatop.security.VerifiedTokenCache;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
@@ -22,21 +25,82 @@ import java.util.function.Function;
 @Service
 public class JWTService {
 
-	@Value("${encryption.key}")
-	private String encryptionKey;
+	private final Key key;
+	private final JwtParser jwtParser;
+	private final VerifiedTokenCache verifiedTokenCache;
+	private final long tokenLifetimeMillis;
+
+	/**
+	 * Constructs a {@code JWTService}.
+	 * <p>
+	 * 		The signing key is decoded and the parser is built once, then shared by every request.
+	 * </p>
+	 *
+	 * @param encryptionKey     The Base64-encoded key used to sign and verify tokens.
+	 * @param verifiedCacheSize The maximum number of verified tokens kept in memory.
+	 * @param expirationMinutes The lifetime of the access tokens, in minutes.
+	 */
+	public JWTService(@Value("${encryption.key}") String encryptionKey,
+					  @Value("${jwt.verified-cache-size:10000}") int verifiedCacheSize,
+					  @Value("${jwt.expiration-minutes:30}") long expirationMinutes) {
+		this.key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(encryptionKey));
+		this.jwtParser = Jwts.parserBuilder()
+				.setSigningKey(this.key)
+				.build();
+		this.verifiedTokenCache = new VerifiedTokenCache(verifiedCacheSize);
+		this.tokenLifetimeMillis = expirationMinutes * 60 * 1000;
+	}
 
 
 	/**
-	 * Generates a JWT token for the given user.
+	 * Generates a JWT token for the given user and login session.
 	 *
 	 * @param userEntity The user for whom the token is being generated.
+	 * @param sessionId  The id of the login session the token belongs to.
 	 * @return A JWT token as a string.
 	 */
-	public String generate(UserEntity userEntity) {
-		Map<String, String> tokenMap = this.generateJwt(userEntity);
+	public String generate(UserEntity userEntity, String sessionId) {
+		Map<String, String> tokenMap = this.generateJwt(userEntity, sessionId);
 		return tokenMap.get("bearer");
 	}
 
+	/**
+	 * Verifies the provided token and returns its claims as a {@link VerifiedToken}.
+	 * <p>
+	 * 		The signature is checked only once per token: subsequent calls with the same bearer
+	 * 		are answered from the cache until the token expires.
+	 * </p>
+	 *
+	 * @param token The JWT token.
+	 * @return The {@link VerifiedToken} holding the claims of the token.
+	 */
+	public VerifiedToken verify(String token) {
+		VerifiedToken cached = verifiedTokenCache.get(token);
+		if (cached != null) {
+			return cached;
+		}
+		Claims claims = getAllClaims(token);
+		VerifiedToken verifiedToken = new VerifiedToken(
+				claims.getSubject(),
+				claims.get("userId", Long.class),
+				claims.get("tokenVersion", Integer.class),
+				claims.getId(),
+				claims.getExpiration(),
+				claims.get("name", String.class)
+		);
+		verifiedTokenCache.put(token, verifiedToken);
+		return verifiedToken;
+	}
+
+	/**
+	 * Returns the lifetime of the access tokens issued by this service.
+	 *
+	 * @return The token lifetime in milliseconds.
+	 */
+	public long getTokenLifetimeMillis() {
+		return tokenLifetimeMillis;
+	}
+
 	/**
 	 * Extracts the username (subject) from the provided token.
 	 *
@@ -78,9 +142,7 @@ public class JWTService {
 	 * @return All claims extracted from the token.
 	 */
 	private Claims getAllClaims(String token) {
-		return Jwts.parserBuilder()
-				.setSigningKey(this.getKey())
-				.build()
+		return jwtParser
 				.parseClaimsJws(token)
 				.getBody();
 	}
@@ -89,17 +151,20 @@ public class JWTService {
 	 * Generates a JWT token containing claims for the given user.
 	 *
 	 * @param userEntity The user for whom the token is being generated.
+	 * @param sessionId  The id of the login session, stored as the token id.
 	 * @return A map containing the generated token with the key "bearer".
 	 */
-	private Map<String, String> generateJwt(UserEntity userEntity) {
+	private Map<String, String> generateJwt(UserEntity userEntity, String sessionId) {
 
 		final long currentTime = System.currentTimeMillis();
-		final long expirationTime = currentTime + 30 * 60 * 1000; // 30mn
+		final long expirationTime = currentTime + tokenLifetimeMillis;
 
 		final Map<String, Object> claims = Map.of(
 				"name", userEntity.getName(),
 				Claims.EXPIRATION, new Date(expirationTime),
 				Claims.SUBJECT, userEntity.getEmail(),
+				"userId", userEntity.getId(),
+				Claims.ID, sessionId,
 				"tokenVersion", userEntity.getTokenVersion()
 		);
 
@@ -108,20 +173,9 @@ public class JWTService {
 				.setExpiration(new Date(expirationTime))
 				.setSubject(userEntity.getEmail())
 				.setClaims(claims)
-				.signWith(getKey(), SignatureAlgorithm.HS256)
+				.signWith(key, SignatureAlgorithm.HS256)
 				.compact();
 
 		return Map.of("bearer", bearer);
 	}
-
-	/**
-	 * Retrieves the signing key used for generating and validating tokens.
-	 * The key is derived from the Base64-decoded encryption key.
-	 *
-	 * @return A {@link Key} object for signing and validating tokens.
-	 */
-	private Key getKey() {
-		final byte[] decoder = Decoders.BASE64.decode(encryptionKey);
-		return Keys.hmacShaKeyFor(decoder);
-	}
 }
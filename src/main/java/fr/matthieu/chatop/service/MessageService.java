@@ -6,6 +6,7 @@ import fr.matthieu.chatop.model.MessageEntity;
 import fr.matthieu.chatop.model.RentalEntity;
 import fr.matthieu.chatop.model.UserEntity;
 import fr.matthieu.chatop.repository.MessageRepository;
+import fr.matthieu.chatop.security.AuthenticatedUser;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -45,13 +46,14 @@ public class MessageService {
 	 */
 	@Transactional
 	public void createMessage(CreateMessageDTO createMessageDTO) {
-		UserEntity userEntity = userService.getAuthenticateUser();
+		AuthenticatedUser authenticatedUser = userService.getAuthenticateUser();
 
-		if(!(Objects.equals(userEntity.getId(), createMessageDTO.user_id()))) {
+		if(!(Objects.equals(authenticatedUser.id(), createMessageDTO.user_id()))) {
 			throw new UnauthorizedException(UNAUTHORIZED_ACCESS);
 		}
 
 		RentalEntity rentalEntity = rentalService.getRentalById(createMessageDTO.rental_id());
+		UserEntity userEntity = userService.getUserReference(authenticatedUser.id());
 
 		MessageEntity messageEntity = new MessageEntity(
 				createMessageDTO.message(),
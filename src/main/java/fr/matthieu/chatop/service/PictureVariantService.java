@@ -0,0 +1,384 @@
+package fr.matthieu.chatop.service;
+
+import fr.matthieu.chatop.cache.RentalListCache;
+import fr.matthieu.chatop.common.BlurHash;
+import fr.matthieu.chatop.dto.RentalProjection;
+import fr.matthieu.chatop.exception.FileStorageException;
+import fr.matthieu.chatop.repository.RentalRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates the resized copies of the rental pictures (thumbnail, card and full width) and their
+ * BlurHash placeholder in the background.
+ * <p>
+ * 		Pictures are resized on a fixed number of threads with a bounded queue, after the rental is saved,
+ * 		so uploads never wait for them. Until its copies are recorded, a rental is served with its original picture.
+ * 		Pictures rejected because the queue was full, or left over by a restart, are picked up again by a periodic backfill.
+ * </p>
+ * <p>
+ * 		Large pictures are decoded with subsampling, chosen from both their width and their height, so a 24 megapixel
+ * 		upload never expands to a full-size raster, then scaled down by successive halvings, which keeps bilinear
+ * 		filtering free of aliasing. Pictures with more pixels than {@code file.variants.max-pixels} are not decoded at all
+ * 		and are kept as their own copies. Pictures already narrower than a copy are not enlarged: the original is used instead.
+ * 		The placeholder is computed from the smallest copy, reduced to {@value #PLACEHOLDER_WIDTH} pixels wide.
+ * </p>
+ */
+@Slf4j
+@Service
+public class PictureVariantService implements DisposableBean {
+
+	private static final int PLACEHOLDER_WIDTH = 32;
+	private static final int PLACEHOLDER_COMPONENTS_X = 4;
+	private static final int PLACEHOLDER_COMPONENTS_Y = 3;
+
+	private final RentalRepository rentalRepository;
+	private final UploadService uploadService;
+	private final RentalListCache rentalListCache;
+	private final ThreadPoolExecutor executor;
+	private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+
+	private final int thumbnailWidth;
+	private final int cardWidth;
+	private final int fullWidth;
+	private final float jpegQuality;
+	private final long maxPixels;
+
+	private final Timer waitTimer;
+	private final Timer processingTimer;
+	private final Counter rejectedCounter;
+	private final Counter failedCounter;
+
+	/**
+	 * Constructs a {@code PictureVariantService}.
+	 *
+	 * @param rentalRepository The repository recording the URLs of the copies.
+	 * @param uploadService    The service locating and storing the pictures.
+	 * @param rentalListCache  The cache of rental pages, discarded once copies are recorded.
+	 * @param thumbnailWidth   The width of the thumbnails, in pixels.
+	 * @param cardWidth        The width of the pictures shown in rental cards, in pixels.
+	 * @param fullWidth        The width of the pictures shown on the rental page, in pixels.
+	 * @param jpegQuality      The compression quality of the JPEG copies, between 0 and 1.
+	 * @param maxPixels        The number of pixels above which a picture is not decoded.
+	 * @param threads          The number of resizing threads.
+	 * @param queueCapacity    The number of pictures allowed to wait for a thread.
+	 * @param meterRegistry    The registry used to publish the pipeline metrics.
+	 */
+	@Autowired
+	public PictureVariantService(RentalRepository rentalRepository, UploadService uploadService, RentalListCache rentalListCache,
+								 @Value("${file.variants.thumbnail-width:320}") int thumbnailWidth,
+								 @Value("${file.variants.card-width:640}") int cardWidth,
+								 @Value("${file.variants.full-width:1280}") int fullWidth,
+								 @Value("${file.variants.jpeg-quality:0.8}") float jpegQuality,
+								 @Value("${file.variants.max-pixels:50000000}") long maxPixels,
+								 @Value("${file.variants.threads:2}") int threads,
+								 @Value("${file.variants.queue-capacity:100}") int queueCapacity,
+								 MeterRegistry meterRegistry) {
+		this.rentalRepository = rentalRepository;
+		this.uploadService = uploadService;
+		this.rentalListCache = rentalListCache;
+		this.thumbnailWidth = thumbnailWidth;
+		this.cardWidth = cardWidth;
+		this.fullWidth = fullWidth;
+		this.jpegQuality = jpegQuality;
+		this.maxPixels = maxPixels;
+
+		AtomicInteger threadCount = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(
+				threads, threads,
+				0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity),
+				runnable -> {
+					Thread thread = new Thread(runnable, "picture-variants-" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				},
+				new ThreadPoolExecutor.AbortPolicy()
+		);
+
+		this.waitTimer = Timer.builder("uploads.picture.variants.wait")
+				.description("Time spent by pictures in the queue before being resized")
+				.register(meterRegistry);
+		this.processingTimer = Timer.builder("uploads.picture.variants.processing")
+				.description("Time spent decoding, resizing and storing the copies of a picture")
+				.publishPercentiles(0.5, 0.99)
+				.register(meterRegistry);
+		this.rejectedCounter = Counter.builder("uploads.picture.variants.rejected")
+				.description("Pictures left to the backfill because the queue was full")
+				.register(meterRegistry);
+		this.failedCounter = Counter.builder("uploads.picture.variants.failed")
+				.description("Pictures whose copies could not be generated")
+				.register(meterRegistry);
+		Gauge.builder("uploads.picture.variants.queue", executor, e -> e.getQueue().size())
+				.description("Pictures waiting for a resizing thread")
+				.register(meterRegistry);
+		Gauge.builder("uploads.picture.variants.backlog", pending, Set::size)
+				.description("Pictures queued or being resized")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Queues the generation of the copies of a rental picture. Does nothing if they are already queued;
+	 * if the queue is full, they are left to the backfill.
+	 *
+	 * @param rentalId   The ID of the rental.
+	 * @param pictureUrl The URL of its original picture.
+	 */
+	public void submit(Long rentalId, String pictureUrl) {
+		if (!pending.add(rentalId)) {
+			return;
+		}
+		long submittedAt = System.nanoTime();
+		try {
+			executor.execute(() -> {
+				waitTimer.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+				try {
+					processingTimer.record(() -> process(rentalId, pictureUrl));
+				} catch (RuntimeException e) {
+					failedCounter.increment();
+					log.error("Unable to generate the picture copies of rental {}", rentalId, e);
+				} finally {
+					pending.remove(rentalId);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			pending.remove(rentalId);
+			rejectedCounter.increment();
+			log.debug("Picture copies of rental {} left to the backfill, the queue is full", rentalId);
+		}
+	}
+
+	/**
+	 * Queues the rentals whose copies are missing, as far as the queue has room for them.
+	 */
+	@Scheduled(initialDelayString = "${file.variants.backfill-interval-ms:60000}",
+			fixedDelayString = "${file.variants.backfill-interval-ms:60000}")
+	public void backfill() {
+		int room = executor.getQueue().remainingCapacity();
+		if (room == 0) {
+			return;
+		}
+		List<RentalProjection> missing = rentalRepository.findWithoutPictureVariants(Limit.of(room));
+		for (RentalProjection rental : missing) {
+			submit(rental.id(), rental.picture());
+		}
+		if (!missing.isEmpty()) {
+			log.info("Queued the picture copies of {} rentals", missing.size());
+		}
+	}
+
+	/**
+	 * Generates, stores and records the copies and the placeholder of a rental picture.
+	 * A picture that cannot be decoded is recorded as its own copies, so it is not retried.
+	 */
+	private void process(Long rentalId, String pictureUrl) {
+		Path original = uploadService.resolvePictureUrl(pictureUrl);
+		Decoded decoded = null;
+		if (original != null && Files.isRegularFile(original)) {
+			try {
+				decoded = decode(original);
+			} catch (IOException e) {
+				log.warn("Unable to decode the picture of rental {}", rentalId, e);
+			}
+		}
+		if (decoded == null) {
+			failedCounter.increment();
+			record(rentalId, pictureUrl, pictureUrl, pictureUrl, pictureUrl, null, List.of());
+			return;
+		}
+
+		String format = pictureUrl.toLowerCase().endsWith(".png") ? "png" : "jpeg";
+		boolean alpha = "png".equals(format) && decoded.image().getColorModel().hasAlpha();
+		List<UploadService.StagedPicture> written = new ArrayList<>();
+		try {
+			// Widest first, each copy being scaled down from the previous one
+			BufferedImage image = decoded.image();
+			String full = pictureUrl;
+			String card = pictureUrl;
+			String thumbnail = pictureUrl;
+			if (fullWidth < decoded.width()) {
+				image = resize(image, fullWidth, alpha);
+				full = store(image, format, pictureUrl, fullWidth, written);
+			}
+			if (cardWidth < decoded.width()) {
+				image = resize(image, cardWidth, alpha);
+				card = store(image, format, pictureUrl, cardWidth, written);
+			}
+			if (thumbnailWidth < decoded.width()) {
+				image = resize(image, thumbnailWidth, alpha);
+				thumbnail = store(image, format, pictureUrl, thumbnailWidth, written);
+			}
+			String placeholder = BlurHash.encode(image.getWidth() > PLACEHOLDER_WIDTH ? resize(image, PLACEHOLDER_WIDTH, false) : image,
+					PLACEHOLDER_COMPONENTS_X, PLACEHOLDER_COMPONENTS_Y);
+			written.forEach(uploadService::promote);
+			record(rentalId, pictureUrl, thumbnail, card, full, placeholder, written);
+		} catch (IOException | FileStorageException e) {
+			// Left unrecorded, so the backfill tries again
+			written.forEach(uploadService::discard);
+			failedCounter.increment();
+			log.warn("Unable to store the picture copies of rental {}", rentalId, e);
+		}
+	}
+
+	/**
+	 * Records the URLs of the copies and the placeholder, or deletes the copies if the rental changed or already has copies.
+	 */
+	private void record(Long rentalId, String pictureUrl, String thumbnail, String card, String full, String placeholder,
+						List<UploadService.StagedPicture> written) {
+		int updated;
+		try {
+			updated = rentalRepository.updatePictureVariants(rentalId, pictureUrl, thumbnail, card, full, placeholder);
+		} catch (RuntimeException e) {
+			written.forEach(uploadService::discard);
+			throw e;
+		}
+		if (updated == 0) {
+			written.forEach(uploadService::discard);
+			return;
+		}
+		rentalListCache.invalidate();
+	}
+
+	/**
+	 * Decodes a picture, subsampled as much as possible while keeping it at least twice as wide as the widest copy,
+	 * and further if needed so that it holds no more pixels than a square twice as wide as the widest copy.
+	 *
+	 * @return The decoded picture, or {@code null} if its format is not recognized or it has too many pixels.
+	 */
+	private Decoded decode(Path path) throws IOException {
+		try (ImageInputStream input = ImageIO.createImageInputStream(path.toFile())) {
+			Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+			if (readers == null || !readers.hasNext()) {
+				return null;
+			}
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(input, true, true);
+				int width = reader.getWidth(0);
+				int height = reader.getHeight(0);
+				if ((long) width * height > maxPixels) {
+					log.warn("Picture {} not decoded, its {}x{} pixels exceed the limit of {}", path.getFileName(), width, height, maxPixels);
+					return null;
+				}
+				int widest = Math.max(fullWidth, Math.max(cardWidth, thumbnailWidth));
+				int subsampling = subsampling(width, height, 2 * widest);
+				ImageReadParam param = reader.getDefaultReadParam();
+				param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+				return new Decoded(reader.read(0, param), width);
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+
+	/**
+	 * Computes the subsampling keeping a picture at least {@code span} pixels wide, unless that would leave
+	 * it with more than {@code span * span} pixels, in which case its area decides.
+	 *
+	 * @param width  The width of the picture, in pixels.
+	 * @param height The height of the picture, in pixels.
+	 * @param span   The width to keep, and the side of the square bounding the decoded area.
+	 * @return The subsampling to apply in both directions, at least 1.
+	 */
+	static int subsampling(int width, int height, int span) {
+		int byWidth = width / span;
+		int byArea = (int) Math.ceil(Math.sqrt((double) width * height / ((double) span * span)));
+		return Math.max(1, Math.max(byWidth, byArea));
+	}
+
+	/**
+	 * Scales a picture down to the given width by successive halvings, keeping its aspect ratio.
+	 */
+	private static BufferedImage resize(BufferedImage source, int width, boolean alpha) {
+		BufferedImage current = source;
+		do {
+			int stepWidth = Math.max(width, current.getWidth() / 2);
+			int stepHeight = Math.max(1, (int) Math.round((double) source.getHeight() * stepWidth / source.getWidth()));
+			BufferedImage step = new BufferedImage(stepWidth, stepHeight, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+			Graphics2D graphics = step.createGraphics();
+			try {
+				graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+				graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+				// JPEG has no transparency: transparent pixels are flattened on white
+				graphics.drawImage(current, 0, 0, stepWidth, stepHeight, alpha ? null : Color.WHITE, null);
+			} finally {
+				graphics.dispose();
+			}
+			current = step;
+		} while (current.getWidth() > width);
+		return current;
+	}
+
+	/**
+	 * Encodes a copy to the staging directory, under a name unique to this generation.
+	 *
+	 * @return The URL the copy will be served at once promoted.
+	 */
+	private String store(BufferedImage image, String format, String pictureUrl, int width,
+						 List<UploadService.StagedPicture> written) throws IOException {
+		String suffix = "_w" + width + "_" + UUID.randomUUID().toString().substring(0, 8);
+		UploadService.StagedPicture staged = uploadService.stageDerivedPicture(pictureUrl, suffix);
+		written.add(staged);
+
+		ImageWriter writer = ImageIO.getImageWritersByFormatName(format).next();
+		try (ImageOutputStream output = new FileImageOutputStream(staged.stagedPath().toFile())) {
+			writer.setOutput(output);
+			ImageWriteParam param = writer.getDefaultWriteParam();
+			if ("jpeg".equals(format)) {
+				param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+				param.setCompressionQuality(jpegQuality);
+			}
+			writer.write(null, new IIOImage(image, null, null), param);
+		} finally {
+			writer.dispose();
+		}
+		return staged.url();
+	}
+
+	@Override
+	public void destroy() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * A decoded picture, possibly subsampled, and the width of the original.
+	 */
+	private record Decoded(BufferedImage image, int width) {}
+}
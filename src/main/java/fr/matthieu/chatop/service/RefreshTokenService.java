@@ -0,0 +1,157 @@
+package fr.matthieu.chatop.service;
+
+import fr.matthieu.chatop.exception.UnauthorizedException;
+import fr.matthieu.chatop.model.RefreshTokenEntity;
+import fr.matthieu.chatop.model.UserEntity;
+import fr.matthieu.chatop.repository.RefreshTokenRepository;
+import fr.matthieu.chatop.repository.UserRepository;
+import fr.matthieu.chatop.security.SessionRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Objects;
+
+import static fr.matthieu.chatop.common.ResponseMessages.INVALID_REFRESH_TOKEN;
+
+/**
+ * Service for issuing and rotating refresh tokens.
+ * <p>
+ * 		Refresh tokens are random opaque values. Only their SHA-256 hash is stored, which is enough
+ * 		for high-entropy secrets and keeps the lookup a primary-key read (BCrypt would need a scan).
+ * 		Each refresh consumes the presented token and returns a new one of the same family;
+ * 		presenting an already used token revokes the whole family and its login session.
+ * </p>
+ */
+@Slf4j
+@Service
+public class RefreshTokenService {
+
+	private static final int TOKEN_BYTES = 32;
+
+	private final RefreshTokenRepository refreshTokenRepository;
+	private final UserRepository userRepository;
+	private final SessionRegistry sessionRegistry;
+	private final JWTService jwtService;
+	private final SecureRandom secureRandom = new SecureRandom();
+
+	@Value("${jwt.refresh-expiration-days:14}")
+	private long refreshExpirationDays;
+
+	@Value("${auth.sessions.cleanup-batch-size:1000}")
+	private int cleanupBatchSize;
+
+	@Autowired
+	public RefreshTokenService(RefreshTokenRepository refreshTokenRepository, UserRepository userRepository, SessionRegistry sessionRegistry, JWTService jwtService) {
+		this.refreshTokenRepository = refreshTokenRepository;
+		this.userRepository = userRepository;
+		this.sessionRegistry = sessionRegistry;
+		this.jwtService = jwtService;
+	}
+
+	/**
+	 * Issues the first refresh token of a login session.
+	 *
+	 * @param userEntity The authenticated user.
+	 * @param sessionId  The id of the login session, used as the token family.
+	 * @return The refresh token to send to the client.
+	 */
+	public String issue(UserEntity userEntity, String sessionId) {
+		LocalDateTime expiresAt = LocalDateTime.now().plus(Duration.ofDays(refreshExpirationDays));
+		return create(userEntity, sessionId, expiresAt);
+	}
+
+	/**
+	 * Exchanges a refresh token for a new access token and a new refresh token.
+	 * <p>
+	 * 		The password hash is never involved. The new refresh token keeps the expiration date
+	 * 		of its family, so a login session cannot be extended indefinitely.
+	 * </p>
+	 *
+	 * @param refreshToken The refresh token presented by the client.
+	 * @return A map containing the new access token ("token") and refresh token ("refresh_token").
+	 * @throws UnauthorizedException If the refresh token is unknown, expired, revoked or reused.
+	 */
+	public Map<String, String> refresh(String refreshToken) {
+		String tokenHash = hash(refreshToken);
+		RefreshTokenEntity current = refreshTokenRepository.findById(tokenHash)
+				.orElseThrow(() -> new UnauthorizedException(INVALID_REFRESH_TOKEN));
+
+		if (current.isRevoked() || current.getExpiresAt().isBefore(LocalDateTime.now())) {
+			throw new UnauthorizedException(INVALID_REFRESH_TOKEN);
+		}
+
+		if (current.isUsed() || refreshTokenRepository.markUsed(tokenHash) == 0) {
+			log.warn("Refresh token reuse detected, revoking family {}", current.getFamilyId());
+			refreshTokenRepository.revokeFamily(current.getFamilyId());
+			sessionRegistry.revoke(current.getFamilyId());
+			throw new UnauthorizedException(INVALID_REFRESH_TOKEN);
+		}
+
+		UserEntity userEntity = userRepository.findById(current.getUserId())
+				.orElseThrow(() -> new UnauthorizedException(INVALID_REFRESH_TOKEN));
+
+		if (!Objects.equals(userEntity.getTokenVersion(), current.getTokenVersion())
+				|| !sessionRegistry.isActive(current.getFamilyId(), userEntity.getId())) {
+			throw new UnauthorizedException(INVALID_REFRESH_TOKEN);
+		}
+
+		String newRefreshToken = create(userEntity, current.getFamilyId(), current.getExpiresAt());
+		String token = jwtService.generate(userEntity, current.getFamilyId());
+		return Map.of("token", token, "refresh_token", newRefreshToken);
+	}
+
+	/**
+	 * Removes the expired refresh tokens in batches.
+	 */
+	@Scheduled(fixedDelayString = "${auth.sessions.cleanup-interval-ms:300000}")
+	public void removeExpired() {
+		LocalDateTime now = LocalDateTime.now();
+		int deleted;
+		do {
+			deleted = refreshTokenRepository.deleteExpired(now, cleanupBatchSize);
+		} while (deleted == cleanupBatchSize);
+	}
+
+	/**
+	 * Generates a refresh token and stores its hash.
+	 *
+	 * @param userEntity The user the token is issued to.
+	 * @param familyId   The family of the token.
+	 * @param expiresAt  The expiration date of the token.
+	 * @return The refresh token.
+	 */
+	private String create(UserEntity userEntity, String familyId, LocalDateTime expiresAt) {
+		byte[] bytes = new byte[TOKEN_BYTES];
+		secureRandom.nextBytes(bytes);
+		String refreshToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+		refreshTokenRepository.save(new RefreshTokenEntity(hash(refreshToken), familyId, userEntity.getId(), userEntity.getTokenVersion(), expiresAt));
+		return refreshToken;
+	}
+
+	/**
+	 * Computes the SHA-256 hash of a refresh token.
+	 *
+	 * @param refreshToken The refresh token.
+	 * @return The hex-encoded hash.
+	 */
+	private String hash(String refreshToken) {
+		try {
+			MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+			return HexFormat.of().formatHex(messageDigest.digest(refreshToken.getBytes(StandardCharsets.US_ASCII)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 algorithm not available", e);
+		}
+	}
+}
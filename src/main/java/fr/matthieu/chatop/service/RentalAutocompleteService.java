@@ -0,0 +1,62 @@
+package fr.matthieu.chatop.service;
+
+import fr.matthieu.chatop.dto.RentalAutocompleteQueryDTO;
+import fr.matthieu.chatop.dto.RentalProjection;
+import fr.matthieu.chatop.dto.RentalSuggestionDTO;
+import fr.matthieu.chatop.index.RentalAutocompleteIndex;
+import fr.matthieu.chatop.index.RentalNameTrie;
+import fr.matthieu.chatop.repository.RentalRepository;
+import jakarta.transaction.Transactional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Service class suggesting rental names from the in-memory {@link RentalAutocompleteIndex}.
+ */
+@Service
+public class RentalAutocompleteService {
+
+	private static final int DEFAULT_LIMIT = 10;
+
+	private final RentalRepository rentalRepository;
+	private final RentalAutocompleteIndex rentalAutocompleteIndex;
+
+	@Autowired
+	public RentalAutocompleteService(RentalRepository rentalRepository, RentalAutocompleteIndex rentalAutocompleteIndex) {
+		this.rentalRepository = rentalRepository;
+		this.rentalAutocompleteIndex = rentalAutocompleteIndex;
+	}
+
+	/**
+	 * Suggests the rentals whose name starts with the typed prefix. No database access is made.
+	 *
+	 * @param query The validated prefix, number of suggestions and order.
+	 * @return The suggested rentals, best first.
+	 */
+	public List<RentalSuggestionDTO> suggest(RentalAutocompleteQueryDTO query) {
+		RentalNameTrie.Ranking ranking = "price".equals(query.sort()) ? RentalNameTrie.Ranking.CHEAPEST : RentalNameTrie.Ranking.RECENT;
+		return rentalAutocompleteIndex.suggest(query.q(), query.limit() != null ? query.limit() : DEFAULT_LIMIT, ranking)
+				.stream()
+				.map(entry -> new RentalSuggestionDTO(entry.id(), entry.name(), BigDecimal.valueOf(entry.priceCents(), 2)))
+				.toList();
+	}
+
+	/**
+	 * Builds the name trie from the database once the application is ready.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	@Transactional
+	public void rebuildTrie() {
+		try (Stream<RentalProjection> projections = rentalRepository.streamAllOrderById()) {
+			rentalAutocompleteIndex.rebuild(projections
+					.map(projection -> RentalNameTrie.Entry.of(projection.id(), projection.name(), projection.createdAt(), projection.price()))
+					.toList());
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package fr.matthieu.chatop.service;
+
+import fr.matthieu.chatop.dto.RentalFacetQueryDTO;
+import fr.matthieu.chatop.dto.RentalFacetsDTO;
+import fr.matthieu.chatop.dto.RentalProjection;
+import fr.matthieu.chatop.index.RentalSnapshot;
+import fr.matthieu.chatop.index.RentalSnapshotIndex;
+import fr.matthieu.chatop.repository.RentalRepository;
+import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Service class answering facet queries on rentals from the in-memory {@link RentalSnapshotIndex}.
+ */
+@Slf4j
+@Service
+public class RentalFacetService {
+
+	private static final int DEFAULT_BUCKETS = 10;
+	private static final int DEFAULT_TOP = 10;
+
+	private final RentalRepository rentalRepository;
+	private final RentalSnapshotIndex rentalSnapshotIndex;
+
+	@Autowired
+	public RentalFacetService(RentalRepository rentalRepository, RentalSnapshotIndex rentalSnapshotIndex) {
+		this.rentalRepository = rentalRepository;
+		this.rentalSnapshotIndex = rentalSnapshotIndex;
+	}
+
+	/**
+	 * Computes the count, price and surface histograms and top rentals matching the given filters.
+	 * No database access is made: the current snapshot is scanned once.
+	 *
+	 * @param facetQuery The validated filters.
+	 * @return A {@link RentalFacetsDTO} holding the facets.
+	 */
+	public RentalFacetsDTO getFacets(RentalFacetQueryDTO facetQuery) {
+		RentalSnapshot.Query query = new RentalSnapshot.Query(
+				facetQuery.minPrice() != null ? toCents(facetQuery.minPrice(), RoundingMode.CEILING) : Long.MIN_VALUE,
+				facetQuery.maxPrice() != null ? toCents(facetQuery.maxPrice(), RoundingMode.FLOOR) : Long.MAX_VALUE,
+				facetQuery.minSurface() != null ? facetQuery.minSurface() : Double.NEGATIVE_INFINITY,
+				facetQuery.maxSurface() != null ? facetQuery.maxSurface() : Double.POSITIVE_INFINITY,
+				facetQuery.ownerId() != null ? facetQuery.ownerId() : 0,
+				facetQuery.buckets() != null ? facetQuery.buckets() : DEFAULT_BUCKETS,
+				facetQuery.top() != null ? facetQuery.top() : DEFAULT_TOP,
+				"surface".equals(facetQuery.sort()),
+				"desc".equals(facetQuery.order()));
+		RentalSnapshot.FacetResult result = rentalSnapshotIndex.current().facets(query);
+
+		List<RentalFacetsDTO.Bucket> priceBuckets = new ArrayList<>(result.priceCounts().length);
+		for (int i = 0; i < result.priceCounts().length; i++) {
+			long from = result.priceMinCents() + i * result.priceWidthCents();
+			priceBuckets.add(new RentalFacetsDTO.Bucket(from / 100.0, (from + result.priceWidthCents()) / 100.0, result.priceCounts()[i]));
+		}
+
+		List<RentalFacetsDTO.Bucket> surfaceBuckets = new ArrayList<>(result.surfaceCounts().length);
+		for (int i = 0; i < result.surfaceCounts().length; i++) {
+			double from = result.surfaceMin() + i * result.surfaceWidth();
+			surfaceBuckets.add(new RentalFacetsDTO.Bucket(from, from + result.surfaceWidth(), result.surfaceCounts()[i]));
+		}
+
+		List<RentalFacetsDTO.RankedRental> top = new ArrayList<>(result.topIds().length);
+		for (int i = 0; i < result.topIds().length; i++) {
+			top.add(new RentalFacetsDTO.RankedRental(result.topIds()[i],
+					BigDecimal.valueOf(result.topPriceCents()[i], 2), result.topSurfaces()[i]));
+		}
+		return new RentalFacetsDTO(result.count(), priceBuckets, surfaceBuckets, top);
+	}
+
+	/**
+	 * Rebuilds the rental snapshot from the database once the application is ready.
+	 * Rentals are streamed by ascending id, so the snapshot columns are filled in order.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	@Transactional
+	public void rebuildSnapshot() {
+		long start = System.currentTimeMillis();
+		rentalSnapshotIndex.beginRebuild();
+		try (Stream<RentalProjection> projections = rentalRepository.streamAllOrderById()) {
+			RentalSnapshot.Builder builder = new RentalSnapshot.Builder();
+			projections.forEach(projection -> builder.add(
+					RentalSnapshot.Row.of(projection.id(), projection.price(), projection.surface(), projection.ownerId())));
+			rentalSnapshotIndex.completeRebuild(builder.build(), System.currentTimeMillis() - start);
+		} catch (RuntimeException e) {
+			rentalSnapshotIndex.cancelRebuild();
+			throw e;
+		}
+	}
+
+	/**
+	 * Converts a price in euros to cents.
+	 *
+	 * @param price    The price in euros.
+	 * @param rounding The rounding applied to fractions of a cent.
+	 * @return The price in cents.
+	 */
+	private static long toCents(BigDecimal price, RoundingMode rounding) {
+		return price.movePointRight(2).setScale(0, rounding).longValueExact();
+	}
+}
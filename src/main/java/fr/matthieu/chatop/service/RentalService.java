@@ -1,20 +1,63 @@
 package fr.matthieu.chatop.service;
 
+import fr.matthieu.chatop.cache.RentalListCache;
+import fr.matthieu.chatop.cache.RentalListCache.CachedPage;
 import fr.matthieu.chatop.dto.CreateRentalDTO;
 import fr.matthieu.chatop.dto.RentalDTO;
+import fr.matthieu.chatop.dto.RentalPageDTO;
+import fr.matthieu.chatop.dto.RentalProjection;
+import fr.matthieu.chatop.dto.RentalSearchDTO;
+import fr.matthieu.chatop.dto.ResourceVersion;
+import fr.matthieu.chatop.exception.PreconditionFailedException;
+import fr.matthieu.chatop.exception.InvalidCursorException;
 import fr.matthieu.chatop.exception.RentalNotFoundException;
 import fr.matthieu.chatop.exception.UnauthorizedException;
+import fr.matthieu.chatop.index.RentalSnapshot;
+import fr.matthieu.chatop.index.RentalAutocompleteIndex;
+import fr.matthieu.chatop.index.RentalKdTree;
+import fr.matthieu.chatop.index.RentalNameTrie;
+import fr.matthieu.chatop.index.RentalSimilarityIndex;
+import fr.matthieu.chatop.index.RentalSnapshotIndex;
+import fr.matthieu.chatop.index.RentalTextIndex;
 import fr.matthieu.chatop.model.RentalEntity;
 import fr.matthieu.chatop.model.UserEntity;
 import fr.matthieu.chatop.repository.RentalRepository;
+import fr.matthieu.chatop.repository.RentalSearchCriteria;
+import fr.matthieu.chatop.repository.RentalSort;
+import fr.matthieu.chatop.security.AuthenticatedUser;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import jakarta.transaction.Transactional;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.ETag;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.time.format.DateTimeFormatter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
+import static fr.matthieu.chatop.common.ResponseMessages.INVALID_CURSOR;
+import static fr.matthieu.chatop.common.ResponseMessages.NO_RENTALS_AVAILABLE;
+import static fr.matthieu.chatop.common.ResponseMessages.RENTAL_MODIFIED;
 import static fr.matthieu.chatop.common.ResponseMessages.RENTAL_NOT_FOUND;
 import static fr.matthieu.chatop.common.ResponseMessages.UNAUTHORIZED_ACCESS;
 
@@ -28,35 +71,243 @@ public class RentalService {
 	private final RentalRepository rentalRepository;
 	private final UserService userService;
 	private final UploadService uploadService;
+	private final RentalListCache rentalListCache;
+	private final RentalSnapshotIndex rentalSnapshotIndex;
+	private final RentalTextIndex rentalTextIndex;
+	private final RentalAutocompleteIndex rentalAutocompleteIndex;
+	private final RentalSimilarityIndex rentalSimilarityIndex;
+	private final PictureVariantService pictureVariantService;
+	private final ObjectMapper objectMapper;
+	private final ObjectWriter rentalWriter;
+	private final TransactionTemplate transactionTemplate;
+	private final Timer createTransactionTimer;
+
+	@Value("${rentals.page.default-size:100}")
+	private int defaultPageSize;
+
+	@Value("${rentals.page.max-size:500}")
+	private int maxPageSize;
 
 	@Autowired
-	public RentalService(RentalRepository rentalRepository, UserService userService, UploadService uploadService) {
+	public RentalService(RentalRepository rentalRepository, UserService userService, UploadService uploadService,
+						 RentalListCache rentalListCache, RentalSnapshotIndex rentalSnapshotIndex,
+						 RentalTextIndex rentalTextIndex, RentalAutocompleteIndex rentalAutocompleteIndex,
+						 RentalSimilarityIndex rentalSimilarityIndex, PictureVariantService pictureVariantService, ObjectMapper objectMapper,
+						 TransactionTemplate transactionTemplate, MeterRegistry meterRegistry) {
 		this.rentalRepository = rentalRepository;
 		this.userService = userService;
 		this.uploadService = uploadService;
+		this.rentalListCache = rentalListCache;
+		this.rentalSnapshotIndex = rentalSnapshotIndex;
+		this.rentalTextIndex = rentalTextIndex;
+		this.rentalAutocompleteIndex = rentalAutocompleteIndex;
+		this.rentalSimilarityIndex = rentalSimilarityIndex;
+		this.pictureVariantService = pictureVariantService;
+		this.objectMapper = objectMapper;
+		// Rentals are flushed by the response buffer, not after each of them
+		this.rentalWriter = objectMapper.writerFor(RentalDTO.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+		this.transactionTemplate = transactionTemplate;
+		// Compare with hikaricp.connections.usage to see how long each create holds its connection
+		this.createTransactionTimer = Timer.builder("rentals.create.transaction")
+				.description("Duration of the rental creation transactions, picture upload excluded")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Retrieves one page of rentals as a serialized JSON response.
+	 * <p>
+	 * 		Pages are served from the {@link RentalListCache} until the catalogue changes,
+	 * 		without querying the database nor serializing anything.
+	 * 		When the first page is empty, the body is {@code {"message": "No rentals available"}}.
+	 * </p>
+	 *
+	 * @param cursor The cursor returned with the previous page, or {@code null} for the first page.
+	 * @param limit  The requested page size, or {@code null} for the default size.
+	 * @return The {@link CachedPage} holding the JSON body and its ETag.
+	 * @throws InvalidCursorException If the cursor cannot be decoded.
+	 */
+	public CachedPage getRentalsPageJson(String cursor, Integer limit) {
+		String key = (cursor == null ? "" : cursor) + "|" + pageSize(limit);
+		CachedPage cached = rentalListCache.get(key);
+		if (cached != null) {
+			return cached;
+		}
+
+		long version = rentalListCache.version();
+		RentalPageDTO page = getRentalsPage(cursor, limit);
+		Object body = page.rentals().isEmpty() && cursor == null ? Map.of("message", NO_RENTALS_AVAILABLE) : page;
+		try {
+			return rentalListCache.put(key, version, objectMapper.writeValueAsBytes(body));
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException("Unable to serialize the rentals page", e);
+		}
+	}
+
+	/**
+	 * Retrieves one page of rentals, ordered by creation date then id.
+	 * <p>
+	 * 		Pages are addressed with an opaque cursor encoding the position of the last rental
+	 * 		of the previous page (keyset pagination), so the cost of a page does not depend on its depth.
+	 * </p>
+	 *
+	 * @param cursor The cursor returned with the previous page, or {@code null} for the first page.
+	 * @param limit  The requested page size, or {@code null} for the default size. Capped to the maximum size.
+	 * @return A {@link RentalPageDTO} holding the rentals and the cursor of the next page, if any.
+	 * @throws InvalidCursorException If the cursor cannot be decoded.
+	 */
+	public RentalPageDTO getRentalsPage(String cursor, Integer limit) {
+		int pageSize = pageSize(limit);
+		// One extra row tells whether a next page exists
+		Limit fetchLimit = Limit.of(pageSize + 1);
+
+		List<RentalProjection> projections;
+		if (cursor == null || cursor.isBlank()) {
+			projections = rentalRepository.findFirstPage(fetchLimit);
+		} else {
+			Cursor position = decodeCursor(cursor);
+			projections = rentalRepository.findPageAfter(position.createdAt(), position.id(), fetchLimit);
+		}
+
+		String nextCursor = null;
+		if (projections.size() > pageSize) {
+			projections = projections.subList(0, pageSize);
+			RentalProjection last = projections.get(pageSize - 1);
+			nextCursor = encodeCursor(new Cursor(last.createdAt(), last.id()));
+		}
+
+		List<RentalDTO> rentals = projections.stream()
+				.map(RentalProjection::toDTO)
+				.toList();
+		return new RentalPageDTO(rentals, nextCursor);
 	}
 
 	/**
-	 * Retrieves all rentals and converts them into DTOs.
+	 * Searches rentals by price, surface and owner, sorted on the requested field.
+	 * <p>
+	 * 		Results are keyset-paginated like {@link #getRentalsPage(String, Integer)}: the cursor
+	 * 		holds the sort value and id of the last rental of the previous page, along with the sort
+	 * 		it was produced for, so it cannot be replayed with another sort.
+	 * </p>
 	 *
-	 * @return A list of {@link RentalDTO} objects representing all rentals.
+	 * @param search The validated search criteria.
+	 * @return A {@link RentalPageDTO} holding the matching rentals and the cursor of the next page, if any.
+	 * @throws InvalidCursorException If the cursor cannot be decoded or was produced for another sort.
 	 */
-	public List<RentalDTO> getAllRentalsDTO() {
-		List<RentalEntity> rentalEntities = rentalRepository.findAll();
-		return rentalEntities.stream()
-				.map(this::convertToDTO)
+	public RentalPageDTO searchRentals(RentalSearchDTO search) {
+		RentalSort sort = RentalSort.fromParameter(search.sort());
+		boolean descending = "desc".equals(search.order());
+		String sortKey = sort.parameter() + "|" + (descending ? "desc" : "asc");
+		int pageSize = pageSize(search.limit());
+
+		Comparable<?> afterValue = null;
+		Long afterId = null;
+		if (search.cursor() != null && !search.cursor().isBlank()) {
+			try {
+				String raw = decodeOpaque(search.cursor());
+				int idSeparator = raw.lastIndexOf('|');
+				int valueSeparator = raw.lastIndexOf('|', idSeparator - 1);
+				if (!raw.substring(0, valueSeparator).equals(sortKey)) {
+					throw new InvalidCursorException(INVALID_CURSOR);
+				}
+				afterValue = sort.parseValue(raw.substring(valueSeparator + 1, idSeparator));
+				afterId = Long.parseLong(raw.substring(idSeparator + 1));
+			} catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+				throw new InvalidCursorException(INVALID_CURSOR);
+			}
+		}
+
+		RentalSearchCriteria criteria = new RentalSearchCriteria(
+				search.minPrice(), search.maxPrice(), search.minSurface(), search.maxSurface(), search.ownerId(),
+				sort, descending, afterValue, afterId);
+		// One extra row tells whether a next page exists
+		List<RentalProjection> projections = rentalRepository.search(criteria, pageSize + 1);
+
+		String nextCursor = null;
+		if (projections.size() > pageSize) {
+			projections = projections.subList(0, pageSize);
+			RentalProjection last = projections.get(pageSize - 1);
+			nextCursor = encodeOpaque(sortKey + "|" + sort.valueOf(last) + "|" + last.id());
+		}
+
+		List<RentalDTO> rentals = projections.stream()
+				.map(RentalProjection::toDTO)
 				.toList();
+		return new RentalPageDTO(rentals, nextCursor);
+	}
+
+	/**
+	 * Writes all rentals as a JSON document {@code {"rentals": [...]}} to the given stream.
+	 * <p>
+	 * 		Rentals are read with a forward-only database cursor and serialized one by one,
+	 * 		so memory usage does not grow with the number of rentals and the first bytes are sent
+	 * 		as soon as the first row is read.
+	 * </p>
+	 *
+	 * @param outputStream The stream to write the JSON document to. It is not closed.
+	 * @throws IOException If writing to the stream fails.
+	 */
+	@Transactional
+	public void writeAllRentals(OutputStream outputStream) throws IOException {
+		try (JsonGenerator generator = rentalWriter.createGenerator(outputStream);
+			 Stream<RentalProjection> projections = rentalRepository.streamAll()) {
+			generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			generator.writeStartObject();
+			generator.writeArrayFieldStart("rentals");
+
+			int count = 0;
+			for (RentalProjection projection : (Iterable<RentalProjection>) projections::iterator) {
+				rentalWriter.writeValue(generator, projection.toDTO());
+				count++;
+			}
+
+			generator.writeEndArray();
+			generator.writeEndObject();
+			log.debug("Streamed {} rentals", count);
+		}
 	}
 
 	/**
-	 * Retrieves a rental by its ID and converts it into a DTO.
+	 * Retrieves a rental by its ID, with its version, in a single statement.
 	 *
 	 * @param id The ID of the rental to retrieve.
-	 * @return A {@link RentalDTO} representing the rental.
+	 * @return A {@link RentalProjection} of the rental.
+	 * @throws RentalNotFoundException If the rental does not exist.
 	 */
-	public RentalDTO getRentalDTOById(Long id) {
-		RentalEntity rentalEntity = getRentalById(id);
-		return convertToDTO(rentalEntity);
+	public RentalProjection getRentalProjectionById(Long id) {
+		return rentalRepository.findProjectionById(id)
+				.orElseThrow(() -> new RentalNotFoundException(
+						String.format(RENTAL_NOT_FOUND, id)
+				));
+	}
+
+	/**
+	 * Returns the version information of a loaded rental.
+	 *
+	 * @param rentalEntity The rental.
+	 * @return The {@link ResourceVersion} of the rental.
+	 */
+	public ResourceVersion getRentalVersion(RentalEntity rentalEntity) {
+		return new ResourceVersion(rentalEntity.getVersion(), rentalEntity.getCreatedAt(), rentalEntity.getUpdatedAt());
+	}
+
+	/**
+	 * Verifies the {@code If-Match} header of a write against the current version of the rental.
+	 *
+	 * @param rentalEntity The rental about to be written.
+	 * @param ifMatch      The value of the {@code If-Match} header, or {@code null} if absent.
+	 * @throws PreconditionFailedException If none of the given ETags matches the rental.
+	 */
+	public void checkIfMatch(RentalEntity rentalEntity, String ifMatch) {
+		if (ifMatch == null) {
+			return;
+		}
+		String current = getRentalVersion(rentalEntity).etag();
+		// If-Match uses the strong comparison: weak ETags never match
+		boolean matches = ETag.parse(ifMatch).stream()
+				.anyMatch(etag -> etag.isWildcard() || (!etag.weak() && etag.formattedTag().equals(current)));
+		if (!matches) {
+			throw new PreconditionFailedException(RENTAL_MODIFIED);
+		}
 	}
 
 	/**
@@ -65,14 +316,50 @@ public class RentalService {
 	 * The rental is associated with the currently authenticated user. The picture
 	 * is uploaded and its URL is saved with the rental.
 	 * </p>
+	 * <p>
+	 * 		The picture is written to the staging directory before the transaction starts, so no database
+	 * 		connection is held during the upload. The transaction only covers the insert: the picture is moved
+	 * 		to the upload directory just before it commits, and deleted if the transaction rolls back or never
+	 * 		completes. A failure after the commit, such as an index update, never deletes the picture of a saved rental.
+	 * 		Its resized copies are generated in the background once the rental is committed.
+	 * </p>
 	 * @param createRentalDTO The details of the rental to create.
 	 */
-	@Transactional
 	public void createRental(CreateRentalDTO createRentalDTO) {
-		UserEntity userEntity = userService.getAuthenticateUser();
-		String picture = uploadService.storePicture(createRentalDTO.picture(), userEntity.getName());
-		RentalEntity rentalEntity = new RentalEntity(createRentalDTO.name(), createRentalDTO.surface(), createRentalDTO.price(), picture, createRentalDTO.description(), userEntity);
-		rentalRepository.save(rentalEntity);
+		AuthenticatedUser authenticatedUser = userService.getAuthenticateUser();
+		UploadService.StagedPicture picture = uploadService.stagePicture(createRentalDTO.picture(), authenticatedUser.name());
+		AtomicBoolean completed = new AtomicBoolean();
+		try {
+			createTransactionTimer.record(() -> transactionTemplate.executeWithoutResult(status -> {
+				UserEntity owner = userService.getUserReference(authenticatedUser.id());
+				RentalEntity rentalEntity = new RentalEntity(createRentalDTO.name(), createRentalDTO.surface(), createRentalDTO.price(), picture.url(), createRentalDTO.description(), owner);
+				rentalRepository.save(rentalEntity);
+				// A rename, so the connection is not held for another disk write
+				TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+					@Override
+					public void beforeCommit(boolean readOnly) {
+						uploadService.promote(picture);
+					}
+
+					@Override
+					public void afterCompletion(int status) {
+						completed.set(true);
+						// When the outcome is unknown, the rental may exist: its picture is kept
+						if (status == STATUS_ROLLED_BACK) {
+							uploadService.discard(picture);
+						}
+					}
+				});
+				onRentalChanged(rentalEntity);
+				afterCommit(() -> pictureVariantService.submit(rentalEntity.getId(), picture.url()));
+			}));
+		} catch (RuntimeException e) {
+			// Failed before the completion callback was registered, or the transaction could not start
+			if (!completed.get()) {
+				uploadService.discard(picture);
+			}
+			throw e;
+		}
 	}
 
 	/**
@@ -95,9 +382,9 @@ public class RentalService {
 	 * @return The {@link RentalEntity} object if the user is the owner.
 	 */
 	public RentalEntity checkOwner(Long id) {
-		UserEntity userEntity = userService.getAuthenticateUser();
+		AuthenticatedUser authenticatedUser = userService.getAuthenticateUser();
 		RentalEntity rentalEntity = getRentalById(id);
-		if(rentalEntity.getOwner().equals(userEntity)) {
+		if(Objects.equals(rentalEntity.getOwner().getId(), authenticatedUser.id())) {
 			return rentalEntity;
 		}
 		throw new UnauthorizedException(UNAUTHORIZED_ACCESS);
@@ -105,12 +392,23 @@ public class RentalService {
 
 	/**
 	 * Updates the details of an existing rental.
+	 * <p>
+	 * 		Nothing is written when the details are unchanged. Otherwise, the write is checked against
+	 * 		the version the rental was read with, so a concurrent update is never overwritten.
+	 * </p>
 	 *
 	 * @param rentalEntity           The {@link RentalEntity} object to update.
 	 * @param createRentalDTO  The new details for the rental.
 	 */
 	@Transactional
 	public void UpdateRental(RentalEntity rentalEntity, CreateRentalDTO createRentalDTO) {
+		if (Objects.equals(rentalEntity.getName(), createRentalDTO.name())
+				&& Objects.equals(rentalEntity.getSurface(), createRentalDTO.surface())
+				&& rentalEntity.getPrice().compareTo(createRentalDTO.price()) == 0
+				&& Objects.equals(rentalEntity.getDescription(), createRentalDTO.description())) {
+			log.debug("Rental {} unchanged, update skipped", rentalEntity.getId());
+			return;
+		}
 
 		rentalEntity.setName(createRentalDTO.name());
 		rentalEntity.setSurface(createRentalDTO.surface());
@@ -118,26 +416,131 @@ public class RentalService {
 		rentalEntity.setDescription(createRentalDTO.description());
 
 		rentalRepository.save(rentalEntity);
+		onRentalChanged(rentalEntity);
+	}
+
+	/**
+	 * Propagates a rental change to the in-memory views of the catalogue once the current transaction commits:
+	 * the cached rental pages are discarded, and the facet snapshot, the text index, the name suggestions
+	 * and the similarity tree are updated.
+	 * <p>
+	 * 		The write is already committed when they run, so each update logs its own failure instead of failing
+	 * 		the request: the view it failed on stays stale for this rental until its next rebuild.
+	 * </p>
+	 *
+	 * @param rentalEntity The created or updated rental.
+	 */
+	private void onRentalChanged(RentalEntity rentalEntity) {
+		Long id = rentalEntity.getId();
+		Long ownerId = rentalEntity.getOwner().getId();
+		afterCommit(() -> {
+			updateView("rental pages", id, rentalListCache::invalidate);
+			updateView("facet snapshot", id, () -> rentalSnapshotIndex.upsert(RentalSnapshot.Row.of(id,
+					rentalEntity.getPrice(), rentalEntity.getSurface(), ownerId)));
+			updateView("text index", id, () -> rentalTextIndex.upsert(new RentalTextIndex.Entry(id, rentalEntity.getName(),
+					rentalEntity.getDescription(), rentalEntity.getPrice(), rentalEntity.getSurface(), ownerId,
+					rentalEntity.getCreatedAt())));
+			updateView("name suggestions", id, () -> rentalAutocompleteIndex.upsert(RentalNameTrie.Entry.of(id,
+					rentalEntity.getName(), rentalEntity.getCreatedAt(), rentalEntity.getPrice())));
+			updateView("similarity tree", id, () -> rentalSimilarityIndex.upsert(RentalKdTree.Entry.of(id,
+					rentalEntity.getPrice(), rentalEntity.getSurface(), rentalEntity.getCreatedAt())));
+		});
+	}
+
+	/**
+	 * Applies a committed rental change to one in-memory view, logging the failure instead of propagating it.
+	 *
+	 * @param view     The name of the view, for the log.
+	 * @param rentalId The ID of the changed rental.
+	 * @param update   The update of the view.
+	 */
+	private void updateView(String view, Long rentalId, Runnable update) {
+		try {
+			update.run();
+		} catch (RuntimeException e) {
+			log.error("Failed to update the {} for rental {}, it stays stale until its next rebuild", view, rentalId, e);
+		}
+	}
+
+	/**
+	 * Runs an action once the current transaction commits, or immediately outside a transaction.
+	 * Running it after the commit ensures that no view built from the previous state outlives the change.
+	 *
+	 * @param action The action to run.
+	 */
+	private void afterCommit(Runnable action) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			action.run();
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				action.run();
+			}
+		});
+	}
+
+	/**
+	 * Resolves the effective page size from the requested one.
+	 *
+	 * @param limit The requested page size, or {@code null}.
+	 * @return The default size when no valid size is requested, otherwise the requested size capped to the maximum.
+	 */
+	private int pageSize(Integer limit) {
+		return limit == null || limit <= 0 ? defaultPageSize : Math.min(limit, maxPageSize);
+	}
+
+	/**
+	 * Encodes a pagination position into an opaque, URL-safe cursor.
+	 *
+	 * @param cursor The position to encode.
+	 * @return The cursor string.
+	 */
+	private String encodeCursor(Cursor cursor) {
+		return encodeOpaque(cursor.createdAt() + "|" + cursor.id());
 	}
 
 	/**
-	 * Converts a {@link RentalEntity} object into a {@link RentalDTO}.
+	 * Decodes a cursor produced by {@link #encodeCursor(Cursor)}.
 	 *
-	 * @param rentalEntity The {@link RentalEntity} object to convert.
-	 * @return A {@link RentalDTO} containing the rental details.
+	 * @param cursor The cursor string.
+	 * @return The decoded position.
+	 * @throws InvalidCursorException If the cursor is malformed.
 	 */
-	private RentalDTO convertToDTO(RentalEntity rentalEntity) {
-		DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy/MM/dd");
-		return new RentalDTO(
-				rentalEntity.getId(),
-				rentalEntity.getName(),
-				rentalEntity.getSurface(),
-				rentalEntity.getPrice(),
-				rentalEntity.getPicture(),
-				rentalEntity.getDescription(),
-				rentalEntity.getOwner().getId(),
-				rentalEntity.getCreatedAt().format(formatter),
-				rentalEntity.getUpdatedAt() != null ? rentalEntity.getUpdatedAt().format(formatter) : null
-		);
+	private Cursor decodeCursor(String cursor) {
+		try {
+			String raw = decodeOpaque(cursor);
+			int separator = raw.lastIndexOf('|');
+			return new Cursor(LocalDateTime.parse(raw.substring(0, separator)), Long.parseLong(raw.substring(separator + 1)));
+		} catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+			throw new InvalidCursorException(INVALID_CURSOR);
+		}
+	}
+
+	/**
+	 * Encodes a string into an opaque, URL-safe token.
+	 *
+	 * @param raw The string to encode.
+	 * @return The Base64 URL-safe encoding of the string, without padding.
+	 */
+	private String encodeOpaque(String raw) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Decodes a token produced by {@link #encodeOpaque(String)}.
+	 *
+	 * @param token The token.
+	 * @return The decoded string.
+	 * @throws IllegalArgumentException If the token is not valid Base64.
+	 */
+	private String decodeOpaque(String token) {
+		return new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
 	}
+
+	/**
+	 * Position of a rental in the (creation date, id) ordering.
+	 */
+	private record Cursor(LocalDateTime createdAt, Long id) {}
 }
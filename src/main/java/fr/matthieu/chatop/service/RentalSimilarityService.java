@@ -0,0 +1,91 @@
+package fr.matthieu.chatop.service;
+
+import fr.matthieu.chatop.dto.RentalDTO;
+import fr.matthieu.chatop.dto.RentalPageDTO;
+import fr.matthieu.chatop.dto.RentalProjection;
+import fr.matthieu.chatop.exception.RentalNotFoundException;
+import fr.matthieu.chatop.index.RentalKdTree;
+import fr.matthieu.chatop.index.RentalSimilarityIndex;
+import fr.matthieu.chatop.repository.RentalRepository;
+import jakarta.transaction.Transactional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static fr.matthieu.chatop.common.ResponseMessages.RENTAL_NOT_FOUND;
+
+/**
+ * Service class finding similar rentals with the in-memory {@link RentalSimilarityIndex}.
+ */
+@Service
+public class RentalSimilarityService {
+
+	private final RentalRepository rentalRepository;
+	private final RentalSimilarityIndex rentalSimilarityIndex;
+
+	@Value("${rentals.similar.default-size:6}")
+	private int defaultSize;
+
+	@Value("${rentals.similar.max-size:50}")
+	private int maxSize;
+
+	@Autowired
+	public RentalSimilarityService(RentalRepository rentalRepository, RentalSimilarityIndex rentalSimilarityIndex) {
+		this.rentalRepository = rentalRepository;
+		this.rentalSimilarityIndex = rentalSimilarityIndex;
+	}
+
+	/**
+	 * Retrieves the rentals closest to the given one by price, surface and creation date.
+	 * <p>
+	 * 		The neighbours are found in memory; their details are then loaded in a single query by primary key.
+	 * </p>
+	 *
+	 * @param id    The ID of the rental.
+	 * @param limit The maximum number of rentals to return, if any.
+	 * @return A {@link RentalPageDTO} holding the similar rentals, closest first.
+	 * @throws RentalNotFoundException If the rental does not exist.
+	 */
+	public RentalPageDTO getSimilarRentals(Long id, Integer limit) {
+		int size = limit == null || limit <= 0 ? defaultSize : Math.min(limit, maxSize);
+		RentalKdTree.Entry target = rentalSimilarityIndex.get(id);
+		if (target == null) {
+			// Not indexed yet, e.g. during the startup rebuild
+			RentalProjection projection = rentalRepository.findProjectionById(id)
+					.orElseThrow(() -> new RentalNotFoundException(String.format(RENTAL_NOT_FOUND, id)));
+			target = RentalKdTree.Entry.of(projection.id(), projection.price(), projection.surface(), projection.createdAt());
+		}
+
+		List<Long> ids = rentalSimilarityIndex.nearest(target, size).stream()
+				.map(neighbor -> neighbor.entry().id())
+				.toList();
+		Map<Long, RentalProjection> rentals = rentalRepository.findProjectionsByIdIn(ids).stream()
+				.collect(Collectors.toMap(RentalProjection::id, Function.identity()));
+		List<RentalDTO> similar = ids.stream()
+				.filter(rentals::containsKey)
+				.map(rentalId -> rentals.get(rentalId).toDTO())
+				.toList();
+		return new RentalPageDTO(similar, null);
+	}
+
+	/**
+	 * Builds the k-d tree from the database once the application is ready.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	@Transactional
+	public void rebuildTree() {
+		try (Stream<RentalProjection> projections = rentalRepository.streamAllOrderById()) {
+			rentalSimilarityIndex.rebuild(projections
+					.map(projection -> RentalKdTree.Entry.of(projection.id(), projection.price(), projection.surface(), projection.createdAt()))
+					.toList());
+		}
+	}
+}
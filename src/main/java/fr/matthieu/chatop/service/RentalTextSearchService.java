@@ -0,0 +1,157 @@
+package fr.matthieu.chatop.service;
+
+import fr.matthieu.chatop.dto.RentalProjection;
+import fr.matthieu.chatop.dto.RentalSearchDTO;
+import fr.matthieu.chatop.dto.RentalTextSearchDTO;
+import fr.matthieu.chatop.exception.InvalidCursorException;
+import fr.matthieu.chatop.index.RentalTextIndex;
+import fr.matthieu.chatop.repository.RentalRepository;
+import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static fr.matthieu.chatop.common.ResponseMessages.INVALID_CURSOR;
+
+/**
+ * Service class for the full-text search of rentals, backed by the {@link RentalTextIndex}.
+ */
+@Slf4j
+@Service
+public class RentalTextSearchService {
+
+	private final RentalRepository rentalRepository;
+	private final RentalTextIndex rentalTextIndex;
+	private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+	@Value("${rentals.page.default-size:100}")
+	private int defaultPageSize;
+
+	@Value("${rentals.text-index.max-results:1000}")
+	private int maxResults;
+
+	@Autowired
+	public RentalTextSearchService(RentalRepository rentalRepository, RentalTextIndex rentalTextIndex) {
+		this.rentalRepository = rentalRepository;
+		this.rentalTextIndex = rentalTextIndex;
+	}
+
+	/**
+	 * Searches the rentals whose name or description match the {@code q} text, ranked by relevance.
+	 * <p>
+	 * 		The price, surface and owner filters of the search apply; the sort does not, results being
+	 * 		ordered by relevance. Pages are addressed by their rank, up to {@code rentals.text-index.max-results}.
+	 * </p>
+	 *
+	 * @param search The validated search criteria, with a non-blank {@code q}.
+	 * @return A {@link RentalTextSearchDTO} holding the ranked rentals of the page.
+	 * @throws InvalidCursorException If the cursor cannot be decoded.
+	 */
+	public RentalTextSearchDTO search(RentalSearchDTO search) {
+		int limit = search.limit() == null || search.limit() <= 0 ? defaultPageSize : Math.min(search.limit(), maxResults);
+		int offset = decodeOffset(search.cursor());
+		limit = Math.max(0, Math.min(limit, maxResults - offset));
+
+		RentalTextIndex.Result result = rentalTextIndex.search(new RentalTextIndex.TextQuery(search.q(),
+				search.minPrice(), search.maxPrice(), search.minSurface(), search.maxSurface(), search.ownerId()), offset, limit);
+
+		List<Long> ids = result.hits().stream().map(RentalTextIndex.Hit::id).toList();
+		Map<Long, RentalProjection> rentals = rentalRepository.findProjectionsByIdIn(ids).stream()
+				.collect(Collectors.toMap(RentalProjection::id, Function.identity()));
+		List<RentalTextSearchDTO.Result> results = result.hits().stream()
+				.filter(hit -> rentals.containsKey(hit.id()))
+				.map(hit -> new RentalTextSearchDTO.Result(rentals.get(hit.id()).toDTO(), hit.score(),
+						hit.nameHighlight(), hit.descriptionHighlight()))
+				.toList();
+
+		int nextOffset = offset + limit;
+		String nextCursor = nextOffset < Math.min(result.totalHits(), maxResults) ? encodeOffset(nextOffset) : null;
+		return new RentalTextSearchDTO(results, result.totalHits(), nextCursor);
+	}
+
+	/**
+	 * Rebuilds the text index at startup when it does not match the rentals, e.g. on first start,
+	 * after the index directory was lost, or after the database was recreated.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	@Transactional
+	public void rebuildIfIncomplete() {
+		long rentalCount = rentalRepository.count();
+		LocalDateTime latestCreatedAt = rentalRepository.findLatestCreatedAt().orElse(null);
+		if (!rentalTextIndex.matches(rentalCount, latestCreatedAt)) {
+			log.info("Rental text index holds {} documents not matching the {} rentals, rebuilding", rentalTextIndex.numDocs(), rentalCount);
+			rebuild();
+		}
+	}
+
+	/**
+	 * Rebuilds the text index from the rentals stored in the database.
+	 * Only one rebuild runs at a time.
+	 *
+	 * @return The number of indexed rentals, or -1 if a rebuild is already running.
+	 */
+	@Transactional
+	public long rebuild() {
+		if (!rebuilding.compareAndSet(false, true)) {
+			return -1;
+		}
+		long start = System.currentTimeMillis();
+		rentalTextIndex.beginRebuild();
+		try (Stream<RentalProjection> projections = rentalRepository.streamAllOrderById()) {
+			long count = rentalTextIndex.completeRebuild(projections.map(projection -> new RentalTextIndex.Entry(
+					projection.id(), projection.name(), projection.description(), projection.price(),
+					projection.surface(), projection.ownerId(), projection.createdAt())));
+			log.info("Rental text index rebuilt with {} rentals in {} ms", count, System.currentTimeMillis() - start);
+			return count;
+		} catch (RuntimeException e) {
+			rentalTextIndex.cancelRebuild();
+			throw e;
+		} finally {
+			rebuilding.set(false);
+		}
+	}
+
+	private String encodeOffset(int offset) {
+		String raw = "q|" + offset;
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Decodes a cursor produced by {@link #encodeOffset(int)}.
+	 *
+	 * @param cursor The cursor, or {@code null} for the first page.
+	 * @return The rank of the first result of the page.
+	 * @throws InvalidCursorException If the cursor is malformed or beyond the maximum number of results.
+	 */
+	private int decodeOffset(String cursor) {
+		if (cursor == null || cursor.isBlank()) {
+			return 0;
+		}
+		try {
+			String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+			if (!raw.startsWith("q|")) {
+				throw new InvalidCursorException(INVALID_CURSOR);
+			}
+			int offset = Integer.parseInt(raw.substring(2));
+			if (offset < 0 || offset >= maxResults) {
+				throw new InvalidCursorException(INVALID_CURSOR);
+			}
+			return offset;
+		} catch (IllegalArgumentException e) {
+			throw new InvalidCursorException(INVALID_CURSOR);
+		}
+	}
+}
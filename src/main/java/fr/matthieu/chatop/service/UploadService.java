@@ -1,20 +1,32 @@
 package fr.matthieu.chatop.service;
 
 import fr.matthieu.chatop.exception.FileStorageException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.Arrays;
-import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 /**
  * Service class for handling file uploads.
@@ -22,11 +34,18 @@ import java.util.UUID;
  * This service is responsible for storing uploaded pictures in a predefined directory
  * and generating accessible URLs for the stored files.
  * </p>
+ * <p>
+ * 		Pictures are stored in two phases, so that no database transaction is open while they are written:
+ * 		they are first written to a staging directory, then moved to the upload directory once the rental
+ * 		referencing them is about to commit, or deleted if it is not saved.
+ * </p>
  */
 @Slf4j
 @Service
 public class UploadService {
 
+	private static final int COPY_BUFFER_SIZE = 8 * 1024;
+
 	@Value("${server.port}")
 	private String port;
 
@@ -39,115 +58,294 @@ public class UploadService {
 	@Value("${file.upload-relative-path}")
 	private String uploadRelativePath;
 
+	@Value("${file.staging-dir:uploads/staging}")
+	private String stagingDir;
 
+	@Value("${file.staging-max-age-minutes:60}")
+	private long stagingMaxAgeMinutes;
 
+	@Value("${spring.servlet.multipart.max-file-size:1MB}")
+	private DataSize maxFileSize;
+
+	private final Timer stagingTimer;
+	private final Timer promotionTimer;
+	private final Counter discardedCounter;
+
+	@Autowired
+	public UploadService(MeterRegistry meterRegistry) {
+		this.stagingTimer = Timer.builder("uploads.picture.staging")
+				.description("Time spent writing uploaded pictures to the staging directory")
+				.register(meterRegistry);
+		this.promotionTimer = Timer.builder("uploads.picture.promotion")
+				.description("Time spent moving staged pictures to the upload directory")
+				.register(meterRegistry);
+		this.discardedCounter = Counter.builder("uploads.picture.discarded")
+				.description("Staged or promoted pictures deleted because their rental was not saved")
+				.register(meterRegistry);
+	}
 
 	/**
-	 * Stores a picture file in the upload directory and generates a URL for accessing it.
+	 * Writes a picture file to the staging directory, and computes its final location and URL.
 	 * <p>
-	 * The stored file is renamed to a unique name based on a UUID, the current date,
-	 * and the provided name. If the upload process fails, a {@link FileStorageException} is thrown.
+	 * The file is given a unique name based on a UUID, the current date, and the provided name.
+	 * Its type is detected from its first bytes, whatever the {@code Content-Type} sent by the client,
+	 * and it is streamed to disk through a small buffer, up to {@code spring.servlet.multipart.max-file-size}.
+	 * It must then be moved to the upload directory with {@link #promote(StagedPicture)},
+	 * or deleted with {@link #discard(StagedPicture)}.
+	 * Must be called outside of any database transaction, as it blocks on the disk write.
 	 * </p>
 	 *
 	 * @param picture The {@link MultipartFile} representing the uploaded picture.
 	 * @param name    The name to include in the stored file's name.
-	 * @return A URL string pointing to the uploaded file.
+	 * @return The {@link StagedPicture}.
 	 * @throws FileStorageException If file storage fails or an invalid file path is detected.
 	 */
-	protected String storePicture(MultipartFile picture, String name) {
+	protected StagedPicture stagePicture(MultipartFile picture, String name) {
 
-		Path uploadPath = initializeUploadDirectory();
+		Path stagingPath = initializeDirectory(stagingDir);
+		Path uploadPath = initializeDirectory(uploadDir);
 
-		validateFileType(picture);
+		try (InputStream inputStream = picture.getInputStream()) {
+			byte[] signature = inputStream.readNBytes(PictureType.SIGNATURE_LENGTH);
+			PictureType type = PictureType.detect(signature);
+			if (type == null) {
+				throw new FileStorageException("Unsupported file type. Only JPEG and PNG files are allowed.");
+			}
 
-		String filename = generateUniqueFilename(picture.getOriginalFilename(), name);
+			String filename = generateUniqueFilename(type, name);
 
-		saveFileToDisk(picture, uploadPath.resolve(filename));
+			StagedPicture staged = new StagedPicture(storedPath(stagingPath, filename), storedPath(uploadPath, filename), generateFileUrl(filename));
+			stagingTimer.record(() -> saveFileToDisk(signature, inputStream, staged.stagedPath()));
+			return staged;
+		} catch (IOException e) {
+			log.error("Failed to read uploaded file.", e);
+			throw new FileStorageException("Failed to store file.");
+		}
 
-		return generateFileUrl(filename);
+	}
 
+	/**
+	 * Computes the staging location, final location and URL of a picture derived from an uploaded one,
+	 * such as a resized copy. The caller writes the staged file, then promotes or discards it.
+	 *
+	 * @param pictureUrl The URL of the uploaded picture.
+	 * @param suffix     The suffix added to the name of the uploaded picture, before its extension.
+	 * @return The {@link StagedPicture}, not written yet.
+	 * @throws FileStorageException If the directories cannot be created, or the name points outside them.
+	 */
+	protected StagedPicture stageDerivedPicture(String pictureUrl, String suffix) {
+		String filename = pictureUrl.substring(pictureUrl.lastIndexOf('/') + 1);
+		int extension = filename.lastIndexOf('.');
+		if (extension < 0) {
+			extension = filename.length();
+		}
+		String derived = filename.substring(0, extension) + suffix + filename.substring(extension);
+
+		Path stagingPath = initializeDirectory(stagingDir);
+		Path uploadPath = initializeDirectory(uploadDir);
+		return new StagedPicture(storedPath(stagingPath, derived), storedPath(uploadPath, derived), generateFileUrl(derived));
 	}
 
 	/**
-	 * Initializes the upload directory, creating it if necessary.
+	 * Moves a staged picture to the upload directory, where it is served.
+	 * <p>
+	 * The move is an atomic rename when both directories are on the same file system,
+	 * so the picture is never served partially written.
+	 * </p>
 	 *
-	 * @return The path to the upload directory.
-	 * @throws FileStorageException If the directory cannot be created.
+	 * @param staged The picture returned by {@link #stagePicture(MultipartFile, String)}.
+	 * @throws FileStorageException If the file cannot be moved.
+	 */
+	protected void promote(StagedPicture staged) {
+		promotionTimer.record(() -> {
+			try {
+				try {
+					Files.move(staged.stagedPath(), staged.targetPath(), StandardCopyOption.ATOMIC_MOVE);
+				} catch (AtomicMoveNotSupportedException e) {
+					Files.move(staged.stagedPath(), staged.targetPath(), StandardCopyOption.REPLACE_EXISTING);
+				}
+			} catch (IOException e) {
+				log.error("Failed to promote staged file {}.", staged.stagedPath(), e);
+				throw new FileStorageException("Failed to store file.");
+			}
+		});
+	}
+
+	/**
+	 * Deletes a picture whose rental was not saved, whether it was promoted or not.
+	 * Failures are logged, the staged files being purged later anyway.
+	 *
+	 * @param staged The picture returned by {@link #stagePicture(MultipartFile, String)}.
 	 */
-	private Path initializeUploadDirectory() {
+	protected void discard(StagedPicture staged) {
 		try {
-			Path path = Paths.get(uploadDir).toAbsolutePath().normalize();
-			Files.createDirectories(path);
-			log.info("Upload directory initialized at: {} ", path);
-			return path;
+			boolean deleted = Files.deleteIfExists(staged.stagedPath());
+			deleted |= Files.deleteIfExists(staged.targetPath());
+			if (deleted) {
+				discardedCounter.increment();
+			}
 		} catch (IOException e) {
-			log.error("Could not create upload directory!", e);
-			throw new FileStorageException("Could not create upload directory!");
+			log.warn("Failed to delete discarded file {}.", staged.targetPath().getFileName(), e);
 		}
 	}
 
 	/**
-	 * Validates the content type of the file.
+	 * Resolves the file of an uploaded picture from the last segment of its URL.
+	 * <p>
+	 * 		Pictures are looked up in {@code file.upload-dir}, then in {@code file.upload-relative-path}
+	 * 		relative to the working directory, the second location the static resource handler used to serve,
+	 * 		so that pictures stored there by earlier deployments are still found.
+	 * </p>
 	 *
-	 * @param picture The file to validate.
-	 * @throws FileStorageException If the content type is not allowed.
+	 * @param filename The name of the file.
+	 * @return The absolute path of the file, or {@code null} if the name points outside the upload directories.
 	 */
-	private void validateFileType(MultipartFile picture) {
-		String contentType = picture.getContentType();
-		List<String> allowedContentTypes = Arrays.asList("image/jpeg", "image/png");
+	public Path resolvePicture(String filename) {
+		Path path = resolveIn(Paths.get(uploadDir), filename);
+		if (path == null || Files.exists(path)) {
+			return path;
+		}
+		Path fallback = resolveIn(Paths.get(uploadRelativePath), filename);
+		return fallback != null && Files.exists(fallback) ? fallback : path;
+	}
 
-		if (!allowedContentTypes.contains(contentType)) {
-			throw new FileStorageException("Unsupported file type. Only JPEG and PNG files are allowed.");
+	/**
+	 * Resolves the path a picture is stored at, rejecting names which would leave the directory,
+	 * such as a rental name containing {@code ../}.
+	 *
+	 * @param directory The absolute, normalized directory.
+	 * @param filename  The name of the file.
+	 * @return The path of the file, directly inside the directory.
+	 * @throws FileStorageException If the name points outside the directory.
+	 */
+	private Path storedPath(Path directory, String filename) {
+		Path path = resolveIn(directory, filename);
+		if (path == null) {
+			throw new FileStorageException("Cannot store file outside current directory.");
 		}
+		return path;
+	}
+
+	private Path resolveIn(Path directory, String filename) {
+		Path directoryPath = directory.toAbsolutePath().normalize();
+		Path path = directoryPath.resolve(filename).normalize();
+		return directoryPath.equals(path.getParent()) ? path : null;
 	}
 
 	/**
-	 * Generates a unique filename using a UUID, date, and name.
+	 * Resolves the file of an uploaded picture from its URL.
 	 *
-	 * @param originalFilename The original filename of the uploaded file.
-	 * @param name             The name to include in the new filename.
-	 * @return The generated filename.
+	 * @param pictureUrl The URL of the picture.
+	 * @return The absolute path of the file, or {@code null} if the URL points outside the upload directory.
+	 */
+	public Path resolvePictureUrl(String pictureUrl) {
+		return resolvePicture(pictureUrl.substring(pictureUrl.lastIndexOf('/') + 1));
+	}
+
+	/**
+	 * Deletes the staged pictures older than {@code file.staging-max-age-minutes},
+	 * left behind when the application stopped between staging and promotion.
 	 */
-	private String generateUniqueFilename(String originalFilename, String name) {
-		String extension = getFileExtension(originalFilename);
-		return UUID.randomUUID() + "_" + LocalDate.now() + "_" + name + extension;
+	@Scheduled(fixedDelayString = "${file.staging-purge-interval-ms:900000}")
+	public void purgeStaged() {
+		Path path = Paths.get(stagingDir).toAbsolutePath().normalize();
+		if (!Files.isDirectory(path)) {
+			return;
+		}
+		Instant limit = Instant.now().minus(Duration.ofMinutes(stagingMaxAgeMinutes));
+		try (Stream<Path> files = Files.list(path)) {
+			files.filter(file -> isOlderThan(file, limit)).forEach(file -> {
+				try {
+					Files.deleteIfExists(file);
+					log.info("Purged orphan staged file {}", file.getFileName());
+				} catch (IOException e) {
+					log.warn("Failed to purge staged file {}.", file.getFileName(), e);
+				}
+			});
+		} catch (IOException e) {
+			log.warn("Failed to list the staging directory.", e);
+		}
+	}
+
+	private boolean isOlderThan(Path file, Instant limit) {
+		try {
+			return Files.getLastModifiedTime(file).toInstant().isBefore(limit);
+		} catch (IOException e) {
+			return false;
+		}
 	}
 
 	/**
-	 * Extracts the file extension from the original filename.
+	 * Initializes a storage directory, creating it if necessary.
 	 *
-	 * @param originalFilename The original filename.
-	 * @return The file extension, or an empty string if none is found.
+	 * @param directory The directory.
+	 * @return The absolute path to the directory.
+	 * @throws FileStorageException If the directory cannot be created.
 	 */
-	private String getFileExtension(String originalFilename) {
-		if (originalFilename == null || !originalFilename.contains(".")) {
-			return "";
+	private Path initializeDirectory(String directory) {
+		try {
+			Path path = Paths.get(directory).toAbsolutePath().normalize();
+			Files.createDirectories(path);
+			return path;
+		} catch (IOException e) {
+			log.error("Could not create upload directory!", e);
+			throw new FileStorageException("Could not create upload directory!");
 		}
-		return originalFilename.substring(originalFilename.lastIndexOf("."));
 	}
 
 	/**
-	 * Saves the file to the specified location on disk.
+	 * Generates a unique filename using a UUID, date, and name.
 	 *
-	 * @param picture        The file to save.
+	 * @param type The detected type of the file, giving its extension.
+	 * @param name The name to include in the new filename.
+	 * @return The generated filename.
+	 */
+	private String generateUniqueFilename(PictureType type, String name) {
+		return UUID.randomUUID() + "_" + LocalDate.now() + "_" + name + type.extension();
+	}
+
+	/**
+	 * Streams the rest of an upload to disk through a bounded buffer, after its already read signature.
+	 * The file is deleted if the upload exceeds the maximum size or cannot be written.
+	 *
+	 * @param signature       The first bytes of the upload.
+	 * @param inputStream     The rest of the upload.
 	 * @param destinationPath The path where the file should be saved.
-	 * @throws FileStorageException If the file cannot be saved.
+	 * @throws FileStorageException If the file is too large or cannot be saved.
 	 */
-	private void saveFileToDisk(MultipartFile picture, Path destinationPath) {
+	private void saveFileToDisk(byte[] signature, InputStream inputStream, Path destinationPath) {
 		try {
-			if (!destinationPath.getParent().equals(destinationPath.getParent().toAbsolutePath())) {
-				throw new FileStorageException("Cannot store file outside current directory.");
+			try (OutputStream outputStream = Files.newOutputStream(destinationPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+				outputStream.write(signature);
+				long written = signature.length;
+				byte[] buffer = new byte[COPY_BUFFER_SIZE];
+				int read;
+				while ((read = inputStream.read(buffer)) != -1) {
+					written += read;
+					if (written > maxFileSize.toBytes()) {
+						throw new FileStorageException("The file exceeds the maximum size of " + maxFileSize.toKilobytes() + " KB.");
+					}
+					outputStream.write(buffer, 0, read);
+				}
 			}
-
-			try (var inputStream = picture.getInputStream()) {
-				Files.copy(inputStream, destinationPath, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException | RuntimeException e) {
+			deleteQuietly(destinationPath);
+			if (e instanceof FileStorageException fileStorageException) {
+				throw fileStorageException;
 			}
-		} catch (IOException e) {
 			log.error("Failed to store file.", e);
 			throw new FileStorageException("Failed to store file.");
 		}
 	}
 
+	private void deleteQuietly(Path path) {
+		try {
+			Files.deleteIfExists(path);
+		} catch (IOException e) {
+			log.warn("Failed to delete partial file {}.", path.getFileName(), e);
+		}
+	}
+
 	/**
 	 * Generates the public URL for accessing the uploaded file.
 	 *
@@ -157,4 +355,51 @@ public class UploadService {
 	private String generateFileUrl(String filename) {
 		return baseUrl + ":" + port + "/" + uploadRelativePath + "/" + filename;
 	}
+
+	/**
+	 * A picture written to the staging directory and not yet served.
+	 *
+	 * @param stagedPath The location of the staged file.
+	 * @param targetPath The location of the file once promoted.
+	 * @param url        The public URL of the file once promoted.
+	 */
+	public record StagedPicture(Path stagedPath, Path targetPath, String url) {}
+
+	/**
+	 * The accepted picture formats, recognized by their signature.
+	 */
+	private enum PictureType {
+		JPEG(".jpg", new byte[] {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}),
+		PNG(".png", new byte[] {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'});
+
+		private static final int SIGNATURE_LENGTH = 8;
+
+		private final String extension;
+		private final byte[] signature;
+
+		PictureType(String extension, byte[] signature) {
+			this.extension = extension;
+			this.signature = signature;
+		}
+
+		private String extension() {
+			return extension;
+		}
+
+		/**
+		 * Detects the format of a file from its first bytes.
+		 *
+		 * @param header Up to {@link #SIGNATURE_LENGTH} first bytes of the file.
+		 * @return The format, or {@code null} if it is not accepted.
+		 */
+		private static PictureType detect(byte[] header) {
+			for (PictureType type : values()) {
+				if (header.length >= type.signature.length
+						&& Arrays.equals(header, 0, type.signature.length, type.signature, 0, type.signature.length)) {
+					return type;
+				}
+			}
+			return null;
+		}
+	}
 }
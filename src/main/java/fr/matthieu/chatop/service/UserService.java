@@ -1,62 +1,136 @@
 package fr.matthieu.chatop.service;
 
 import fr.matthieu.chatop.dto.RegisterDTO;
+import fr.matthieu.chatop.dto.ResourceVersion;
 import fr.matthieu.chatop.dto.UserDTO;
 import fr.matthieu.chatop.exception.UnauthorizedException;
 import fr.matthieu.chatop.exception.UserAlreadyExistsException;
 import fr.matthieu.chatop.exception.UserNotFoundException;
+import fr.matthieu.chatop.index.EmailBloomFilter;
 import fr.matthieu.chatop.model.UserEntity;
 import fr.matthieu.chatop.repository.UserRepository;
+import fr.matthieu.chatop.security.AuthenticatedUser;
+import fr.matthieu.chatop.security.PrincipalCache;
+import fr.matthieu.chatop.security.RevokedTokenRegistry;
+import fr.matthieu.chatop.security.SessionRegistry;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.Optional;
+import java.util.Map;
+import java.util.stream.Stream;
 
 import static fr.matthieu.chatop.common.ResponseMessages.*;
 
 /**
  * Service class for managing user-related operations.
- * This class implements {@link UserDetailsService} to integrate with Spring Security.
+ * This class implements {@link UserDetailsService} and {@link UserDetailsPasswordService}
+ * to integrate with Spring Security.
  */
+@Slf4j
 @Service
-public class UserService implements UserDetailsService {
+public class UserService implements UserDetailsService, UserDetailsPasswordService {
 
 	private final UserRepository userRepository;
 	private final BCryptPasswordEncoder passwordEncoder;
 	private final JWTService jwtService;
+	private final PrincipalCache principalCache;
+	private final RevokedTokenRegistry revokedTokenRegistry;
+	private final SessionRegistry sessionRegistry;
+	private final RefreshTokenService refreshTokenService;
+	private final EmailBloomFilter emailBloomFilter;
 
 
 	@Autowired
-	public UserService(UserRepository userRepository, BCryptPasswordEncoder passwordEncoder, JWTService jwtService) {
+	public UserService(UserRepository userRepository, BCryptPasswordEncoder passwordEncoder, JWTService jwtService, PrincipalCache principalCache, RevokedTokenRegistry revokedTokenRegistry, SessionRegistry sessionRegistry, RefreshTokenService refreshTokenService, EmailBloomFilter emailBloomFilter) {
 		this.userRepository = userRepository;
 		this.passwordEncoder = passwordEncoder;
 		this.jwtService = jwtService;
+		this.principalCache = principalCache;
+		this.revokedTokenRegistry = revokedTokenRegistry;
+		this.sessionRegistry = sessionRegistry;
+		this.refreshTokenService = refreshTokenService;
+		this.emailBloomFilter = emailBloomFilter;
 	}
 
 
 	/**
 	 * Registers a new user in the system.
+	 * <p>
+	 * 		The existence of the email is only queried when the {@link EmailBloomFilter} reports it as
+	 * 		possibly registered. Concurrent registrations of the same email are caught by the unique
+	 * 		constraint on the {@code email} column.
+	 * </p>
 	 *
 	 * @param registerDTO The registration details provided by the client.
-	 * @return A JWT token for the newly registered user.
+	 * @return A map containing the JWT token ("token") and refresh token ("refresh_token") for the newly registered user.
 	 * @throws UserAlreadyExistsException If the email is already in use.
 	 */
-	public String register(RegisterDTO registerDTO) {
-		Optional<UserEntity> userExist = userRepository.findByEmail(registerDTO.email());
-		if (userExist.isPresent()) {
-			throw new UserAlreadyExistsException(EMAIL_ALREADY_IN_USE);
+	public Map<String, String> register(RegisterDTO registerDTO) {
+		String email = registerDTO.email().toLowerCase();
+		if (emailBloomFilter.mightContain(email)) {
+			if (userRepository.existsByEmail(email)) {
+				throw new UserAlreadyExistsException(EMAIL_ALREADY_IN_USE);
+			}
+			emailBloomFilter.recordFalsePositive();
 		}
 		UserEntity userEntity = convertToUser(registerDTO);
-		UserEntity savedUserEntity = userRepository.save(userEntity);
-		return jwtService.generate(savedUserEntity);
+		UserEntity savedUserEntity;
+		try {
+			savedUserEntity = userRepository.save(userEntity);
+		} catch (DataIntegrityViolationException e) {
+			log.info("Registration rejected by the unique email constraint - {}", e.getMostSpecificCause().getMessage());
+			throw new UserAlreadyExistsException(EMAIL_ALREADY_IN_USE);
+		}
+		emailBloomFilter.put(email);
+		principalCache.invalidate(savedUserEntity.getEmail());
+		return issueTokens(savedUserEntity);
+	}
+
+	/**
+	 * Fills the {@link EmailBloomFilter} with every registered email once the application is ready.
+	 * Emails are streamed from the database so the table is never loaded in memory at once.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	@Transactional(readOnly = true)
+	public void rebuildEmailFilter() {
+		long start = System.currentTimeMillis();
+		try (Stream<String> emails = userRepository.streamAllEmails()) {
+			emails.forEach(emailBloomFilter::put);
+		}
+		long duration = System.currentTimeMillis() - start;
+		emailBloomFilter.recordRebuild(duration);
+		log.info("Email Bloom filter rebuilt in {} ms", duration);
+	}
+
+	/**
+	 * Opens a new login session for a user and generates its JWT token and refresh token.
+	 * <p>
+	 * 		Other sessions of the user stay valid: the {@code users} row is not modified.
+	 * </p>
+	 *
+	 * @param userEntity The authenticated user.
+	 * @return A map containing the JWT token ("token") and refresh token ("refresh_token") bound to the new session.
+	 */
+	public Map<String, String> issueTokens(UserEntity userEntity) {
+		String sessionId = sessionRegistry.open(userEntity.getId());
+		return Map.of(
+				"token", jwtService.generate(userEntity, sessionId),
+				"refresh_token", refreshTokenService.issue(userEntity, sessionId)
+		);
 	}
 
 	/**
@@ -73,6 +147,50 @@ public class UserService implements UserDetailsService {
 				.orElseThrow(() -> new UsernameNotFoundException(USER_NOT_FOUND) );
 	}
 
+	/**
+	 * Replaces the stored password hash of a user.
+	 * <p>
+	 * 		Called by Spring Security after a successful login when the stored hash
+	 * 		was produced with a different BCrypt cost than the configured one.
+	 * </p>
+	 *
+	 * @param user        The authenticated user.
+	 * @param newPassword The password re-encoded with the current cost.
+	 * @return The updated {@link UserDetails}.
+	 */
+	@Override
+	public UserDetails updatePassword(UserDetails user, String newPassword) {
+		UserEntity userEntity = (UserEntity) user;
+		userEntity.setPassword(newPassword);
+		return userRepository.save(userEntity);
+	}
+
+	/**
+	 * Loads the principal of a user by their email, using the {@link PrincipalCache} when possible.
+	 * <p>
+	 * 		Intended for the JWT authentication path, where only the identity and token version
+	 * 		of the user are needed.
+	 * </p>
+	 *
+	 * @param email The email of the user.
+	 * @return The {@link AuthenticatedUser} for the user.
+	 * @throws UsernameNotFoundException If the user does not exist.
+	 */
+	public AuthenticatedUser loadPrincipal(String email) throws UsernameNotFoundException {
+		AuthenticatedUser cached = principalCache.get(email);
+		if (cached != null) {
+			return cached;
+		}
+		long generation = principalCache.generation();
+		AuthenticatedUser principal = AuthenticatedUser.from(
+				this.userRepository
+						.findByEmail(email)
+						.orElseThrow(() -> new UsernameNotFoundException(USER_NOT_FOUND))
+		);
+		principalCache.put(principal, generation);
+		return principal;
+	}
+
 	/**
 	 * Retrieves a user by their ID.
 	 *
@@ -84,6 +202,27 @@ public class UserService implements UserDetailsService {
 		return this.userRepository.findById(id).orElseThrow(() -> new UserNotFoundException(USER_NOT_FOUND) );
 	}
 
+	/**
+	 * Retrieves the version information of a user, used to answer conditional requests.
+	 *
+	 * @param id The ID of the user.
+	 * @return The {@link ResourceVersion} of the user.
+	 * @throws UserNotFoundException If the user does not exist.
+	 */
+	public ResourceVersion getUserVersion(Long id) {
+		return userRepository.findVersionById(id).orElseThrow(() -> new UserNotFoundException(USER_NOT_FOUND));
+	}
+
+	/**
+	 * Returns a reference to a user without loading it from the database.
+	 *
+	 * @param id The ID of the user.
+	 * @return A {@link UserEntity} reference, usable to set associations.
+	 */
+	public UserEntity getUserReference(Long id) {
+		return this.userRepository.getReferenceById(id);
+	}
+
 	/**
 	 * Converts a {@link RegisterDTO} into a {@link UserEntity} object.
 	 *
@@ -101,14 +240,14 @@ public class UserService implements UserDetailsService {
 	/**
 	 * Retrieves the currently authenticated user from the security context.
 	 *
-	 * @return The {@link UserEntity} object of the authenticated user.
+	 * @return The {@link AuthenticatedUser} principal of the authenticated user.
 	 */
-	public UserEntity getAuthenticateUser() {
+	public AuthenticatedUser getAuthenticateUser() {
 		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-		if (authentication == null || authentication.getPrincipal() == null || !(authentication.getPrincipal() instanceof UserEntity)) {
+		if (authentication == null || !(authentication.getPrincipal() instanceof AuthenticatedUser authenticatedUser)) {
 			throw new UnauthorizedException(UNAUTHORIZED_ACCESS);
 		}
-		return (UserEntity) authentication.getPrincipal();
+		return authenticatedUser;
 	}
 
 	/**
@@ -117,18 +256,32 @@ public class UserService implements UserDetailsService {
 	 * @return A {@link UserDTO} containing user details.
 	 */
 	public UserDTO getUserResponseDTO() {
-		UserEntity userEntity = getAuthenticateUser();
-		return convertToResponseDTO(userEntity);
+		return convertToResponseDTO(getUserById(getAuthenticateUser().id()));
+	}
+
+	/**
+	 * Logs the authenticated user out of every device.
+	 */
+	public void logoutEverywhere() {
+		incrementTokenVersion(getUserById(getAuthenticateUser().id()));
 	}
 
 	/**
 	 * Increments the token version for a user and saves the changes to the database.
+	 * Tokens issued with a previous version are revoked, logging the user out of every device.
+	 * <p>
+	 * 		Their refresh tokens are rejected at once. Their access tokens are rejected at once on this instance.
+	 * 		Other instances reject them once their cached principal expires, and accept stateless reads
+	 * 		until the tokens expire, as the {@link RevokedTokenRegistry} is local.
+	 * </p>
 	 *
 	 * @param userEntity The {@link UserEntity} whose token version is to be incremented.
 	 */
 	public void incrementTokenVersion(UserEntity userEntity) {
 		userEntity.incrementTokenVersion();
 		userRepository.save(userEntity);
+		principalCache.invalidate(userEntity.getEmail());
+		revokedTokenRegistry.revokeBefore(userEntity.getId(), userEntity.getTokenVersion());
 	}
 
 	/**
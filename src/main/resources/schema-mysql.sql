@@ -0,0 +1,31 @@
+-- Composite indexes of the rental search (GET /api/rentals/search), each ending with the column that breaks ties.
+-- They are created here rather than from the entity mapping, so they do not depend on spring.jpa.hibernate.ddl-auto.
+-- MySQL has no CREATE INDEX IF NOT EXISTS: each index is only created when missing, so the script can run at every start.
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics
+		WHERE table_schema = DATABASE() AND table_name = 'rentals' AND index_name = 'idx_rentals_price_id') = 0,
+	'CREATE INDEX idx_rentals_price_id ON rentals (price, id)', 'DO 0');
+PREPARE create_index FROM @ddl;
+EXECUTE create_index;
+DEALLOCATE PREPARE create_index;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics
+		WHERE table_schema = DATABASE() AND table_name = 'rentals' AND index_name = 'idx_rentals_surface_id') = 0,
+	'CREATE INDEX idx_rentals_surface_id ON rentals (surface, id)', 'DO 0');
+PREPARE create_index FROM @ddl;
+EXECUTE create_index;
+DEALLOCATE PREPARE create_index;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics
+		WHERE table_schema = DATABASE() AND table_name = 'rentals' AND index_name = 'idx_rentals_created_at_id') = 0,
+	'CREATE INDEX idx_rentals_created_at_id ON rentals (created_at, id)', 'DO 0');
+PREPARE create_index FROM @ddl;
+EXECUTE create_index;
+DEALLOCATE PREPARE create_index;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics
+		WHERE table_schema = DATABASE() AND table_name = 'rentals' AND index_name = 'idx_rentals_owner_id_created_at') = 0,
+	'CREATE INDEX idx_rentals_owner_id_created_at ON rentals (owner_id, created_at)', 'DO 0');
+PREPARE create_index FROM @ddl;
+EXECUTE create_index;
+DEALLOCATE PREPARE create_index;
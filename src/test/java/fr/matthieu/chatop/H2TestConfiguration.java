@@ -0,0 +1,59 @@
+package fr.matthieu.chatop;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * Lets the application run against H2 in tests.
+ * <p>
+ * 		Cursors are streamed from MySQL with a fetch size of {@link Integer#MIN_VALUE}, which H2 rejects:
+ * 		negative fetch sizes are replaced by the driver default.
+ * </p>
+ */
+@TestConfiguration(proxyBeanMethods = false)
+public class H2TestConfiguration {
+
+	@Bean
+	static BeanPostProcessor streamingFetchSizeAdapter() {
+		return new BeanPostProcessor() {
+			@Override
+			public Object postProcessAfterInitialization(Object bean, String beanName) {
+				return bean instanceof DataSource dataSource ? proxy(DataSource.class, dataSource) : bean;
+			}
+		};
+	}
+
+	/**
+	 * Proxies a JDBC object, and the connections and statements it creates.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(Class<T> type, T target) {
+		InvocationHandler handler = (proxy, method, args) -> {
+			if (target instanceof Statement && method.getName().equals("setFetchSize") && (int) args[0] < 0) {
+				args[0] = 0;
+			}
+			Object result;
+			try {
+				result = method.invoke(target, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+			if (result instanceof Connection connection) {
+				return proxy(Connection.class, connection);
+			}
+			if (result instanceof Statement statement && method.getReturnType().isInterface()) {
+				return proxy((Class<Statement>) method.getReturnType(), statement);
+			}
+			return result;
+		};
+		return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+	}
+}
@@ -0,0 +1,75 @@
+package fr.matthieu.chatop.configuration;
+
+import fr.matthieu.chatop.H2TestConfiguration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalManagementPort;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.UUID;
+
+import static fr.matthieu.chatop.common.ApiRoutes.REGISTER_URL;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that the actuator endpoints are only served on the management port.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "management.server.port=0")
+@Import(H2TestConfiguration.class)
+@ActiveProfiles("test")
+class ActuatorSecurityTest {
+
+	private final HttpClient client = HttpClient.newHttpClient();
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	@LocalServerPort
+	private int serverPort;
+
+	@LocalManagementPort
+	private int managementPort;
+
+	private String token;
+
+	@BeforeEach
+	void register() {
+		Map<String, String> body = Map.of("email", UUID.randomUUID() + "@example.com", "password", "P@ssw0rd", "name", "john_doe");
+		@SuppressWarnings("unchecked")
+		Map<String, String> response = restTemplate.postForObject("http://localhost:" + serverPort + REGISTER_URL, body, Map.class);
+		token = response.get("token");
+	}
+
+	@Test
+	void applicationPortDoesNotServeTheActuator() throws Exception {
+		assertThat(send(serverPort, "GET", "metrics", token)).isBetween(400, 499);
+		assertThat(send(serverPort, "POST", "rentaltextindex", token)).isBetween(400, 499);
+	}
+
+	@Test
+	void managementPortRequiresAuthentication() throws Exception {
+		assertThat(send(managementPort, "GET", "metrics", null)).isEqualTo(401);
+		assertThat(send(managementPort, "POST", "rentaltextindex", null)).isEqualTo(401);
+		assertThat(send(managementPort, "GET", "metrics", token)).isEqualTo(200);
+	}
+
+	private int send(int port, String method, String endpoint, String bearer) throws IOException, InterruptedException {
+		HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/actuator/" + endpoint))
+				.method(method, HttpRequest.BodyPublishers.noBody());
+		if (bearer != null) {
+			request.header("Authorization", "Bearer " + bearer);
+		}
+		return client.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+	}
+}
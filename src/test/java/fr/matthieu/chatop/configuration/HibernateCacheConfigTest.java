@@ -0,0 +1,54 @@
+package fr.matthieu.chatop.configuration;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that the second-level cache follows {@code cache.second-level.enabled}, even though
+ * hibernate-jcache on the classpath would make Hibernate turn it on by itself.
+ */
+class HibernateCacheConfigTest {
+
+	@Nested
+	@DataJpaTest
+	@ActiveProfiles("test")
+	class Disabled {
+
+		@Autowired
+		private EntityManagerFactory entityManagerFactory;
+
+		@Test
+		void secondLevelAndQueryCachesAreOff() {
+			var options = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getSessionFactoryOptions();
+
+			assertThat(options.isSecondLevelCacheEnabled()).isFalse();
+			assertThat(options.isQueryCacheEnabled()).isFalse();
+		}
+	}
+
+	@Nested
+	@DataJpaTest(properties = "cache.second-level.enabled=true")
+	@Import(HibernateCacheConfig.class)
+	@ActiveProfiles("test")
+	class Enabled {
+
+		@Autowired
+		private EntityManagerFactory entityManagerFactory;
+
+		@Test
+		void secondLevelAndQueryCachesAreOn() {
+			var options = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getSessionFactoryOptions();
+
+			assertThat(options.isSecondLevelCacheEnabled()).isTrue();
+			assertThat(options.isQueryCacheEnabled()).isTrue();
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package fr.matthieu.chatop.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.matthieu.chatop.H2TestConfiguration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static fr.matthieu.chatop.common.ApiRoutes.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks that logging out of every device rejects the access and refresh tokens issued before,
+ * on the stateful path as well as on the stateless read path.
+ */
+@SpringBootTest(properties = {
+		"auth.stateless-read.enabled=true",
+		// This context lives alongside the shared one, which holds the lock of the default index directory
+		"rentals.text-index.directory=target/test-data/rental-index-logout"
+})
+@AutoConfigureMockMvc
+@Import(H2TestConfiguration.class)
+@ActiveProfiles("test")
+class LogoutEverywhereTest {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	private String email;
+
+	@BeforeEach
+	void setUp() {
+		email = UUID.randomUUID() + "@example.com";
+	}
+
+	@Test
+	void logoutEverywhereRevokesEveryTokenOfTheUser() throws Exception {
+		JsonNode registration = authenticate(REGISTER_URL, Map.of("email", email, "password", "P@ssw0rd", "name", "john_doe"));
+		JsonNode otherDevice = authenticate(LOGIN_URL, Map.of("email", email, "password", "P@ssw0rd"));
+		String authorization = "Bearer " + registration.get("token").asText();
+		String otherAuthorization = "Bearer " + otherDevice.get("token").asText();
+
+		mockMvc.perform(post(LOGOUT_ALL_URL).header(HttpHeaders.AUTHORIZATION, authorization))
+				.andExpect(status().isOk());
+
+		mockMvc.perform(get(ME_URL).header(HttpHeaders.AUTHORIZATION, otherAuthorization))
+				.andExpect(status().isUnauthorized());
+		// Authenticated from the claims alone
+		mockMvc.perform(get(RENTALS_URL).header(HttpHeaders.AUTHORIZATION, otherAuthorization))
+				.andExpect(status().isUnauthorized());
+		mockMvc.perform(post(REFRESH_URL)
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(objectMapper.writeValueAsString(Map.of("refresh_token", otherDevice.get("refresh_token").asText()))))
+				.andExpect(status().isUnauthorized());
+
+		// A new login is issued tokens with the new version
+		JsonNode login = authenticate(LOGIN_URL, Map.of("email", email, "password", "P@ssw0rd"));
+		mockMvc.perform(get(ME_URL).header(HttpHeaders.AUTHORIZATION, "Bearer " + login.get("token").asText()))
+				.andExpect(status().isOk());
+	}
+
+	/**
+	 * Registers or logs in, which complete asynchronously once the password is hashed or checked.
+	 */
+	private JsonNode authenticate(String url, Map<String, String> body) throws Exception {
+		MvcResult started = mockMvc.perform(post(url)
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(objectMapper.writeValueAsString(body)))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		MvcResult result = mockMvc.perform(asyncDispatch(started)).andExpect(status().isOk()).andReturn();
+		return objectMapper.readTree(result.getResponse().getContentAsString());
+	}
+}
@@ -0,0 +1,131 @@
+package fr.matthieu.chatop.controller;
+
+import fr.matthieu.chatop.ChatopApplication;
+import fr.matthieu.chatop.H2TestConfiguration;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the throughput of {@link PictureController} with the resource handler it replaced.
+ * <p>
+ * 		The application is started on Tomcat against H2, with the previous {@code WebConfig} mapping
+ * 		registered under {@code /uploads/rentals/legacy/**}. Both handlers serve the same file over loopback
+ * 		to a shared HTTP client, with and without the connector's sendfile support.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(8)
+@Fork(1)
+public class PictureControllerBenchmark {
+
+	/**
+	 * The size of the picture: below and above the size from which sendfile is used.
+	 */
+	@Param({"16384", "262144"})
+	private int size;
+
+	@Param({"true", "false"})
+	private boolean sendfile;
+
+	private ConfigurableApplicationContext context;
+	private HttpClient client;
+	private HttpRequest pictureRequest;
+	private HttpRequest legacyRequest;
+	private Path picture;
+
+	@Setup(Level.Trial)
+	public void start() throws IOException {
+		context = new SpringApplicationBuilder(ChatopApplication.class, H2TestConfiguration.class, LegacyUploadsConfiguration.class)
+				.profiles("test")
+				.properties("server.port=0", "management.server.port=0", "logging.level.root=warn",
+						"benchmark.sendfile=" + sendfile)
+				.run();
+		Path uploadDir = Path.of(context.getEnvironment().getProperty("file.upload-dir")).toAbsolutePath();
+		Files.createDirectories(uploadDir);
+		byte[] content = new byte[size];
+		new Random(size).nextBytes(content);
+		picture = Files.write(uploadDir.resolve(UUID.randomUUID() + ".jpg"), content);
+
+		int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+		String baseUrl = "http://localhost:" + port + "/" + context.getEnvironment().getProperty("file.upload-relative-path");
+		client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+		pictureRequest = HttpRequest.newBuilder(URI.create(baseUrl + "/" + picture.getFileName())).build();
+		legacyRequest = HttpRequest.newBuilder(URI.create(baseUrl + "/legacy/" + picture.getFileName())).build();
+		checkServed(pictureRequest);
+		checkServed(legacyRequest);
+	}
+
+	@TearDown(Level.Trial)
+	public void stop() throws IOException {
+		context.close();
+		Files.deleteIfExists(picture);
+	}
+
+	@Benchmark
+	public long pictureController() throws IOException, InterruptedException {
+		return client.send(pictureRequest, HttpResponse.BodyHandlers.discarding()).headers().firstValueAsLong("Content-Length").orElseThrow();
+	}
+
+	@Benchmark
+	public long resourceHandler() throws IOException, InterruptedException {
+		return client.send(legacyRequest, HttpResponse.BodyHandlers.discarding()).headers().firstValueAsLong("Content-Length").orElseThrow();
+	}
+
+	private void checkServed(HttpRequest request) throws IOException {
+		try {
+			HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+			if (response.statusCode() != 200 || response.body().length != size) {
+				throw new IllegalStateException(request.uri() + " answered " + response.statusCode());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * The resource handler mapping removed with {@code WebConfig}, and the sendfile switch of the connector.
+	 */
+	static class LegacyUploadsConfiguration implements WebMvcConfigurer {
+
+		@Value("${file.upload-dir}")
+		private String uploadDir;
+
+		@Value("${file.upload-relative-path}")
+		private String uploadRelativePath;
+
+		@Override
+		public void addResourceHandlers(ResourceHandlerRegistry registry) {
+			registry.addResourceHandler("/" + uploadRelativePath + "/legacy/**")
+					.addResourceLocations("file:" + uploadDir + "/", "file:" + uploadRelativePath + "/");
+		}
+
+		@Bean
+		static WebServerFactoryCustomizer<TomcatServletWebServerFactory> sendfileCustomizer(@Value("${benchmark.sendfile}") boolean sendfile) {
+			return factory -> factory.addConnectorCustomizers(connector -> connector.setProperty("useSendfile", String.valueOf(sendfile)));
+		}
+	}
+}
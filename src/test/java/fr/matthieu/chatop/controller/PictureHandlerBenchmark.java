@@ -0,0 +1,139 @@
+package fr.matthieu.chatop.controller;
+
+import fr.matthieu.chatop.cache.PictureFileCache;
+import fr.matthieu.chatop.service.UploadService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.UrlResource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.resource.ResourceHttpRequestHandler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time spent in the JVM by {@link PictureController} and by the resource handler it replaced,
+ * called directly with mock requests, without the servlet container nor the network.
+ * <p>
+ * 		With {@code sendfile}, the request advertises Tomcat's sendfile support: the controller only sets the
+ * 		headers and leaves the body to the connector, while the resource handler still copies it. Without it,
+ * 		both copy the body to the response. The response stream discards the bytes it receives, as the
+ * 		stream of {@link MockHttpServletResponse} writes byte by byte.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PictureHandlerBenchmark {
+
+	private static final String UPLOAD_RELATIVE_PATH = "uploads/rentals";
+
+	@Param({"16384", "262144"})
+	private int size;
+
+	@Param({"true", "false"})
+	private boolean sendfile;
+
+	private Path uploadDir;
+	private Path picture;
+	private String filename;
+	private PictureController pictureController;
+	private PictureFileCache pictureFileCache;
+	private ResourceHttpRequestHandler resourceHandler;
+
+	@Setup
+	public void setUp() throws Exception {
+		uploadDir = Files.createTempDirectory("pictures");
+		byte[] content = new byte[size];
+		new Random(size).nextBytes(content);
+		filename = UUID.randomUUID() + ".jpg";
+		picture = Files.write(uploadDir.resolve(filename), content);
+
+		UploadService uploadService = new UploadService(new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(uploadService, "uploadDir", uploadDir.toString());
+		pictureFileCache = new PictureFileCache(256);
+		pictureController = new PictureController(uploadService, pictureFileCache, new SimpleMeterRegistry());
+
+		// The mapping of the removed WebConfig, probing the upload directory then the relative path
+		resourceHandler = new ResourceHttpRequestHandler();
+		resourceHandler.setLocations(List.of(new UrlResource("file:" + uploadDir + "/"), new UrlResource("file:" + UPLOAD_RELATIVE_PATH + "/")));
+		resourceHandler.setServletContext(new MockServletContext());
+		resourceHandler.afterPropertiesSet();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		pictureFileCache.close();
+		Files.deleteIfExists(picture);
+		Files.deleteIfExists(uploadDir);
+	}
+
+	@Benchmark
+	public MockHttpServletResponse pictureController() throws IOException {
+		MockHttpServletRequest request = request();
+		MockHttpServletResponse response = new DiscardingResponse();
+		pictureController.getPicture(filename, request, response);
+		return response;
+	}
+
+	@Benchmark
+	public MockHttpServletResponse resourceHandler() throws Exception {
+		MockHttpServletRequest request = request();
+		request.setAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE, filename);
+		MockHttpServletResponse response = new DiscardingResponse();
+		resourceHandler.handleRequest(request, response);
+		return response;
+	}
+
+	private MockHttpServletRequest request() {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/" + UPLOAD_RELATIVE_PATH + "/" + filename);
+		if (sendfile) {
+			request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+		}
+		return request;
+	}
+
+	/**
+	 * A response whose body is discarded.
+	 */
+	private static final class DiscardingResponse extends MockHttpServletResponse {
+
+		private final ServletOutputStream outputStream = new ServletOutputStream() {
+			@Override
+			public void write(int b) {
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+			}
+
+			@Override
+			public boolean isReady() {
+				return true;
+			}
+
+			@Override
+			public void setWriteListener(WriteListener writeListener) {
+			}
+		};
+
+		@Override
+		public ServletOutputStream getOutputStream() {
+			return outputStream;
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package fr.matthieu.chatop.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.matthieu.chatop.H2TestConfiguration;
+import fr.matthieu.chatop.index.RentalAutocompleteIndex;
+import fr.matthieu.chatop.index.RentalTextIndex;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.UUID;
+
+import static fr.matthieu.chatop.common.ApiRoutes.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks that a failure of the in-memory views after the commit neither fails the creation of a rental
+ * nor deletes its picture.
+ */
+@SpringBootTest(properties = {
+		// This context lives alongside the shared one, which holds the lock of the default index directory
+		"rentals.text-index.directory=target/test-data/rental-index-creation"
+})
+@AutoConfigureMockMvc
+@Import(H2TestConfiguration.class)
+@ActiveProfiles("test")
+class RentalCreationTest {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@SpyBean
+	private RentalTextIndex rentalTextIndex;
+
+	@SpyBean
+	private RentalAutocompleteIndex rentalAutocompleteIndex;
+
+	@Value("${file.upload-dir}")
+	private String uploadDir;
+
+	private String email;
+	private String authorization;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		email = UUID.randomUUID() + "@example.com";
+		// Registration completes asynchronously, once the password is hashed
+		MvcResult started = mockMvc.perform(post(REGISTER_URL)
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(objectMapper.writeValueAsString(Map.of("email", email, "password", "P@ssw0rd", "name", "john_doe"))))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		MvcResult registration = mockMvc.perform(asyncDispatch(started)).andExpect(status().isOk()).andReturn();
+		authorization = "Bearer " + objectMapper.readTree(registration.getResponse().getContentAsString()).get("token").asText();
+	}
+
+	@Test
+	void indexFailureAfterCommitKeepsTheRentalAndItsPicture() throws Exception {
+		doThrow(new AlreadyClosedException("this IndexWriter is closed")).when(rentalTextIndex).upsert(any());
+
+		mockMvc.perform(multipart(RENTALS_URL)
+						.file(new MockMultipartFile("picture", "picture.png", MediaType.IMAGE_PNG_VALUE, png()))
+						.param("name", "Seaside Apartment")
+						.param("surface", "75")
+						.param("price", "120")
+						.param("description", "A cozy apartment with a sea view")
+						.header(HttpHeaders.AUTHORIZATION, authorization))
+				.andExpect(status().isOk());
+
+		String pictureUrl = jdbcTemplate.queryForObject(
+				"SELECT r.picture FROM rentals r JOIN users u ON u.id = r.owner_id WHERE u.email = ?", String.class, email);
+		assertThat(Path.of(uploadDir).resolve(pictureUrl.substring(pictureUrl.lastIndexOf('/') + 1))).exists();
+		// The views after the failing one are still updated
+		verify(rentalAutocompleteIndex).upsert(any());
+	}
+
+	private static byte[] png() throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		ImageIO.write(new BufferedImage(20, 20, BufferedImage.TYPE_INT_RGB), "png", output);
+		return output.toByteArray();
+	}
+}
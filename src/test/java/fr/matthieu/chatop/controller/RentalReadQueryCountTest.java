@@ -0,0 +1,156 @@
+package fr.matthieu.chatop.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.matthieu.chatop.H2TestConfiguration;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static fr.matthieu.chatop.common.ApiRoutes.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks that each rental read endpoint runs a single SQL statement, without joining the users table.
+ * <p>
+ * 		The statements prepared by Hibernate on the request thread are recorded, so scheduled jobs are ignored.
+ * 		The principal and session of the caller are loaded by a first request, then served from their caches,
+ * 		so only the statements of the endpoint are counted.
+ * </p>
+ */
+@SpringBootTest(properties = {
+		"spring.jpa.properties.hibernate.session_factory.statement_inspector=fr.matthieu.chatop.controller.RentalReadQueryCountTest$Recorder",
+		// This context lives alongside the shared one, which holds the lock of the default index directory
+		"rentals.text-index.directory=target/test-data/rental-index-query-count"
+})
+@AutoConfigureMockMvc
+@Import(H2TestConfiguration.class)
+@ActiveProfiles("test")
+class RentalReadQueryCountTest {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	private String authorization;
+	private long rentalId;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		String email = UUID.randomUUID() + "@example.com";
+		// Registration completes asynchronously, once the password is hashed
+		MvcResult started = mockMvc.perform(post(REGISTER_URL)
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(objectMapper.writeValueAsString(Map.of("email", email, "password", "P@ssw0rd", "name", "john_doe"))))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		MvcResult registration = mockMvc.perform(asyncDispatch(started)).andExpect(status().isOk()).andReturn();
+		authorization = "Bearer " + objectMapper.readTree(registration.getResponse().getContentAsString()).get("token").asText();
+
+		Long ownerId = jdbcTemplate.queryForObject("SELECT id FROM users WHERE email = ?", Long.class, email);
+		for (int i = 0; i < 3; i++) {
+			jdbcTemplate.update("INSERT INTO rentals (name, surface, price, picture, description, owner_id, created_at, version) " +
+					"VALUES (?, 50, 900, 'picture.jpg', 'A rental', ?, CURRENT_TIMESTAMP, 0)", "Rental " + i, ownerId);
+		}
+		rentalId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM rentals WHERE owner_id = ?", Long.class, ownerId);
+
+		mockMvc.perform(get(ME_URL).header(HttpHeaders.AUTHORIZATION, authorization)).andExpect(status().isOk());
+		Recorder.STATEMENTS.clear();
+	}
+
+	@Test
+	void firstPageRunsOneStatement() throws Exception {
+		mockMvc.perform(get(RENTALS_URL).param("limit", "7").header(HttpHeaders.AUTHORIZATION, authorization))
+				.andExpect(status().isOk());
+
+		assertSingleStatementWithoutUsers();
+	}
+
+	@Test
+	void nextPageRunsOneStatement() throws Exception {
+		MvcResult firstPage = mockMvc.perform(get(RENTALS_URL).param("limit", "1").header(HttpHeaders.AUTHORIZATION, authorization))
+				.andExpect(status().isOk())
+				.andReturn();
+		String cursor = objectMapper.readTree(firstPage.getResponse().getContentAsString()).get("next_cursor").asText();
+		Recorder.STATEMENTS.clear();
+
+		mockMvc.perform(get(RENTALS_URL).param("limit", "1").param("cursor", cursor).header(HttpHeaders.AUTHORIZATION, authorization))
+				.andExpect(status().isOk());
+
+		assertSingleStatementWithoutUsers();
+	}
+
+	@Test
+	void rentalRunsOneStatement() throws Exception {
+		MvcResult rental = mockMvc.perform(get(RENTAL_ID_URL, rentalId).header(HttpHeaders.AUTHORIZATION, authorization))
+				.andExpect(status().isOk())
+				.andReturn();
+
+		assertSingleStatementWithoutUsers();
+		Recorder.STATEMENTS.clear();
+
+		mockMvc.perform(get(RENTAL_ID_URL, rentalId)
+						.header(HttpHeaders.AUTHORIZATION, authorization)
+						.header(HttpHeaders.IF_NONE_MATCH, rental.getResponse().getHeader(HttpHeaders.ETAG)))
+				.andExpect(status().isNotModified());
+
+		assertSingleStatementWithoutUsers();
+	}
+
+	@Test
+	void streamRunsOneStatement() throws Exception {
+		mockMvc.perform(get(RENTALS_STREAM_URL).header(HttpHeaders.AUTHORIZATION, authorization))
+				.andExpect(status().isOk());
+
+		assertSingleStatementWithoutUsers();
+	}
+
+	private void assertSingleStatementWithoutUsers() {
+		List<String> statements = Recorder.STATEMENTS.stream()
+				.filter(statement -> statement.thread() == Thread.currentThread())
+				.map(Statement::sql)
+				.toList();
+		assertThat(statements).hasSize(1);
+		assertThat(statements.get(0)).containsIgnoringCase("rentals").doesNotContainIgnoringCase("users");
+	}
+
+	/**
+	 * Records the SQL of every statement prepared by Hibernate, and the thread preparing it.
+	 */
+	public static class Recorder implements StatementInspector {
+
+		static final List<Statement> STATEMENTS = new CopyOnWriteArrayList<>();
+
+		@Override
+		public String inspect(String sql) {
+			STATEMENTS.add(new Statement(Thread.currentThread(), sql));
+			return sql;
+		}
+	}
+
+	private record Statement(Thread thread, String sql) {}
+}
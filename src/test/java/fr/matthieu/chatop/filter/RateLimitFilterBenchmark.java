@@ -0,0 +1,115 @@
+package fr.matthieu.chatop.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.matthieu.chatop.security.AuthenticatedUser;
+import fr.matthieu.chatop.security.RateLimiter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static fr.matthieu.chatop.common.ApiRoutes.RENTALS_URL;
+
+/**
+ * Measures the per-request overhead of {@link RateLimitFilter} and {@link UserRateLimitFilter}.
+ * <p>
+ * 		Requests come from 10,000 authenticated users in turn, each behind its own IP address, under
+ * 		policies that never reject them, so every request looks up its buckets and takes a token from
+ * 		each. The disabled filters are the baseline.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RateLimitFilterBenchmark {
+
+	private static final int USERS = 10_000;
+
+	private final FilterChain chain = (request, response) -> {};
+
+	private RateLimiter rateLimiter;
+	private RateLimitFilter enabledFilter;
+	private RateLimitFilter disabledFilter;
+	private UserRateLimitFilter enabledUserFilter;
+	private UserRateLimitFilter disabledUserFilter;
+	private RateLimiter.Policy policy;
+	private SecurityContext[] contexts;
+	private String[] clientKeys;
+	private MockHttpServletRequest[] requests;
+	private MockHttpServletResponse response;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		rateLimiter = new RateLimiter();
+		// A burst of a million requests refilled at a billion per second: requests are never rejected
+		enabledFilter = new RateLimitFilter(rateLimiter, new ObjectMapper(), 1_000_000, 1e9, 1_000_000, 1e9);
+		ReflectionTestUtils.setField(enabledFilter, "enabled", true);
+		disabledFilter = new RateLimitFilter(rateLimiter, new ObjectMapper(), 1_000_000, 1e9, 1_000_000, 1e9);
+		enabledUserFilter = new UserRateLimitFilter(rateLimiter, new ObjectMapper(), 1_000_000, 1e9);
+		ReflectionTestUtils.setField(enabledUserFilter, "enabled", true);
+		disabledUserFilter = new UserRateLimitFilter(rateLimiter, new ObjectMapper(), 1_000_000, 1e9);
+		policy = new RateLimiter.Policy("api", 1_000_000, 1e9);
+
+		contexts = new SecurityContext[USERS];
+		clientKeys = new String[USERS];
+		requests = new MockHttpServletRequest[USERS];
+		for (int i = 0; i < USERS; i++) {
+			AuthenticatedUser user = new AuthenticatedUser((long) i, "user" + i + "@example.com", "user" + i, 0);
+			contexts[i] = new SecurityContextImpl(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+			clientKeys[i] = "user:" + i;
+			requests[i] = new MockHttpServletRequest("GET", RENTALS_URL);
+			requests[i].setRemoteAddr("10.0." + (i / 256) + "." + (i % 256));
+		}
+		response = new MockHttpServletResponse();
+	}
+
+	@TearDown
+	public void tearDown() {
+		SecurityContextHolder.clearContext();
+	}
+
+	@Benchmark
+	public int disabledFilters() throws ServletException, IOException {
+		return filter(disabledFilter, disabledUserFilter);
+	}
+
+	@Benchmark
+	public int enabledFilters() throws ServletException, IOException {
+		return filter(enabledFilter, enabledUserFilter);
+	}
+
+	/**
+	 * The bucket lookup and token taken by the filter, without building the client key.
+	 */
+	@Benchmark
+	public long tryAcquire() {
+		return rateLimiter.tryAcquire(policy, clientKeys[next = (next + 1) % USERS]);
+	}
+
+	/**
+	 * Runs the next user's request through the IP address filter, then through the user filter
+	 * as the security chain does once the token is validated.
+	 */
+	private int filter(RateLimitFilter ipFilter, UserRateLimitFilter userFilter) throws ServletException, IOException {
+		next = (next + 1) % USERS;
+		MockHttpServletRequest request = requests[next];
+		SecurityContextHolder.clearContext();
+		ipFilter.doFilter(request, response, chain);
+		SecurityContextHolder.setContext(contexts[next]);
+		userFilter.doFilter(request, response, chain);
+		return response.getStatus();
+	}
+}
@@ -0,0 +1,73 @@
+package fr.matthieu.chatop.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.matthieu.chatop.H2TestConfiguration;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import java.util.Map;
+
+import static fr.matthieu.chatop.common.ApiRoutes.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks that requests are limited per IP address before their token is validated.
+ */
+@SpringBootTest(properties = {
+		"rate-limit.enabled=true",
+		"rate-limit.auth.capacity=2",
+		"rate-limit.ip.capacity=3",
+		// This context lives alongside the shared one, which holds the lock of the default index directory
+		"rentals.text-index.directory=target/test-data/rental-index-rate-limit"
+})
+@AutoConfigureMockMvc
+@Import(H2TestConfiguration.class)
+@ActiveProfiles("test")
+class RateLimitFilterTest {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Test
+	void forgedTokensAreCountedAgainstTheIpAddress() throws Exception {
+		for (int i = 0; i < 3; i++) {
+			mockMvc.perform(get(RENTALS_URL).with(remoteAddr("192.0.2.10")).header(HttpHeaders.AUTHORIZATION, "Bearer forged"))
+					.andExpect(status().isUnauthorized());
+		}
+		mockMvc.perform(get(RENTALS_URL).with(remoteAddr("192.0.2.10")).header(HttpHeaders.AUTHORIZATION, "Bearer forged"))
+				.andExpect(status().isTooManyRequests())
+				.andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+	}
+
+	@Test
+	void refreshIsLimitedLikeTheOtherCredentialRoutes() throws Exception {
+		String body = objectMapper.writeValueAsString(Map.of("refresh_token", "unknown"));
+		for (int i = 0; i < 2; i++) {
+			mockMvc.perform(post(REFRESH_URL).with(remoteAddr("192.0.2.20")).contentType(MediaType.APPLICATION_JSON).content(body))
+					.andExpect(status().isUnauthorized());
+		}
+		mockMvc.perform(post(REFRESH_URL).with(remoteAddr("192.0.2.20")).contentType(MediaType.APPLICATION_JSON).content(body))
+				.andExpect(status().isTooManyRequests());
+	}
+
+	private static RequestPostProcessor remoteAddr(String address) {
+		return request -> {
+			request.setRemoteAddr(address);
+			return request;
+		};
+	}
+}
@@ -0,0 +1,89 @@
+package fr.matthieu.chatop.index;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class OverlaidIndexTest {
+
+	private final CountDownLatch mergeStarted = new CountDownLatch(1);
+	private final CountDownLatch mergeReleased = new CountDownLatch(1);
+	private final Timer timer = Timer.builder("test").register(new SimpleMeterRegistry());
+	private OverlaidIndex<Map<Long, String>, Item> index;
+
+	@AfterEach
+	void close() {
+		index.close();
+	}
+
+	@Test
+	void fullOverlayIsMergedIntoTheStructure() {
+		index = new OverlaidIndex<>("test", Map.of(), Item::id, OverlaidIndexTest::merge, 2, timer);
+
+		index.upsert(new Item(1, "a"));
+		index.upsert(new Item(2, "b"));
+
+		await().atMost(Duration.ofSeconds(5)).until(() -> index.state().overlay().isEmpty());
+		assertThat(index.state().structure()).isEqualTo(Map.of(1L, "a", 2L, "b"));
+	}
+
+	@Test
+	void rentalsWrittenDuringAMergeStayInTheOverlay() throws InterruptedException {
+		index = new OverlaidIndex<>("test", Map.of(), Item::id, this::blockingMerge, 2, timer);
+		index.upsert(new Item(1, "a"));
+		index.upsert(new Item(2, "b"));
+		assertThat(mergeStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+		index.upsert(new Item(2, "b2"));
+		index.upsert(new Item(3, "c"));
+		mergeReleased.countDown();
+
+		await().atMost(Duration.ofSeconds(5)).until(() -> !index.state().structure().isEmpty());
+		assertThat(index.state().overlay()).isEqualTo(Map.of(2L, new Item(2, "b2"), 3L, new Item(3, "c")));
+	}
+
+	@Test
+	void mergeStartedBeforeARebuildDoesNotReplaceTheRebuiltStructure() throws InterruptedException {
+		index = new OverlaidIndex<>("test", Map.of(), Item::id, this::blockingMerge, 2, timer);
+		index.upsert(new Item(1, "a"));
+		index.upsert(new Item(2, "b"));
+		assertThat(mergeStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+		index.replace(Map.of(9L, "rebuilt"));
+		mergeReleased.countDown();
+
+		// The stale merge is discarded, then the overlay is merged into the rebuilt structure
+		await().atMost(Duration.ofSeconds(5)).until(() -> index.state().overlay().isEmpty());
+		assertThat(index.state().structure()).isEqualTo(Map.of(9L, "rebuilt", 1L, "a", 2L, "b"));
+	}
+
+	private Map<Long, String> blockingMerge(Map<Long, String> structure, Collection<Item> items) {
+		mergeStarted.countDown();
+		try {
+			mergeReleased.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+		return merge(structure, items);
+	}
+
+	private static Map<Long, String> merge(Map<Long, String> structure, Collection<Item> items) {
+		Map<Long, String> merged = new HashMap<>(structure);
+		items.forEach(item -> merged.put(item.id(), item.value()));
+		return Map.copyOf(merged);
+	}
+
+	private record Item(long id, String value) {}
+}
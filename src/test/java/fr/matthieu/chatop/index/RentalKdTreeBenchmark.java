@@ -0,0 +1,87 @@
+package fr.matthieu.chatop.index;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures top-10 similar rentals from a {@link RentalKdTree} of 300k rentals, against a brute-force scan.
+ * <p>
+ * 		Prices follow a log-normal distribution around 900 euros, surfaces around 45 m², and creation dates
+ * 		are spread over three years. Targets are rentals of the tree, excluded from their own results.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class RentalKdTreeBenchmark {
+
+	static final double RECENCY_SCALE_MILLIS = TimeUnit.DAYS.toMillis(180);
+	private static final int TARGETS = 4096;
+	private static final int LIMIT = 10;
+
+	@Param("300000")
+	private int rentals;
+
+	private RentalKdTree tree;
+	private List<RentalKdTree.Entry> entries;
+	private RentalKdTree.Entry[] targets;
+	private int next;
+
+	@Setup
+	public void build() {
+		Random random = new Random(42);
+		entries = new ArrayList<>(rentals);
+		for (long id = 1; id <= rentals; id++) {
+			entries.add(randomEntry(random, id));
+		}
+		tree = new RentalKdTree(entries, RECENCY_SCALE_MILLIS);
+		targets = new RentalKdTree.Entry[TARGETS];
+		for (int i = 0; i < TARGETS; i++) {
+			targets[i] = entries.get(random.nextInt(rentals));
+		}
+	}
+
+	@Benchmark
+	public List<RentalKdTree.Neighbor> kdTree() {
+		RentalKdTree.Entry target = nextTarget();
+		return tree.nearest(target, LIMIT, id -> id == target.id());
+	}
+
+	/**
+	 * Computes the distance to every rental, keeping the closest in a bounded heap.
+	 */
+	@Benchmark
+	public int bruteForce() {
+		RentalKdTree.Entry target = nextTarget();
+		PriorityQueue<RentalKdTree.Neighbor> closest = new PriorityQueue<>(LIMIT + 1,
+				(a, b) -> Double.compare(b.distance(), a.distance()));
+		for (RentalKdTree.Entry entry : entries) {
+			if (entry.id() != target.id()) {
+				closest.add(new RentalKdTree.Neighbor(entry, tree.distance(target, entry)));
+				if (closest.size() > LIMIT) {
+					closest.poll();
+				}
+			}
+		}
+		return closest.size();
+	}
+
+	private RentalKdTree.Entry nextTarget() {
+		next = (next + 1) & (TARGETS - 1);
+		return targets[next];
+	}
+
+	static RentalKdTree.Entry randomEntry(Random random, long id) {
+		long priceCents = Math.round(Math.exp(Math.log(90_000) + 0.5 * random.nextGaussian()));
+		double surface = Math.exp(Math.log(45) + 0.4 * random.nextGaussian());
+		return new RentalKdTree.Entry(id, priceCents, surface, 1_600_000_000_000L + (long) (random.nextDouble() * TimeUnit.DAYS.toMillis(3 * 365)));
+	}
+}
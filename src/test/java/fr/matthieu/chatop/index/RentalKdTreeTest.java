@@ -0,0 +1,69 @@
+package fr.matthieu.chatop.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RentalKdTreeTest {
+
+	private final Random random = new Random(7);
+
+	@Test
+	void nearestMatchesABruteForceScan() {
+		List<RentalKdTree.Entry> entries = randomEntries(10_000);
+		RentalKdTree tree = new RentalKdTree(entries, RentalKdTreeBenchmark.RECENCY_SCALE_MILLIS);
+
+		assertSameNeighbors(tree, entries);
+	}
+
+	@Test
+	void updatedTreeMatchesABruteForceScan() {
+		List<RentalKdTree.Entry> entries = randomEntries(5000);
+		RentalKdTree tree = new RentalKdTree(entries, RentalKdTreeBenchmark.RECENCY_SCALE_MILLIS);
+		List<RentalKdTree.Entry> updates = new ArrayList<>();
+		for (long id = 4001; id <= 6000; id++) {
+			updates.add(RentalKdTreeBenchmark.randomEntry(random, id));
+		}
+		List<RentalKdTree.Entry> merged = new ArrayList<>(entries.subList(0, 4000));
+		merged.addAll(updates);
+
+		RentalKdTree updated = tree.with(updates);
+
+		assertThat(updated.size()).isEqualTo(6000);
+		assertThat(updated.get(5000)).isEqualTo(updates.get(999));
+		assertSameNeighbors(updated, merged);
+	}
+
+	private void assertSameNeighbors(RentalKdTree tree, List<RentalKdTree.Entry> entries) {
+		for (int i = 0; i < 200; i++) {
+			RentalKdTree.Entry target = entries.get(random.nextInt(entries.size()));
+			int limit = 1 + random.nextInt(20);
+
+			List<Long> expected = entries.stream()
+					.filter(entry -> entry.id() != target.id())
+					.map(entry -> new RentalKdTree.Neighbor(entry, tree.distance(target, entry)))
+					.sorted(Comparator.comparingDouble(RentalKdTree.Neighbor::distance)
+							.thenComparingLong(neighbor -> neighbor.entry().id()))
+					.limit(limit)
+					.map(neighbor -> neighbor.entry().id())
+					.toList();
+
+			assertThat(tree.nearest(target, limit, id -> id == target.id()))
+					.extracting(neighbor -> neighbor.entry().id())
+					.containsExactlyElementsOf(expected);
+		}
+	}
+
+	private List<RentalKdTree.Entry> randomEntries(int count) {
+		List<RentalKdTree.Entry> entries = new ArrayList<>(count);
+		for (long id = 1; id <= count; id++) {
+			entries.add(RentalKdTreeBenchmark.randomEntry(random, id));
+		}
+		return entries;
+	}
+}
@@ -0,0 +1,109 @@
+package fr.matthieu.chatop.index;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures name suggestions from a {@link RentalNameTrie} of 1M rentals, against a scan of the normalised names.
+ * <p>
+ * 		Names are made of three or four words drawn from a small vocabulary, followed by a number, so that short
+ * 		prefixes match many rentals. Prefixes are the first 1 to 8 characters of existing names.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class RentalNameTrieBenchmark {
+
+	static final String[] WORDS = {
+			"appartement", "maison", "studio", "loft", "villa", "chalet", "duplex", "vue", "mer", "montagne",
+			"centre", "ville", "calme", "lumineux", "jardin", "terrasse", "piscine", "proche", "gare", "plage",
+			"paris", "lyon", "marseille", "nice", "nantes", "lille", "bordeaux", "toulouse", "brest", "annecy"
+	};
+	private static final int PREFIXES = 4096;
+	private static final int LIMIT = 10;
+
+	@Param("1000000")
+	private int rentals;
+
+	private RentalNameTrie trie;
+	private String[] keys;
+	private long[] createdAt;
+	private String[] prefixes;
+	private int next;
+
+	@Setup
+	public void build() {
+		Random random = new Random(42);
+		List<RentalNameTrie.Entry> entries = new ArrayList<>(rentals);
+		for (long id = 1; id <= rentals; id++) {
+			entries.add(randomEntry(random, id));
+		}
+		trie = RentalNameTrie.build(entries);
+
+		keys = new String[rentals];
+		createdAt = new long[rentals];
+		for (int i = 0; i < rentals; i++) {
+			keys[i] = RentalNameTrie.normalizeName(entries.get(i).name());
+			createdAt[i] = entries.get(i).createdAtMillis();
+		}
+		prefixes = new String[PREFIXES];
+		for (int i = 0; i < PREFIXES; i++) {
+			String key = keys[random.nextInt(rentals)];
+			prefixes[i] = RentalNameTrie.normalizePrefix(key.substring(0, 1 + random.nextInt(Math.min(8, key.length()))));
+		}
+	}
+
+	@Benchmark
+	public List<RentalNameTrie.Entry> trieMostRecent() {
+		return trie.lookup(nextPrefix(), LIMIT, RentalNameTrie.Ranking.RECENT, id -> false);
+	}
+
+	@Benchmark
+	public List<RentalNameTrie.Entry> trieCheapest() {
+		return trie.lookup(nextPrefix(), LIMIT, RentalNameTrie.Ranking.CHEAPEST, id -> false);
+	}
+
+	/**
+	 * Scans every normalised name for the prefix, keeping the most recent matches in a bounded heap.
+	 */
+	@Benchmark
+	public int scanMostRecent() {
+		String prefix = nextPrefix();
+		PriorityQueue<Integer> best = new PriorityQueue<>(LIMIT + 1, (a, b) -> Long.compare(createdAt[a], createdAt[b]));
+		for (int row = 0; row < keys.length; row++) {
+			if (keys[row].startsWith(prefix)) {
+				best.add(row);
+				if (best.size() > LIMIT) {
+					best.poll();
+				}
+			}
+		}
+		return best.size();
+	}
+
+	private String nextPrefix() {
+		next = (next + 1) & (PREFIXES - 1);
+		return prefixes[next];
+	}
+
+	static RentalNameTrie.Entry randomEntry(Random random, long id) {
+		StringBuilder name = new StringBuilder();
+		int words = 3 + random.nextInt(2);
+		for (int i = 0; i < words; i++) {
+			String word = WORDS[random.nextInt(WORDS.length)];
+			name.append(i == 0 ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word).append(' ');
+		}
+		name.append(random.nextInt(1000));
+		return new RentalNameTrie.Entry(id, name.toString(), 1_600_000_000_000L + random.nextInt(1_000_000_000),
+				10_000 + random.nextInt(490_000));
+	}
+}
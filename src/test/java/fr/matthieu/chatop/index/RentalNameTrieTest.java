@@ -0,0 +1,81 @@
+package fr.matthieu.chatop.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.LongPredicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RentalNameTrieTest {
+
+	private final Random random = new Random(7);
+
+	@Test
+	void lookupMatchesABruteForceScan() {
+		// Enough rentals for short prefixes to use the stored top entries
+		Map<Long, RentalNameTrie.Entry> entries = new LinkedHashMap<>();
+		for (long id = 1; id <= 5000; id++) {
+			entries.put(id, RentalNameTrieBenchmark.randomEntry(random, id));
+		}
+		RentalNameTrie trie = RentalNameTrie.build(entries.values());
+
+		assertSameLookups(trie, entries);
+	}
+
+	@Test
+	void updatedTrieMatchesABruteForceScan() {
+		Map<Long, RentalNameTrie.Entry> entries = new LinkedHashMap<>();
+		for (long id = 1; id <= 3000; id++) {
+			entries.put(id, RentalNameTrieBenchmark.randomEntry(random, id));
+		}
+		RentalNameTrie trie = RentalNameTrie.build(entries.values());
+		List<RentalNameTrie.Entry> updates = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			RentalNameTrie.Entry update = RentalNameTrieBenchmark.randomEntry(random, 1 + random.nextInt(4000));
+			entries.put(update.id(), update);
+			updates.removeIf(entry -> entry.id() == update.id());
+			updates.add(update);
+		}
+
+		RentalNameTrie updated = trie.with(updates);
+
+		assertThat(updated.size()).isEqualTo(entries.size());
+		assertSameLookups(updated, entries);
+	}
+
+	@Test
+	void prefixIsNormalisedLikeNames() {
+		RentalNameTrie trie = RentalNameTrie.build(List.of(new RentalNameTrie.Entry(1, "Château  Étoilé", 0, 100)));
+
+		assertThat(trie.lookup(RentalNameTrie.normalizePrefix("CHATEAU E"), 5, RentalNameTrie.Ranking.RECENT, id -> false))
+				.extracting(RentalNameTrie.Entry::id).containsExactly(1L);
+		assertThat(trie.lookup(RentalNameTrie.normalizePrefix("chateaux"), 5, RentalNameTrie.Ranking.RECENT, id -> false))
+				.isEmpty();
+	}
+
+	private void assertSameLookups(RentalNameTrie trie, Map<Long, RentalNameTrie.Entry> entries) {
+		for (int i = 0; i < 300; i++) {
+			String name = RentalNameTrie.normalizeName(RentalNameTrieBenchmark.randomEntry(random, 0).name());
+			String prefix = RentalNameTrie.normalizePrefix(name.substring(0, 1 + random.nextInt(Math.min(12, name.length()))));
+			int limit = 1 + random.nextInt(RentalNameTrie.TOP_K);
+			RentalNameTrie.Ranking ranking = random.nextBoolean() ? RentalNameTrie.Ranking.RECENT : RentalNameTrie.Ranking.CHEAPEST;
+			LongPredicate excluded = random.nextBoolean() ? id -> false : id -> id % 3 == 0;
+
+			List<RentalNameTrie.Entry> expected = entries.values().stream()
+					.filter(entry -> RentalNameTrie.normalizeName(entry.name()).startsWith(prefix))
+					.filter(entry -> !excluded.test(entry.id()))
+					.sorted(RentalNameTrie.Entry.order(ranking))
+					.limit(limit)
+					.toList();
+
+			assertThat(trie.lookup(prefix, limit, ranking, excluded))
+					.as("prefix '%s', %s, limit %d", prefix, ranking, limit)
+					.containsExactlyElementsOf(expected);
+		}
+	}
+}
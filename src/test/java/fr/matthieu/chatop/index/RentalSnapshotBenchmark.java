@@ -0,0 +1,92 @@
+package fr.matthieu.chatop.index;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures facet queries and copy-on-write updates of a {@link RentalSnapshot} of 1M rentals.
+ * <p>
+ * 		Prices are spread between 100 and 5,000 euros, surfaces between 10 and 300 m², over 100k owners.
+ * 		Run with {@code -prof gc} to see the allocation per update.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class RentalSnapshotBenchmark {
+
+	private static final long MAX_PRICE_CENTS = 500_000;
+
+	@Param("1000000")
+	private int rentals;
+
+	private RentalSnapshot snapshot;
+	private RentalSnapshot.Query all;
+	private RentalSnapshot.Query priceRange;
+	private RentalSnapshot.Query narrowRanges;
+	private RentalSnapshot.Query owner;
+	private Random random;
+
+	@Setup
+	public void build() {
+		random = new Random(42);
+		RentalSnapshot.Builder builder = new RentalSnapshot.Builder();
+		for (long id = 1; id <= rentals; id++) {
+			builder.add(randomRow(id));
+		}
+		snapshot = builder.build();
+		all = new RentalSnapshot.Query(Long.MIN_VALUE, Long.MAX_VALUE, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY,
+				0, 20, 10, false, false);
+		priceRange = new RentalSnapshot.Query(80_000, 120_000, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY,
+				0, 20, 10, false, false);
+		narrowRanges = new RentalSnapshot.Query(80_000, 120_000, 40, 60, 0, 20, 10, true, true);
+		owner = new RentalSnapshot.Query(Long.MIN_VALUE, Long.MAX_VALUE, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY,
+				1234, 20, 10, false, false);
+	}
+
+	@Benchmark
+	public RentalSnapshot.FacetResult facetsWithoutFilter() {
+		return snapshot.facets(all);
+	}
+
+	@Benchmark
+	public RentalSnapshot.FacetResult facetsByPrice() {
+		return snapshot.facets(priceRange);
+	}
+
+	@Benchmark
+	public RentalSnapshot.FacetResult facetsByPriceAndSurface() {
+		return snapshot.facets(narrowRanges);
+	}
+
+	@Benchmark
+	public RentalSnapshot.FacetResult facetsByOwner() {
+		return snapshot.facets(owner);
+	}
+
+	/**
+	 * Replaces an existing rental, as {@code UpdateRental} does.
+	 */
+	@Benchmark
+	public RentalSnapshot update() {
+		return snapshot.with(randomRow(1 + random.nextInt(rentals)));
+	}
+
+	/**
+	 * Appends a new rental, as {@code createRental} does.
+	 */
+	@Benchmark
+	public RentalSnapshot insert() {
+		return snapshot.with(randomRow(rentals + 1));
+	}
+
+	private RentalSnapshot.Row randomRow(long id) {
+		return new RentalSnapshot.Row(id, 10_000 + random.nextInt((int) MAX_PRICE_CENTS - 10_000),
+				10 + random.nextDouble() * 290, 1 + random.nextInt(100_000));
+	}
+}
@@ -0,0 +1,121 @@
+package fr.matthieu.chatop.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RentalSnapshotTest {
+
+	private final Random random = new Random(7);
+
+	@Test
+	void facetsMatchABruteForceScan() {
+		TreeMap<Long, RentalSnapshot.Row> rows = new TreeMap<>();
+		RentalSnapshot.Builder builder = new RentalSnapshot.Builder();
+		for (long id = 1; id <= 20_000; id += 2) {
+			RentalSnapshot.Row row = randomRow(id);
+			rows.put(id, row);
+			builder.add(row);
+		}
+		RentalSnapshot snapshot = builder.build();
+
+		for (int i = 0; i < 200; i++) {
+			assertSameFacets(snapshot, rows, randomQuery());
+		}
+	}
+
+	@Test
+	void writesKeepEarlierSnapshotsAndMatchABruteForceScan() {
+		TreeMap<Long, RentalSnapshot.Row> rows = new TreeMap<>();
+		RentalSnapshot snapshot = RentalSnapshot.EMPTY;
+		RentalSnapshot first = null;
+		for (int i = 0; i < 30_000; i++) {
+			// Inserts at both ends and in the middle, and replaces existing rentals
+			RentalSnapshot.Row row = randomRow(1 + random.nextInt(40_000));
+			rows.put(row.id(), row);
+			snapshot = snapshot.with(row);
+			if (i == 100) {
+				first = snapshot;
+			}
+		}
+
+		assertThat(snapshot.size()).isEqualTo(rows.size());
+		assertThat(first.size()).isEqualTo(101);
+		for (int i = 0; i < 200; i++) {
+			assertSameFacets(snapshot, rows, randomQuery());
+		}
+	}
+
+	@Test
+	void emptySnapshotHasNoFacets() {
+		RentalSnapshot.FacetResult result = RentalSnapshot.EMPTY.facets(randomQuery());
+
+		assertThat(result.count()).isZero();
+		assertThat(result.topIds()).isEmpty();
+	}
+
+	private void assertSameFacets(RentalSnapshot snapshot, TreeMap<Long, RentalSnapshot.Row> rows, RentalSnapshot.Query query) {
+		RentalSnapshot.FacetResult actual = snapshot.facets(query);
+
+		long minPrice = rows.values().stream().mapToLong(RentalSnapshot.Row::priceCents).min().orElse(0);
+		long maxPrice = rows.values().stream().mapToLong(RentalSnapshot.Row::priceCents).max().orElse(0);
+		double minSurface = rows.values().stream().mapToDouble(RentalSnapshot.Row::surface).min().orElse(0);
+		double maxSurface = rows.values().stream().mapToDouble(RentalSnapshot.Row::surface).max().orElse(0);
+		long priceWidth = Math.max(1, (maxPrice - minPrice + query.buckets()) / query.buckets());
+		double surfaceWidth = maxSurface > minSurface ? (maxSurface - minSurface) / query.buckets() : 1;
+		long[] priceCounts = new long[query.buckets()];
+		long[] surfaceCounts = new long[query.buckets()];
+		List<RentalSnapshot.Row> owned = rows.values().stream()
+				.filter(row -> query.ownerId() == 0 || row.ownerId() == query.ownerId())
+				.toList();
+		for (RentalSnapshot.Row row : owned) {
+			boolean priceMatches = row.priceCents() >= query.minPriceCents() && row.priceCents() <= query.maxPriceCents();
+			boolean surfaceMatches = row.surface() >= query.minSurface() && row.surface() <= query.maxSurface();
+			if (surfaceMatches) {
+				priceCounts[(int) Math.min(query.buckets() - 1, (row.priceCents() - minPrice) / priceWidth)]++;
+			}
+			if (priceMatches) {
+				surfaceCounts[(int) Math.min(query.buckets() - 1, (row.surface() - minSurface) / surfaceWidth)]++;
+			}
+		}
+		Comparator<RentalSnapshot.Row> order = query.sortBySurface()
+				? Comparator.comparingDouble(RentalSnapshot.Row::surface)
+				: Comparator.comparingLong(RentalSnapshot.Row::priceCents);
+		if (query.descending()) {
+			order = order.reversed();
+		}
+		List<RentalSnapshot.Row> matching = owned.stream()
+				.filter(row -> row.priceCents() >= query.minPriceCents() && row.priceCents() <= query.maxPriceCents())
+				.filter(row -> row.surface() >= query.minSurface() && row.surface() <= query.maxSurface())
+				.sorted(order.thenComparingLong(RentalSnapshot.Row::id))
+				.toList();
+
+		assertThat(actual.count()).isEqualTo(matching.size());
+		assertThat(actual.priceMinCents()).isEqualTo(minPrice);
+		assertThat(actual.priceWidthCents()).isEqualTo(priceWidth);
+		assertThat(actual.priceCounts()).containsExactly(priceCounts);
+		assertThat(actual.surfaceCounts()).containsExactly(surfaceCounts);
+		assertThat(actual.topIds()).containsExactly(matching.stream().limit(query.top()).mapToLong(RentalSnapshot.Row::id).toArray());
+		assertThat(actual.topPriceCents()).containsExactly(matching.stream().limit(query.top()).mapToLong(RentalSnapshot.Row::priceCents).toArray());
+	}
+
+	private RentalSnapshot.Row randomRow(long id) {
+		// Few distinct values, so that ties and bucket boundaries are exercised
+		return new RentalSnapshot.Row(id, 10_000 + 500L * random.nextInt(100), 10 + random.nextInt(60) * 2.5, 1 + random.nextInt(50));
+	}
+
+	private RentalSnapshot.Query randomQuery() {
+		long minPrice = random.nextBoolean() ? Long.MIN_VALUE : 10_000 + 500L * random.nextInt(100);
+		long maxPrice = random.nextBoolean() ? Long.MAX_VALUE : minPrice + 500L * random.nextInt(100);
+		double minSurface = random.nextBoolean() ? Double.NEGATIVE_INFINITY : 10 + random.nextInt(60) * 2.5;
+		double maxSurface = random.nextBoolean() ? Double.POSITIVE_INFINITY : minSurface + random.nextInt(60) * 2.5;
+		return new RentalSnapshot.Query(minPrice, maxPrice, minSurface, maxSurface,
+				random.nextInt(4) == 0 ? 1 + random.nextInt(50) : 0,
+				1 + random.nextInt(30), random.nextInt(25), random.nextBoolean(), random.nextBoolean());
+	}
+}
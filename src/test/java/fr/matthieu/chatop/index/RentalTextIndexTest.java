@@ -0,0 +1,125 @@
+package fr.matthieu.chatop.index;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RentalTextIndexTest {
+
+	private static final LocalDateTime CREATED_AT = LocalDateTime.of(2024, 5, 1, 10, 0);
+
+	@TempDir
+	Path directory;
+
+	private RentalTextIndex index;
+
+	@BeforeEach
+	void open() throws IOException {
+		index = new RentalTextIndex(directory.resolve("index").toString(), new SimpleMeterRegistry());
+	}
+
+	@AfterEach
+	void close() throws IOException {
+		index.close();
+	}
+
+	@Test
+	void searchesSeeTheLiveIndexWhileRebuilding() {
+		index.upsert(entry(1, "Seaside cottage"));
+
+		index.beginRebuild();
+		long count = index.completeRebuild(Stream.of(entry(1, "Seaside cottage"), entry(2, "Mountain chalet"))
+				.peek(entry -> assertThat(ids("cottage")).containsExactly(1L)));
+
+		assertThat(count).isEqualTo(2);
+		assertThat(ids("chalet")).containsExactly(2L);
+	}
+
+	@Test
+	void rentalsIndexedDuringARebuildAreNotOverwrittenByOlderRows() {
+		index.upsert(entry(1, "Seaside cottage"));
+
+		index.beginRebuild();
+		index.completeRebuild(Stream.of(entry(1, "Seaside cottage"), entry(2, "Mountain chalet"))
+				.peek(entry -> {
+					if (entry.id() == 1) {
+						// Committed after the rebuild read the database
+						index.upsert(entry(2, "Lakeside loft"));
+						index.upsert(entry(3, "City studio"));
+					}
+				}));
+
+		assertThat(ids("chalet")).isEmpty();
+		assertThat(ids("loft")).containsExactly(2L);
+		assertThat(ids("studio")).containsExactly(3L);
+		assertThat(index.numDocs()).isEqualTo(3);
+	}
+
+	@Test
+	void matchesComparesTheCountAndTheLatestCreationDate() {
+		index.upsert(entry(1, "Seaside cottage"));
+		index.upsert(new RentalTextIndex.Entry(2, "Mountain chalet", "Quiet", BigDecimal.TEN, 40, 1, CREATED_AT.plusDays(1)));
+
+		assertThat(index.matches(2, CREATED_AT.plusDays(1))).isTrue();
+		// Same count, but the database was recreated and its rentals are newer
+		assertThat(index.matches(2, CREATED_AT.plusDays(2))).isFalse();
+		assertThat(index.matches(3, CREATED_AT.plusDays(1))).isFalse();
+	}
+
+	@Test
+	void indexReopenedAfterACleanCloseKeepsItsChangesAndMatches() throws IOException {
+		index.upsert(entry(1, "Seaside cottage"));
+		index.close();
+
+		index = new RentalTextIndex(directory.resolve("index").toString(), new SimpleMeterRegistry());
+
+		assertThat(ids("cottage")).containsExactly(1L);
+		assertThat(index.matches(1, CREATED_AT)).isTrue();
+	}
+
+	@Test
+	void indexNotClosedCleanlyDoesNotMatchUntilRebuilt() throws IOException {
+		// A commit without the clean close marker, as left by a crash after a scheduled commit
+		Path crashed = directory.resolve("crashed");
+		try (FSDirectory crashedDirectory = FSDirectory.open(crashed);
+			 IndexWriter writer = new IndexWriter(crashedDirectory, new IndexWriterConfig(new StandardAnalyzer()))) {
+			writer.commit();
+		}
+		RentalTextIndex reopened = new RentalTextIndex(crashed.toString(), new SimpleMeterRegistry());
+		try {
+			assertThat(reopened.matches(0, null)).isFalse();
+
+			reopened.beginRebuild();
+			reopened.completeRebuild(Stream.empty());
+
+			assertThat(reopened.matches(0, null)).isTrue();
+		} finally {
+			reopened.close();
+		}
+	}
+
+	private List<Long> ids(String text) {
+		return index.search(new RentalTextIndex.TextQuery(text, null, null, null, null, null), 0, 10).hits().stream()
+				.map(RentalTextIndex.Hit::id)
+				.toList();
+	}
+
+	private static RentalTextIndex.Entry entry(long id, String name) {
+		return new RentalTextIndex.Entry(id, name, "A rental", BigDecimal.valueOf(100), 30, 1, CREATED_AT);
+	}
+}
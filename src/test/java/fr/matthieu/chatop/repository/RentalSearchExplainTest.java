@@ -0,0 +1,138 @@
+package fr.matthieu.chatop.repository;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that the statements built by {@link RentalSearchRepositoryImpl} are served by the composite indexes
+ * of schema-h2.sql, from the plan H2 gives for them on a seeded table.
+ * <p>
+ * 		Criteria values are inlined as literals and the generated SQL is recorded, so the exact statement is explained.
+ * </p>
+ */
+@DataJpaTest(properties = {
+		"spring.jpa.properties.hibernate.criteria.value_handling_mode=inline",
+		"spring.jpa.properties.hibernate.session_factory.statement_inspector=fr.matthieu.chatop.repository.RentalSearchExplainTest$Recorder"
+})
+@ActiveProfiles("test")
+class RentalSearchExplainTest {
+
+	private static final int RENTALS = 5000;
+	private static final int OWNERS = 50;
+
+	@Autowired
+	private RentalRepository rentalRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@BeforeEach
+	void seed() {
+		Recorder.STATEMENTS.clear();
+		// ANALYZE commits, so the rows are kept from one test to the next
+		if (jdbcTemplate.queryForObject("SELECT COUNT(*) FROM rentals", Integer.class) > 0) {
+			return;
+		}
+		List<Object[]> owners = new ArrayList<>();
+		for (int i = 0; i < OWNERS; i++) {
+			owners.add(new Object[]{"owner" + i + "@example.com", "owner" + i, "password", 0});
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO users (email, name, password, token_version, created_at) VALUES (?, ?, ?, ?, CURRENT_TIMESTAMP)", owners);
+		List<Long> ownerIds = jdbcTemplate.queryForList("SELECT id FROM users", Long.class);
+
+		Random random = new Random(42);
+		LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+		List<Object[]> rentals = new ArrayList<>();
+		for (int i = 0; i < RENTALS; i++) {
+			rentals.add(new Object[]{"Rental " + i, 10 + random.nextInt(190), BigDecimal.valueOf(200 + random.nextInt(2800)),
+					"picture.jpg", "A rental", ownerIds.get(random.nextInt(OWNERS)), Timestamp.valueOf(start.plusMinutes(i))});
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO rentals (name, surface, price, picture, description, owner_id, created_at, version) " +
+				"VALUES (?, ?, ?, ?, ?, ?, ?, 0)", rentals);
+		jdbcTemplate.execute("ANALYZE");
+	}
+
+	@Test
+	void priceRangeSortedByPriceUsesThePriceIndex() {
+		String plan = explain(new RentalSearchCriteria(new BigDecimal("500"), new BigDecimal("600"), null, null, null,
+				RentalSort.PRICE, false, null, null));
+
+		assertThat(plan).contains("IDX_RENTALS_PRICE_ID");
+	}
+
+	@Test
+	void nextPriceSortedPageUsesThePriceIndex() {
+		String plan = explain(new RentalSearchCriteria(null, null, null, null, null,
+				RentalSort.PRICE, true, new BigDecimal("400"), 1200L));
+
+		assertThat(plan).contains("IDX_RENTALS_PRICE_ID");
+	}
+
+	@Test
+	void surfaceRangeSortedBySurfaceUsesTheSurfaceIndex() {
+		String plan = explain(new RentalSearchCriteria(null, null, 50.0, 60.0, null,
+				RentalSort.SURFACE, false, null, null));
+
+		assertThat(plan).contains("IDX_RENTALS_SURFACE_ID");
+	}
+
+	@Test
+	void nextPageSortedByCreationDateUsesTheCreationDateIndex() {
+		String plan = explain(new RentalSearchCriteria(null, null, null, null, null,
+				RentalSort.CREATED_AT, true, LocalDateTime.of(2024, 1, 2, 0, 0), 1440L));
+
+		assertThat(plan).contains("IDX_RENTALS_CREATED_AT_ID");
+	}
+
+	/**
+	 * H2 chooses its index without weighing the ORDER BY, and settles for the foreign key index
+	 * of the same leading column, so either index on {@code owner_id} is accepted.
+	 */
+	@Test
+	void ownerSortedByCreationDateUsesAnOwnerIndex() {
+		Long ownerId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM users", Long.class);
+
+		String plan = explain(new RentalSearchCriteria(null, null, null, null, ownerId,
+				RentalSort.CREATED_AT, true, null, null));
+
+		assertThat(plan).doesNotContain("tableScan").containsPattern("/\\* PUBLIC\\.\\w+: OWNER_ID = ");
+	}
+
+	/**
+	 * Runs the search, then explains the statement it sent.
+	 */
+	private String explain(RentalSearchCriteria criteria) {
+		rentalRepository.search(criteria, 20);
+		String sql = Recorder.STATEMENTS.get(Recorder.STATEMENTS.size() - 1);
+		// Only the page size is still a parameter
+		return jdbcTemplate.queryForObject("EXPLAIN " + sql.replace("?", "20"), String.class);
+	}
+
+	/**
+	 * Records the SQL statements sent by Hibernate.
+	 */
+	public static class Recorder implements StatementInspector {
+
+		static final List<String> STATEMENTS = new ArrayList<>();
+
+		@Override
+		public String inspect(String sql) {
+			STATEMENTS.add(sql);
+			return sql;
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package fr.matthieu.chatop.security;
+
+import fr.matthieu.chatop.model.SessionEntity;
+import fr.matthieu.chatop.repository.SessionRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class SessionRegistryTest {
+
+	private final SessionRepository sessionRepository = mock(SessionRepository.class);
+	private final SessionRegistry sessionRegistry = new SessionRegistry(sessionRepository, 14, 30);
+
+	@Test
+	void revokedSessionIsInactive() {
+		String sessionId = sessionRegistry.open(1L);
+
+		sessionRegistry.revoke(sessionId);
+
+		assertThat(sessionRegistry.isActive(sessionId, 1L)).isFalse();
+		verify(sessionRepository).revoke(sessionId);
+	}
+
+	@Test
+	void sessionLoadedBeforeARevokeIsNotIndexedAgain() {
+		SessionEntity row = new SessionEntity("session", 1L, LocalDateTime.now().plusDays(1));
+		// The row is read, then the session is revoked before the request indexes it
+		when(sessionRepository.findById("session")).thenAnswer(invocation -> {
+			sessionRegistry.revoke("session");
+			return Optional.of(row);
+		});
+
+		assertThat(sessionRegistry.isActive("session", 1L)).isFalse();
+		assertThat(sessionRegistry.isActive("session", 1L)).isFalse();
+		verify(sessionRepository, times(1)).findById("session");
+	}
+
+	@Test
+	void sessionUnknownToTheIndexIsLoadedOnce() {
+		when(sessionRepository.findById("session"))
+				.thenReturn(Optional.of(new SessionEntity("session", 1L, LocalDateTime.now().plusDays(1))));
+
+		assertThat(sessionRegistry.isActive("session", 1L)).isTrue();
+		assertThat(sessionRegistry.isActive("session", 2L)).isFalse();
+		verify(sessionRepository, times(1)).findById("session");
+	}
+
+	@Test
+	void activeSessionRevokedOnAnotherInstanceIsSeenOnRecheck() {
+		// Every use of an indexed session reads its row again
+		SessionRegistry rechecking = new SessionRegistry(sessionRepository, 14, 0);
+		SessionEntity row = new SessionEntity("session", 1L, LocalDateTime.now().plusDays(1));
+		when(sessionRepository.findById("session")).thenReturn(Optional.of(row));
+		assertThat(rechecking.isActive("session", 1L)).isTrue();
+
+		row.setRevoked(true);
+
+		assertThat(rechecking.isActive("session", 1L)).isFalse();
+		assertThat(rechecking.isActive("session", 1L)).isFalse();
+		verify(sessionRepository, times(2)).findById("session");
+	}
+}
@@ -0,0 +1,35 @@
+package fr.matthieu.chatop.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VerifiedTokenCacheTest {
+
+	private final VerifiedTokenCache cache = new VerifiedTokenCache(100);
+
+	@Test
+	void tokenIsReturnedUntilItExpires() throws InterruptedException {
+		VerifiedToken verifiedToken = verifiedToken(new Date(System.currentTimeMillis() + 200));
+		cache.put("token", verifiedToken);
+
+		assertThat(cache.get("token")).isEqualTo(verifiedToken);
+		Thread.sleep(300);
+		assertThat(cache.get("token")).isNull();
+	}
+
+	@Test
+	void tokenWithoutExpirationIsKept() {
+		VerifiedToken verifiedToken = verifiedToken(null);
+		cache.put("token", verifiedToken);
+
+		assertThat(cache.get("token")).isEqualTo(verifiedToken);
+		assertThat(cache.get("other")).isNull();
+	}
+
+	private static VerifiedToken verifiedToken(Date expiration) {
+		return new VerifiedToken("user@test.com", 1L, 0, "session", expiration, "User");
+	}
+}
@@ -0,0 +1,88 @@
+package fr.matthieu.chatop.service;
+
+import fr.matthieu.chatop.cache.RentalListCache;
+import fr.matthieu.chatop.repository.RentalRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+class PictureVariantServiceTest {
+
+	private static final String PICTURE_URL = "http://localhost/uploads/rentals/tall.png";
+
+	private final RentalRepository rentalRepository = mock(RentalRepository.class);
+	private final UploadService uploadService = mock(UploadService.class);
+	private PictureVariantService service;
+
+	@TempDir
+	Path directory;
+
+	@AfterEach
+	void tearDown() {
+		if (service != null) {
+			service.destroy();
+		}
+	}
+
+	@Test
+	void subsamplingFollowsTheWidthOfWidePictures() {
+		assertThat(PictureVariantService.subsampling(6000, 4000, 2560)).isEqualTo(2);
+		assertThat(PictureVariantService.subsampling(12000, 3000, 2560)).isEqualTo(4);
+		assertThat(PictureVariantService.subsampling(800, 600, 2560)).isEqualTo(1);
+	}
+
+	@Test
+	void subsamplingFollowsTheAreaOfTallPictures() {
+		// Narrower than the span: the width alone would decode it at full size
+		int subsampling = PictureVariantService.subsampling(2500, 60000, 2560);
+
+		assertThat(subsampling).isEqualTo(5);
+		assertThat((long) (2500 / subsampling) * (60000 / subsampling)).isLessThanOrEqualTo(2560L * 2560);
+	}
+
+	@Test
+	void pictureAboveThePixelLimitIsRecordedAsItsOwnCopies() throws IOException {
+		Path picture = directory.resolve("tall.png");
+		ImageIO.write(new BufferedImage(50, 3000, BufferedImage.TYPE_INT_RGB), "png", picture.toFile());
+		when(uploadService.resolvePictureUrl(PICTURE_URL)).thenReturn(picture);
+		service = service(100_000);
+
+		service.submit(1L, PICTURE_URL);
+
+		verify(rentalRepository, timeout(5000)).updatePictureVariants(1L, PICTURE_URL, PICTURE_URL, PICTURE_URL, PICTURE_URL, null);
+		verify(uploadService, never()).stageDerivedPicture(anyString(), anyString());
+	}
+
+	@Test
+	void pictureBelowThePixelLimitGetsItsCopies() throws IOException {
+		Path picture = directory.resolve("tall.png");
+		ImageIO.write(new BufferedImage(50, 3000, BufferedImage.TYPE_INT_RGB), "png", picture.toFile());
+		when(uploadService.resolvePictureUrl(PICTURE_URL)).thenReturn(picture);
+		when(uploadService.stageDerivedPicture(anyString(), anyString())).thenAnswer(invocation -> new UploadService.StagedPicture(
+				directory.resolve("staged" + invocation.getArgument(1) + ".png"), directory.resolve("copy.png"), "copy"));
+		service = service(1_000_000);
+
+		service.submit(1L, PICTURE_URL);
+
+		verify(rentalRepository, timeout(5000)).updatePictureVariants(eq(1L), eq(PICTURE_URL), eq("copy"), eq(PICTURE_URL), eq(PICTURE_URL), anyString());
+		verify(uploadService).promote(any());
+		verify(rentalRepository, never()).updatePictureVariants(any(), any(), any(), any(), any(), isNull());
+	}
+
+	private PictureVariantService service(long maxPixels) {
+		return new PictureVariantService(rentalRepository, uploadService, new RentalListCache(16),
+				40, 640, 1280, 0.8f, maxPixels, 1, 10, new SimpleMeterRegistry());
+	}
+}
@@ -0,0 +1,94 @@
+package fr.matthieu.chatop.service;
+
+import fr.matthieu.chatop.exception.FileStorageException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UploadServiceTest {
+
+	private final UploadService uploadService = new UploadService(new SimpleMeterRegistry());
+
+	@TempDir
+	Path directory;
+
+	private Path uploadDir;
+	private Path relativeDir;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		uploadDir = Files.createDirectories(directory.resolve("upload-dir"));
+		relativeDir = Files.createDirectories(directory.resolve("uploads/rentals"));
+		ReflectionTestUtils.setField(uploadService, "uploadDir", uploadDir.toString());
+		ReflectionTestUtils.setField(uploadService, "uploadRelativePath", relativeDir.toString());
+		ReflectionTestUtils.setField(uploadService, "stagingDir", directory.resolve("staging").toString());
+		ReflectionTestUtils.setField(uploadService, "maxFileSize", DataSize.ofMegabytes(1));
+		ReflectionTestUtils.setField(uploadService, "baseUrl", "http://localhost");
+		ReflectionTestUtils.setField(uploadService, "port", "3001");
+	}
+
+	@Test
+	void pictureIsResolvedInTheUploadDirectoryFirst() throws IOException {
+		Files.writeString(uploadDir.resolve("picture.png"), "upload-dir");
+		Files.writeString(relativeDir.resolve("picture.png"), "relative");
+
+		assertThat(uploadService.resolvePicture("picture.png")).isEqualTo(uploadDir.resolve("picture.png"));
+	}
+
+	@Test
+	void pictureOnlyUnderTheRelativePathIsStillFound() throws IOException {
+		Files.writeString(relativeDir.resolve("picture.png"), "relative");
+
+		assertThat(uploadService.resolvePicture("picture.png")).isEqualTo(relativeDir.resolve("picture.png"));
+	}
+
+	@Test
+	void missingPictureResolvesInTheUploadDirectory() {
+		assertThat(uploadService.resolvePicture("missing.png")).isEqualTo(uploadDir.resolve("missing.png"));
+	}
+
+	@Test
+	void nameOutsideTheUploadDirectoriesIsRejected() {
+		assertThat(uploadService.resolvePicture("../secret.txt")).isNull();
+	}
+
+	@Test
+	void pictureIsStagedInsideTheStagingDirectory() throws IOException {
+		UploadService.StagedPicture staged = uploadService.stagePicture(png(), "john_doe");
+
+		assertThat(staged.stagedPath()).exists();
+		assertThat(staged.stagedPath().getParent()).isEqualTo(directory.resolve("staging"));
+		assertThat(staged.targetPath().getParent()).isEqualTo(uploadDir);
+	}
+
+	@Test
+	void nameLeavingTheStagingDirectoryIsRejected() throws IOException {
+		MockMultipartFile picture = png();
+
+		assertThatThrownBy(() -> uploadService.stagePicture(picture, "x/../../escape"))
+				.isInstanceOf(FileStorageException.class);
+		assertThat(directory.resolve("escape.png")).doesNotExist();
+	}
+
+	private static MockMultipartFile png() throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		ImageIO.write(new BufferedImage(20, 20, BufferedImage.TYPE_INT_RGB), "png", output);
+		return new MockMultipartFile("picture", "picture.png", MediaType.IMAGE_PNG_VALUE, output.toByteArray());
+	}
+}
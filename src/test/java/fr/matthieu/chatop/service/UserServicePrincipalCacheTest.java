@@ -0,0 +1,60 @@
+package fr.matthieu.chatop.service;
+
+import fr.matthieu.chatop.index.EmailBloomFilter;
+import fr.matthieu.chatop.model.UserEntity;
+import fr.matthieu.chatop.repository.UserRepository;
+import fr.matthieu.chatop.security.AuthenticatedUser;
+import fr.matthieu.chatop.security.PrincipalCache;
+import fr.matthieu.chatop.security.RevokedTokenRegistry;
+import fr.matthieu.chatop.security.SessionRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class UserServicePrincipalCacheTest {
+
+	private final UserRepository userRepository = mock(UserRepository.class);
+	private final PrincipalCache principalCache = new PrincipalCache(100, 60);
+	private final UserService userService = new UserService(userRepository, mock(BCryptPasswordEncoder.class),
+			mock(JWTService.class), principalCache, mock(RevokedTokenRegistry.class), mock(SessionRegistry.class),
+			mock(RefreshTokenService.class), mock(EmailBloomFilter.class));
+
+	@Test
+	void principalIsLoadedOnce() {
+		when(userRepository.findByEmail("user@test.com")).thenReturn(Optional.of(user(0)));
+
+		userService.loadPrincipal("user@test.com");
+		AuthenticatedUser principal = userService.loadPrincipal("user@test.com");
+
+		assertThat(principal.tokenVersion()).isZero();
+		verify(userRepository, times(1)).findByEmail("user@test.com");
+	}
+
+	@Test
+	void principalLoadedBeforeAnInvalidationIsNotCached() {
+		// The row is read, then the user is updated and invalidated before the request caches the principal
+		when(userRepository.findByEmail("user@test.com"))
+				.thenAnswer(invocation -> {
+					UserEntity stale = user(0);
+					principalCache.invalidate("user@test.com");
+					return Optional.of(stale);
+				})
+				.thenReturn(Optional.of(user(1)));
+
+		assertThat(userService.loadPrincipal("user@test.com").tokenVersion()).isZero();
+		assertThat(principalCache.size()).isZero();
+		assertThat(userService.loadPrincipal("user@test.com").tokenVersion()).isEqualTo(1);
+		verify(userRepository, times(2)).findByEmail("user@test.com");
+	}
+
+	private static UserEntity user(int tokenVersion) {
+		UserEntity userEntity = new UserEntity("user@test.com", "password", "User");
+		userEntity.setId(1L);
+		userEntity.setTokenVersion(tokenVersion);
+		return userEntity;
+	}
+}
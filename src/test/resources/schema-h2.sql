@@ -0,0 +1,5 @@
+-- H2 version of schema-mysql.sql, run by the tests
+CREATE INDEX IF NOT EXISTS idx_rentals_price_id ON rentals (price, id);
+CREATE INDEX IF NOT EXISTS idx_rentals_surface_id ON rentals (surface, id);
+CREATE INDEX IF NOT EXISTS idx_rentals_created_at_id ON rentals (created_at, id);
+CREATE INDEX IF NOT EXISTS idx_rentals_owner_id_created_at ON rentals (owner_id, created_at);